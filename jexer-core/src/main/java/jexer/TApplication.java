@@ -37,24 +37,34 @@ import static jexer.TCommand.cmTile;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import jexer.backend.Backend;
+import jexer.backend.FrameGovernor;
+import jexer.backend.InputEventQueue;
+import jexer.backend.ThreadFactories;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 import jexer.bits.ColorTheme;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TCommandEvent;
 import jexer.event.TInputEvent;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMenuEvent;
 import jexer.event.TMouseEvent;
 import jexer.event.TResizeEvent;
+import jexer.io.LayerScreen;
 import jexer.io.Screen;
 import jexer.menu.TMenu;
 import jexer.menu.TMenuItem;
@@ -64,6 +74,31 @@ import jexer.menu.TMenuItem;
  */
 public class TApplication implements Runnable {
 
+	/**
+	 * Theme color "tapplication.background".
+	 */
+	private static final ThemeKey TAPPLICATION_BACKGROUND = ThemeKey.get("tapplication.background");
+
+	/**
+	 * Theme color "tmenu".
+	 */
+	private static final ThemeKey TMENU = ThemeKey.get("tmenu");
+
+	/**
+	 * Theme color "tmenu.highlighted".
+	 */
+	private static final ThemeKey TMENU_HIGHLIGHTED = ThemeKey.get("tmenu.highlighted");
+
+	/**
+	 * Theme color "tmenu.mnemonic.highlighted".
+	 */
+	private static final ThemeKey TMENU_MNEMONIC_HIGHLIGHTED = ThemeKey.get("tmenu.mnemonic.highlighted");
+
+	/**
+	 * Theme color "tmenu.mnemonic".
+	 */
+	private static final ThemeKey TMENU_MNEMONIC = ThemeKey.get("tmenu.mnemonic");
+
 	/**
 	 * If true, emit thread stuff to System.err.
 	 */
@@ -111,6 +146,69 @@ public class TApplication implements Runnable {
 		 */
 		private boolean primary = true;
 
+		/**
+		 * The events taken off drainEventQueue in one batch that have not
+		 * been handled yet.
+		 */
+		private final ArrayDeque<TInputEvent> batch = new ArrayDeque<TInputEvent>();
+
+		/**
+		 * Put the unhandled events of the current batch back at the front of
+		 * drainEventQueue, so that the secondary thread sees them in order.
+		 */
+		private void requeueBatch() {
+			synchronized (application.drainEventQueue) {
+				application.drainEventQueue.addAll(0, batch);
+			}
+			batch.clear();
+		}
+
+		/**
+		 * Guards signalled.
+		 */
+		private final ReentrantLock signalLock = new ReentrantLock();
+
+		/**
+		 * Signalled when signalled becomes true.
+		 */
+		private final Condition signalCondition = signalLock.newCondition();
+
+		/**
+		 * If true, signal() was called since the last waitForSignal().
+		 */
+		private boolean signalled = false;
+
+		/**
+		 * Wake up this handler. If it is not waiting, its next
+		 * waitForSignal() returns immediately.
+		 */
+		public void signal() {
+			signalLock.lock();
+			try {
+				signalled = true;
+				signalCondition.signal();
+			} finally {
+				signalLock.unlock();
+			}
+		}
+
+		/**
+		 * Wait until signal() is called. This uses a Lock rather than
+		 * Object.wait() so that a virtual thread does not pin its carrier
+		 * thread while it waits.
+		 */
+		public void waitForSignal() {
+			signalLock.lock();
+			try {
+				while (!signalled) {
+					signalCondition.awaitUninterruptibly();
+				}
+				signalled = false;
+			} finally {
+				signalLock.unlock();
+			}
+		}
+
 		/**
 		 * Public constructor.
 		 *
@@ -133,42 +231,33 @@ public class TApplication implements Runnable {
 			// Loop forever
 			while (!application.quit) {
 
-				// Wait until application notifies me
+				// Wait until application signals me
 				while (!application.quit) {
-					try {
-						synchronized (application.drainEventQueue) {
-							if (application.drainEventQueue.size() > 0) {
-								break;
-							}
+					synchronized (application.drainEventQueue) {
+						if (application.drainEventQueue.size() > 0) {
+							break;
 						}
+					}
 
-						synchronized (this) {
-							if (debugThreads) {
-								System.err.printf("%s %s sleep\n", this, primary ? "primary" : "secondary");
-							}
+					if (debugThreads) {
+						System.err.printf("%s %s sleep\n", this, primary ? "primary" : "secondary");
+					}
 
-							this.wait();
+					waitForSignal();
 
-							if (debugThreads) {
-								System.err.printf("%s %s AWAKE\n", this, primary ? "primary" : "secondary");
-							}
+					if (debugThreads) {
+						System.err.printf("%s %s AWAKE\n", this, primary ? "primary" : "secondary");
+					}
 
-							if ((!primary) && (application.secondaryEventReceiver == null)) {
-								// Secondary thread, emergency exit. If we
-								// got here then something went wrong with
-								// the handoff between yield() and
-								// closeWindow().
-								synchronized (application.primaryEventHandler) {
-									application.primaryEventHandler.notify();
-								}
-								application.secondaryEventHandler = null;
-								throw new RuntimeException("secondary exited at wrong time");
-							}
-							break;
-						}
-					} catch (InterruptedException e) {
-						// SQUASH
+					if ((!primary) && (application.secondaryEventReceiver == null)) {
+						// Secondary thread, emergency exit. If we got here
+						// then something went wrong with the handoff between
+						// yield() and closeWindow().
+						application.primaryEventHandler.signal();
+						application.secondaryEventHandler = null;
+						throw new RuntimeException("secondary exited at wrong time");
 					}
+					break;
 				}
 
 				// Wait for drawAll() or doIdle() to be done, then handle the
@@ -176,16 +265,19 @@ public class TApplication implements Runnable {
 				boolean oldLock = lockHandleEvent();
 				assert (oldLock == false);
 
-				// Pull all events off the queue
+				// Pull all events off the queue, a batch at a time
 				for (;;) {
-					TInputEvent event = null;
-					synchronized (application.drainEventQueue) {
-						if (application.drainEventQueue.size() == 0) {
-							break;
+					if (batch.isEmpty()) {
+						synchronized (application.drainEventQueue) {
+							if (application.drainEventQueue.size() == 0) {
+								break;
+							}
+							batch.addAll(application.drainEventQueue);
+							application.drainEventQueue.clear();
 						}
-						event = application.drainEventQueue.remove(0);
 					}
-					application.repaint = true;
+					TInputEvent event = batch.poll();
+					// The handlers invalidate what the event changes
 					if (primary) {
 						primaryHandleEvent(event);
 					} else {
@@ -197,9 +289,7 @@ public class TApplication implements Runnable {
 						// DO NOT UNLOCK. Primary thread just came back from
 						// primaryHandleEvent() and will unlock in the else
 						// block below. Just wake it up.
-						synchronized (application.primaryEventHandler) {
-							application.primaryEventHandler.notify();
-						}
+						application.primaryEventHandler.signal();
 						// Now eliminate my reference so that
 						// wakeEventHandler() resumes working on the primary.
 						application.secondaryEventHandler = null;
@@ -216,9 +306,7 @@ public class TApplication implements Runnable {
 
 				// I have done some work of some kind. Tell the main run()
 				// loop to wake up now.
-				synchronized (application) {
-					application.notify();
-				}
+				application.eventQueue.wakeup();
 
 			} // while (true) (main runnable loop)
 		}
@@ -240,53 +328,73 @@ public class TApplication implements Runnable {
 	private volatile TWidget secondaryEventReceiver;
 
 	/**
-	 * Spinlock for the primary and secondary event handlers.
-	 * WidgetEventHandler.run() is responsible for setting this value.
+	 * True while the primary or secondary event handler is handling events.
+	 * WidgetEventHandler.run() is responsible for setting this value. Guarded
+	 * by handleEventLock.
+	 */
+	private boolean insideHandleEvent = false;
+
+	/**
+	 * Guards insideHandleEvent and lockoutHandleEvent. This is a lock rather
+	 * than a monitor on the TApplication so that invalidate() never waits
+	 * behind the handoff.
 	 */
-	private volatile boolean insideHandleEvent = false;
+	private final ReentrantLock handleEventLock = new ReentrantLock();
+
+	/**
+	 * Signalled when insideHandleEvent becomes false.
+	 */
+	private final Condition handleEventDone = handleEventLock.newCondition();
+
+	/**
+	 * Signalled when lockoutHandleEvent becomes false.
+	 */
+	private final Condition handleEventAllowed = handleEventLock.newCondition();
+
+	/**
+	 * The longest time in nanoseconds that run() has waited in
+	 * stopEventHandlers() for an event handler to finish.
+	 */
+	private volatile long maxStopEventHandlersNanos = 0;
 
 	/**
 	 * Wake the sleeping active event handler.
 	 */
 	private void wakeEventHandler() {
 		if (secondaryEventHandler != null) {
-			synchronized (secondaryEventHandler) {
-				secondaryEventHandler.notify();
-			}
+			secondaryEventHandler.signal();
 		} else {
 			assert (primaryEventHandler != null);
-			synchronized (primaryEventHandler) {
-				primaryEventHandler.notify();
-			}
+			primaryEventHandler.signal();
 		}
 	}
 
 	/**
-	 * Set the insideHandleEvent flag to true. lockoutEventHandlers() will spin
-	 * indefinitely until unlockHandleEvent() is called.
+	 * Set the insideHandleEvent flag to true. The calling handler blocks while
+	 * run() has the event handlers stopped, until startEventHandlers() is
+	 * called.
 	 *
 	 * @return the old value of insideHandleEvent
 	 */
 	private boolean lockHandleEvent() {
-		if (debugThreads) {
-			System.err.printf("  >> lockHandleEvent(): oldValue %s", insideHandleEvent);
-		}
 		boolean oldValue = true;
 
-		synchronized (this) {
+		handleEventLock.lock();
+		try {
+			if (debugThreads) {
+				System.err.printf("  >> lockHandleEvent(): oldValue %s", insideHandleEvent);
+			}
+
 			// Wait for TApplication.run() to finish using the global state
 			// before allowing further event processing.
-			while (lockoutHandleEvent == true) {
-				try {
-					// Backoff so that the backend can finish its work.
-					Thread.sleep(5);
-				} catch (InterruptedException e) {
-					// SQUASH
-				}
+			while (lockoutHandleEvent) {
+				handleEventAllowed.awaitUninterruptibly();
 			}
 
 			oldValue = insideHandleEvent;
 			insideHandleEvent = true;
+		} finally {
+			handleEventLock.unlock();
 		}
 
 		if (debugThreads) {
@@ -296,27 +404,31 @@ public class TApplication implements Runnable {
 	}
 
 	/**
-	 * Set the insideHandleEvent flag to false. lockoutEventHandlers() will spin
-	 * indefinitely until unlockHandleEvent() is called.
+	 * Set the insideHandleEvent flag to false, and wake up run() if it is
+	 * waiting in stopEventHandlers().
 	 *
 	 * @return the old value of insideHandleEvent
 	 */
 	private boolean unlockHandleEvent() {
-		if (debugThreads) {
-			System.err.printf("  << unlockHandleEvent(): oldValue %s\n", insideHandleEvent);
-		}
-		synchronized (this) {
+		handleEventLock.lock();
+		try {
+			if (debugThreads) {
+				System.err.printf("  << unlockHandleEvent(): oldValue %s\n", insideHandleEvent);
+			}
 			boolean oldValue = insideHandleEvent;
 			insideHandleEvent = false;
+			handleEventDone.signalAll();
 			return oldValue;
+		} finally {
+			handleEventLock.unlock();
 		}
 	}
 
 	/**
-	 * Spinlock for the primary and secondary event handlers. When true, the
-	 * event handlers will spinlock wait before calling handleEvent().
+	 * When true, the event handlers will block before calling handleEvent().
+	 * Guarded by handleEventLock.
 	 */
-	private volatile boolean lockoutHandleEvent = false;
+	private boolean lockoutHandleEvent = false;
 
 	/**
 	 * TApplication.run() needs to be able rely on the global data structures
@@ -328,20 +440,28 @@ public class TApplication implements Runnable {
 			System.err.printf(">> stopEventHandlers()");
 		}
 
-		lockoutHandleEvent = true;
-		// Wait for the last event to finish processing before returning
-		// control to TApplication.run().
-		while (insideHandleEvent == true) {
-			try {
-				// Backoff so that the event handler can finish its work.
-				Thread.sleep(1);
-			} catch (InterruptedException e) {
-				// SQUASH
+		long waited = 0;
+		handleEventLock.lock();
+		try {
+			lockoutHandleEvent = true;
+			// Wait for the last event to finish processing before returning
+			// control to TApplication.run().
+			if (insideHandleEvent) {
+				long start = System.nanoTime();
+				while (insideHandleEvent) {
+					handleEventDone.awaitUninterruptibly();
+				}
+				waited = System.nanoTime() - start;
 			}
+		} finally {
+			handleEventLock.unlock();
+		}
+		if (waited > maxStopEventHandlersNanos) {
+			maxStopEventHandlersNanos = waited;
 		}
 
 		if (debugThreads) {
-			System.err.printf(" XXX\n");
+			System.err.printf(" XXX waited %d micros\n", waited / 1000);
 		}
 	}
 
@@ -354,7 +474,96 @@ public class TApplication implements Runnable {
 		if (debugThreads) {
 			System.err.printf("<< startEventHandlers()\n");
 		}
-		lockoutHandleEvent = false;
+		handleEventLock.lock();
+		try {
+			lockoutHandleEvent = false;
+			handleEventAllowed.signalAll();
+		} finally {
+			handleEventLock.unlock();
+		}
+	}
+
+	/**
+	 * Get the longest time that run() has waited for an event handler to
+	 * finish before it could process timers and redraw the screen.
+	 *
+	 * @return the longest wait in nanoseconds
+	 */
+	public final long getMaxEventHandlerWait() {
+		return maxStopEventHandlersNanos;
+	}
+
+	/**
+	 * Get the number of mouse motion events that were dropped because a newer
+	 * one arrived before they were dispatched.
+	 *
+	 * @return the number of events
+	 */
+	public final long getDroppedMotionEvents() {
+		return eventQueue.getDroppedMotionEvents();
+	}
+
+	/**
+	 * Get the number of screen resize events that were dropped because a
+	 * newer one arrived before they were dispatched.
+	 *
+	 * @return the number of events
+	 */
+	public final long getDroppedResizeEvents() {
+		return eventQueue.getDroppedResizeEvents();
+	}
+
+	/**
+	 * Decides when the screen may be flushed to the backend. The default cap
+	 * is the jexer.maxFramesPerSecond property, or 60.
+	 */
+	private final FrameGovernor frameGovernor = new FrameGovernor(Integer.getInteger("jexer.maxFramesPerSecond", 60));
+
+	/**
+	 * If true, a screen flush was held back and is due at flushDeadline. Only
+	 * used by the run() thread.
+	 */
+	private boolean flushDeferred = false;
+
+	/**
+	 * System.nanoTime() when the held-back flush is due.
+	 */
+	private long flushDeadline;
+
+	/**
+	 * Set the maximum number of frames per second sent to the backend. Frames
+	 * drawn in between are merged into the next one that is sent.
+	 *
+	 * @param maxFramesPerSecond
+	 *            the frame rate cap, or 0 for no cap
+	 */
+	public final void setMaxFramesPerSecond(final int maxFramesPerSecond) {
+		frameGovernor.setMaxFramesPerSecond(maxFramesPerSecond);
+	}
+
+	/**
+	 * Get the number of times a screen flush was held back by the frame rate
+	 * cap or by output the backend had not sent yet.
+	 *
+	 * @return the number of flushes
+	 */
+	public final long getDeferredFrames() {
+		return frameGovernor.getDeferredFrames();
+	}
+
+	/**
+	 * Creates the event handler threads.
+	 */
+	private final ThreadFactory threadFactory;
+
+	/**
+	 * Get the factory that creates this application's threads. Callers can
+	 * use it to start run() and other per-session threads the same way.
+	 *
+	 * @return the thread factory
+	 */
+	public final ThreadFactory getThreadFactory() {
+		return threadFactory;
 	}
 
 	/**
@@ -391,6 +600,13 @@ public class TApplication implements Runnable {
 	 */
 	private int oldMouseY;
 
+	/**
+	 * Input events from the backend and addMenuEvent(), drained by run().
+	 * This is also what run() sleeps on.  It is the backend's own queue, so
+	 * that it is in place before the backend's threads produce anything.
+	 */
+	private final InputEventQueue eventQueue;
+
 	/**
 	 * Event queue that is filled by run().
 	 */
@@ -448,7 +664,31 @@ public class TApplication implements Runnable {
 	/**
 	 * Timers that are being ticked.
 	 */
-	private List<TTimer> timers;
+	private TTimerQueue timers;
+
+	/**
+	 * Timers that are due, reused by every doIdle() call.
+	 */
+	private List<TTimer> dueTimers = new ArrayList<TTimer>();
+
+	/**
+	 * How often a window that overrides onIdle() is redrawn, in nanos. This
+	 * is how often run() used to poll before it slept until something was
+	 * invalidated.
+	 */
+	private static final long IDLE_PERIOD = 50000000L;
+
+	/**
+	 * If true, a window overrides onIdle() and is redrawn at idleDeadline.
+	 * Only used by the run() thread.
+	 */
+	private boolean idleRedraw = false;
+
+	/**
+	 * System.nanoTime() when the windows that override onIdle() are next
+	 * redrawn.
+	 */
+	private long idleDeadline = System.nanoTime();
 
 	/**
 	 * When true, exit the application.
@@ -456,10 +696,60 @@ public class TApplication implements Runnable {
 	private volatile boolean quit = false;
 
 	/**
-	 * When true, repaint the entire screen.
+	 * When true, something is invalid and drawAll() will repaint the screen.
+	 * Set by invalidate().
 	 */
 	private volatile boolean repaint = true;
 
+	/**
+	 * Mark the entire screen as needing to be redrawn, and wake up run() if
+	 * it is sleeping. This may be called from any thread.
+	 */
+	public final void invalidate() {
+		invalidate(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Mark the windows under a region of the screen as needing to be redrawn,
+	 * and wake up run() if it is sleeping. This may be called from any
+	 * thread.
+	 *
+	 * @param x
+	 *            absolute screen column of the region
+	 * @param y
+	 *            absolute screen row of the region
+	 * @param width
+	 *            number of columns in the region
+	 * @param height
+	 *            number of rows in the region
+	 */
+	public final void invalidate(final int x, final int y, final int width, final int height) {
+		if ((width <= 0) || (height <= 0)) {
+			return;
+		}
+		// Any window underneath the region may have changed too
+		synchronized (windows) {
+			for (TWindow window : windows) {
+				if ((x < window.getX() + window.getWidth()) && (x + width > window.getX())
+						&& (y < window.getY() + window.getHeight()) && (y + height > window.getY())) {
+					window.invalidateLayer();
+				}
+			}
+		}
+		repaint();
+	}
+
+	/**
+	 * Mark the screen as needing to be redrawn without touching the retained
+	 * window layers, and wake up run() if it is sleeping. drawAll() always
+	 * rebuilds the whole screen, and the Screen then sends only the cells
+	 * that changed.
+	 */
+	final void repaint() {
+		repaint = true;
+		eventQueue.wakeup();
+	}
+
 	/**
 	 * Y coordinate of the top edge of the desktop. For now this is a constant.
 	 * Someday it would be nice to have a multi-line menu or toolbars.
@@ -498,7 +788,22 @@ public class TApplication implements Runnable {
 	 *             if an exception is thrown when creating the InputStreamReader
 	 */
 	public TApplication(final Backend<?> backend) {
+		this(backend, ThreadFactories.getDefault());
+	}
+
+	/**
+	 * Public constructor.
+	 *
+	 * @param backend
+	 *            the backend to use
+	 * @param threadFactory
+	 *            creates the event handler threads, for example
+	 *            ThreadFactories.virtual()
+	 */
+	public TApplication(final Backend<?> backend, final ThreadFactory threadFactory) {
 		this.backend = backend;
+		this.threadFactory = threadFactory;
+		this.eventQueue = backend.getEventQueue();
 		backend.setListener(this);
 		TApplicationImpl();
 	}
@@ -568,13 +873,13 @@ public class TApplication implements Runnable {
 		windows = new LinkedList<TWindow>();
 		menus = new LinkedList<TMenu>();
 		subMenus = new LinkedList<TMenu>();
-		timers = new LinkedList<TTimer>();
+		timers = new TTimerQueue();
 		accelerators = new HashMap<TKeypress, TMenuItem>();
 		menuItems = new ArrayList<TMenuItem>();
 
 		// Setup the main consumer thread
 		primaryEventHandler = new WidgetEventHandler(this, true);
-		(new Thread(primaryEventHandler)).start();
+		threadFactory.newThread(primaryEventHandler).start();
 	}
 
 	/**
@@ -595,6 +900,131 @@ public class TApplication implements Runnable {
 		getScreen().putAttrXY(x, y, attr, false);
 	}
 
+	/**
+	 * If true, windows are drawn into retained layers which are only
+	 * re-rendered when invalidated, and drawAll() composites them.
+	 */
+	private volatile boolean retainedMode = false;
+
+	/**
+	 * Get the retained mode flag.
+	 *
+	 * @return true if windows are drawn into retained layers
+	 */
+	public final boolean isRetainedMode() {
+		return retainedMode;
+	}
+
+	/**
+	 * Set the retained mode flag. In retained mode a window is only redrawn
+	 * after something invalidates it, so code that changes a window outside
+	 * of that window's own event handlers must call invalidate() on it.
+	 *
+	 * @param retainedMode
+	 *            if true, draw windows into retained layers
+	 */
+	public final void setRetainedMode(final boolean retainedMode) {
+		this.retainedMode = retainedMode;
+		invalidate();
+	}
+
+	/**
+	 * The composited screen, reused by every compositeWindows() call.
+	 */
+	private int[] composite;
+
+	/**
+	 * For each screen cell, the index of the top-most window whose rectangle
+	 * covers it, or -1.
+	 */
+	private int[] coverage;
+
+	/**
+	 * Composite the retained window layers onto the screen. Windows that are
+	 * completely covered by windows above them are neither rendered nor
+	 * composited, and only the cells that changed are written to the screen.
+	 *
+	 * @param sorted
+	 *            the windows in reverse Z order
+	 * @param background
+	 *            the desktop color
+	 */
+	private void compositeWindows(final List<TWindow> sorted, final CellAttributes background) {
+		Screen screen = getScreen();
+		screen.resetClipping();
+		int width = screen.getWidth();
+		int height = screen.getHeight();
+		if ((composite == null) || (composite.length != width * height)) {
+			composite = new int[width * height];
+			coverage = new int[width * height];
+		}
+		Arrays.fill(coverage, -1);
+
+		// Top-down: a window is visible if any cell it draws on, including
+		// its shadow, is not covered by the rectangle of a window above it.
+		TWindow[] layers = sorted.toArray(new TWindow[sorted.size()]);
+		boolean[] visible = new boolean[layers.length];
+		for (int i = layers.length - 1; i >= 0; i--) {
+			TWindow window = layers[i];
+			int left = Math.max(window.getX(), 0);
+			int top = Math.max(window.getY(), 0);
+			int right = Math.min(window.getX() + window.getWidth() + 2, width);
+			int bottom = Math.min(window.getY() + window.getHeight() + 1, height);
+			int rectRight = Math.min(window.getX() + window.getWidth(), width);
+			int rectBottom = Math.min(window.getY() + window.getHeight(), height);
+			for (int y = top; y < bottom; y++) {
+				for (int x = left; x < right; x++) {
+					int idx = y * width + x;
+					if (coverage[idx] == -1) {
+						visible[i] = true;
+						if ((x < rectRight) && (y < rectBottom)) {
+							coverage[idx] = i;
+						}
+					}
+				}
+			}
+		}
+
+		// Bottom-up: blend each visible layer over the desktop.
+		Arrays.fill(composite, CellBuffer.pack(GraphicsChars.HATCH, background));
+		for (int i = 0; i < layers.length; i++) {
+			if (!visible[i]) {
+				continue;
+			}
+			TWindow window = layers[i];
+			LayerScreen layer = window.drawLayer();
+			int windowX = window.getX();
+			int windowY = window.getY();
+			for (int ly = 0; ly < layer.getHeight(); ly++) {
+				int y = windowY + ly;
+				if ((y < 0) || (y >= height)) {
+					continue;
+				}
+				for (int lx = 0; lx < layer.getWidth(); lx++) {
+					int x = windowX + lx;
+					if ((x < 0) || (x >= width)) {
+						continue;
+					}
+					int idx = y * width + x;
+					if (coverage[idx] > i) {
+						continue;
+					}
+					composite[idx] = LayerScreen.composite(composite[idx], layer.getLayerXY(lx, ly));
+				}
+			}
+		}
+
+		// Only touch the cells that differ, so damage tracking stays tight.
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int packed = composite[y * width + x];
+				if (screen.getPackedXY(x, y) != packed) {
+					screen.putPackedXY(x, y, packed);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Draw everything.
 	 */
@@ -617,7 +1047,7 @@ public class TApplication implements Runnable {
 					oldMouseY = mouseY;
 				}
 				if (getScreen().isDirty()) {
-					backend.flushScreen();
+					flushScreen();
 				}
 				return;
 			}
@@ -627,39 +1057,47 @@ public class TApplication implements Runnable {
 			System.err.printf("drawAll() REDRAW\n");
 		}
 
+		// Anything invalidated from here on needs another pass.
+		repaint = false;
+
 		// If true, the cursor is not visible
 		boolean cursor = false;
 
-		// Start with a clean screen
-		getScreen().clear();
-
-		// Draw the background
-		CellAttributes background = theme.getColor("tapplication.background");
-		getScreen().putAll(GraphicsChars.HATCH, background);
+		CellAttributes background = theme.getColor(TAPPLICATION_BACKGROUND);
 
 		// Draw each window in reverse Z order
 		List<TWindow> sorted = new LinkedList<TWindow>(windows);
 		Collections.sort(sorted);
 		Collections.reverse(sorted);
-		for (TWindow window : sorted) {
-			window.drawChildren();
+		if (retainedMode) {
+			compositeWindows(sorted, background);
+		} else {
+			// Draw the background over everything. Clearing first would
+			// damage every cell twice, and the Screen only damages the
+			// cells a write changes.
+			getScreen().resetClipping();
+			getScreen().putAll(GraphicsChars.HATCH, background);
+
+			for (TWindow window : sorted) {
+				window.drawChildren();
+			}
 		}
 
 		// Draw the blank menubar line - reset the screen clipping first so
 		// it won't trim it out.
 		getScreen().resetClipping();
-		getScreen().hLineXY(0, 0, getScreen().getWidth(), ' ', theme.getColor("tmenu"));
+		getScreen().hLineXY(0, 0, getScreen().getWidth(), ' ', theme.getColor(TMENU));
 		// Now draw the menus.
 		int x = 1;
 		for (TMenu menu : menus) {
 			CellAttributes menuColor;
 			CellAttributes menuMnemonicColor;
 			if (menu.isActive()) {
-				menuColor = theme.getColor("tmenu.highlighted");
-				menuMnemonicColor = theme.getColor("tmenu.mnemonic.highlighted");
+				menuColor = theme.getColor(TMENU_HIGHLIGHTED);
+				menuMnemonicColor = theme.getColor(TMENU_MNEMONIC_HIGHLIGHTED);
 			} else {
-				menuColor = theme.getColor("tmenu");
-				menuMnemonicColor = theme.getColor("tmenu.mnemonic");
+				menuColor = theme.getColor(TMENU);
+				menuMnemonicColor = theme.getColor(TMENU_MNEMONIC);
 			}
 			// Draw the menu title
 			getScreen().hLineXY(x, 0, menu.getTitle().length() + 2, ' ', menuColor);
@@ -704,10 +1142,28 @@ public class TApplication implements Runnable {
 
 		// Flush the screen contents
 		if (getScreen().isDirty()) {
-			backend.flushScreen();
+			flushScreen();
 		}
+	}
 
-		repaint = false;
+	/**
+	 * Send the screen to the backend, unless the frame rate cap or a backlog
+	 * of unsent output says to wait. A held-back flush is retried by run() at
+	 * flushDeadline, and sends whatever the screen holds by then, so a slow
+	 * client gets fewer frames instead of stalling the application.
+	 */
+	private void flushScreen() {
+		long now = System.nanoTime();
+		long delay = frameGovernor.getDelay(now, backend.getPendingOutput());
+		if (delay > 0) {
+			frameGovernor.frameDeferred();
+			flushDeferred = true;
+			flushDeadline = now + delay;
+			return;
+		}
+		flushDeferred = false;
+		backend.flushScreen();
+		frameGovernor.frameFlushed(now, System.nanoTime());
 	}
 
 	/**
@@ -715,54 +1171,36 @@ public class TApplication implements Runnable {
 	 */
 	public void run() {
 		while (!quit) {
-			// Timeout is in milliseconds, so default timeout after 1 second
-			// of inactivity.
-			long timeout = 0;
-
 			// If I've got no updates to render, wait for something from the
-			// backend or a timer.
-			if (!repaint && ((mouseX == oldMouseX) && (mouseY == oldMouseY))) {
-				// Never sleep longer than 50 millis. We need time for
-				// windows with background tasks to update the display, and
-				// still flip buffers reasonably quickly in
-				// backend.flushPhysical().
-				timeout = getSleepTime(50);
-			}
-
-			if (timeout > 0) {
-				// As of now, I've got nothing to do: no I/O, nothing from
-				// the consumer threads, no timers that need to run ASAP. So
-				// wait until either the backend or the consumer threads have
-				// something to do.
-				try {
+			// backend, the event handlers, a timer, or invalidate(). They
+			// all wake me through eventQueue, which remembers a wakeup that
+			// comes in before I park.
+			if (!quit && !repaint && (mouseX == oldMouseX) && (mouseY == oldMouseY) && !backend.hasEvents()) {
+
+				// Sleep until the next timer tick or held-back flush, or
+				// indefinitely if there are neither.
+				long timeout = getSleepTime();
+				if (timeout != 0) {
 					if (debugThreads) {
-						System.err.println("sleep " + timeout + " millis");
-					}
-					synchronized (this) {
-						this.wait(timeout);
+						System.err.println("sleep " + timeout + " nanos");
 					}
-				} catch (InterruptedException e) {
-					// I'm awake and don't care why, let's see what's going
-					// on out there.
+					eventQueue.await(timeout);
 				}
-				repaint = true;
 			}
 
 			// Prevent stepping on the primary or secondary event handler.
 			stopEventHandlers();
 
-			// Pull any pending I/O events
+			// Pull any pending I/O events, keeping only the latest of a run
+			// of mouse motions or resizes
 			backend.getEvents(fillEventQueue);
+			eventQueue.coalesce(fillEventQueue);
 
 			// Dispatch each event to the appropriate handler, one at a time.
-			for (;;) {
-				TInputEvent event = null;
-				if (fillEventQueue.size() == 0) {
-					break;
-				}
-				event = fillEventQueue.remove(0);
+			for (TInputEvent event : fillEventQueue) {
 				metaHandleEvent(event);
 			}
+			fillEventQueue.clear();
 
 			// Wake a consumer thread if we have any pending events.
 			if (drainEventQueue.size() > 0) {
@@ -784,14 +1222,10 @@ public class TApplication implements Runnable {
 
 		// Shutdown the event consumer threads
 		if (secondaryEventHandler != null) {
-			synchronized (secondaryEventHandler) {
-				secondaryEventHandler.notify();
-			}
+			secondaryEventHandler.signal();
 		}
 		if (primaryEventHandler != null) {
-			synchronized (primaryEventHandler) {
-				primaryEventHandler.notify();
-			}
+			primaryEventHandler.signal();
 		}
 
 		// Shutdown the user I/O thread(s)
@@ -845,6 +1279,7 @@ public class TApplication implements Runnable {
 				oldMouseX = 0;
 				oldMouseY = 0;
 			}
+			invalidate();
 			return;
 		}
 
@@ -861,8 +1296,11 @@ public class TApplication implements Runnable {
 			}
 		}
 
-		// Put into the main queue
-		drainEventQueue.add(event);
+		// Put into the main queue. If the event handler has not caught up
+		// yet, a newer mouse motion replaces the one still waiting.
+		synchronized (drainEventQueue) {
+			eventQueue.coalesceInto(drainEventQueue, event);
+		}
 	}
 
 	/**
@@ -880,6 +1318,68 @@ public class TApplication implements Runnable {
 			System.err.printf("Handle event: %s\n", event);
 		}
 
+		// Remember the menus and the active window, so that an event that
+		// only reached the active window redraws just that window.
+		TMenu oldMenu = activeMenu;
+		int oldSubMenus = subMenus.size();
+		TWindow oldWindow = getActiveWindow();
+		int oldX = 0;
+		int oldY = 0;
+		int oldWidth = 0;
+		int oldHeight = 0;
+		if (oldWindow != null) {
+			oldX = oldWindow.getX();
+			oldY = oldWindow.getY();
+			oldWidth = oldWindow.getWidth();
+			oldHeight = oldWindow.getHeight();
+		}
+
+		boolean windowOnly = dispatchPrimaryEvent(event);
+
+		if (windowOnly && (activeMenu == oldMenu) && (subMenus.size() == oldSubMenus)
+				&& (getActiveWindow() == oldWindow)) {
+			if (oldWindow == null) {
+				// Nobody saw the event
+				return;
+			}
+			if ((oldWindow.getX() == oldX) && (oldWindow.getY() == oldY) && (oldWindow.getWidth() == oldWidth)
+					&& (oldWindow.getHeight() == oldHeight)) {
+				oldWindow.invalidate();
+				return;
+			}
+		}
+
+		// Menus, accelerators, and the application-level handlers can change
+		// anything, and so can moving, resizing, or raising a window.
+		invalidate();
+	}
+
+	/**
+	 * Get the active window.
+	 *
+	 * @return the active window, or null if there are no windows
+	 */
+	private TWindow getActiveWindow() {
+		synchronized (windows) {
+			for (TWindow window : windows) {
+				if (window.isActive()) {
+					return window;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Dispatch one event for primaryHandleEvent().
+	 *
+	 * @param event
+	 *            the input event to consume
+	 * @return true if the event went to the active window or nowhere, false
+	 *         if the menus or an application-level handler took it
+	 */
+	private boolean dispatchPrimaryEvent(final TInputEvent event) {
+
 		// Special application-wide events -----------------------------------
 
 		// Peek at the mouse position
@@ -918,7 +1418,7 @@ public class TApplication implements Runnable {
 				mouse.setY(mouse.getY() - menu.getY());
 			}
 			menu.handleEvent(event);
-			return;
+			return false;
 		}
 
 		if (event instanceof TKeypressEvent) {
@@ -935,24 +1435,24 @@ public class TApplication implements Runnable {
 				if (item.isEnabled()) {
 					// Let the menu item dispatch
 					item.dispatch();
-					return;
+					return false;
 				}
 			}
 			// Handle the keypress
 			if (onKeypress(keypress)) {
-				return;
+				return false;
 			}
 		}
 
 		if (event instanceof TCommandEvent) {
 			if (onCommand((TCommandEvent) event)) {
-				return;
+				return false;
 			}
 		}
 
 		if (event instanceof TMenuEvent) {
 			if (onMenu((TMenuEvent) event)) {
-				return;
+				return false;
 			}
 		}
 
@@ -974,6 +1474,7 @@ public class TApplication implements Runnable {
 				break;
 			}
 		}
+		return true;
 	}
 
 	/**
@@ -986,6 +1487,7 @@ public class TApplication implements Runnable {
 	 * @see #primaryHandleEvent(TInputEvent event)
 	 */
 	private void secondaryHandleEvent(final TInputEvent event) {
+		secondaryEventReceiver.invalidate();
 		secondaryEventReceiver.handleEvent(event);
 	}
 
@@ -1001,7 +1503,7 @@ public class TApplication implements Runnable {
 		assert ((widget instanceof TMessageBox) || (widget instanceof TFileOpenBox));
 		secondaryEventReceiver = widget;
 		secondaryEventHandler = new WidgetEventHandler(this, false);
-		(new Thread(secondaryEventHandler)).start();
+		threadFactory.newThread(secondaryEventHandler).start();
 	}
 
 	/**
@@ -1013,17 +1515,12 @@ public class TApplication implements Runnable {
 		// to secondary thread. We unlock here, and in a future loop the
 		// secondary thread locks again. When it gives up, we have the
 		// single lock back.
+		primaryEventHandler.requeueBatch();
 		boolean oldLock = unlockHandleEvent();
 		assert (oldLock);
 
 		while (secondaryEventReceiver != null) {
-			synchronized (primaryEventHandler) {
-				try {
-					primaryEventHandler.wait();
-				} catch (InterruptedException e) {
-					// SQUASH
-				}
-			}
+			primaryEventHandler.waitForSignal();
 		}
 	}
 
@@ -1035,51 +1532,77 @@ public class TApplication implements Runnable {
 			System.err.printf("doIdle()\n");
 		}
 
-		// Now run any timers that have timed out
-		Date now = new Date();
-		List<TTimer> keepTimers = new LinkedList<TTimer>();
-		for (TTimer timer : timers) {
-			if (timer.getNextTick().getTime() <= now.getTime()) {
-				timer.tick();
-				if (timer.recurring) {
-					keepTimers.add(timer);
+		// Now run any timers that have timed out. Each one ticks at most
+		// once per pass, even if its action takes longer than its duration.
+		synchronized (timers) {
+			timers.pollDue(System.nanoTime(), dueTimers);
+		}
+		// The standard widgets invalidate themselves when their setters
+		// change them, but an action may change anything, so redraw after
+		// any pass that ticked a timer.
+		if (dueTimers.size() > 0) {
+			invalidate();
+		}
+		for (TTimer timer : dueTimers) {
+			timer.tick();
+			if (timer.recurring) {
+				synchronized (timers) {
+					if (!timer.cancelled) {
+						timers.add(timer);
+					}
 				}
-			} else {
-				keepTimers.add(timer);
 			}
 		}
-		timers = keepTimers;
+		dueTimers.clear();
 
-		// Call onIdle's
+		// Call onIdle's. onIdle() cannot say what it changed, so a window
+		// that overrides it is redrawn every IDLE_PERIOD, the way run()
+		// used to poll.
+		long now = System.nanoTime();
+		boolean idleDue = (now - idleDeadline >= 0);
+		idleRedraw = false;
 		for (TWindow window : windows) {
 			window.onIdle();
+			if (window.hasIdleWork()) {
+				idleRedraw = true;
+				if (idleDue) {
+					window.invalidate();
+				}
+			}
+		}
+		if (idleRedraw && idleDue) {
+			idleDeadline = now + IDLE_PERIOD;
 		}
 	}
 
 	/**
-	 * Get the amount of time I can sleep before missing a Timer tick.
+	 * Get the amount of time I can sleep before missing a Timer tick, a
+	 * held-back screen flush, or the redraw of a window that overrides
+	 * onIdle().
 	 *
-	 * @param timeout
-	 *            = initial (maximum) timeout in millis
-	 * @return number of milliseconds between now and the next timer event
+	 * @return number of nanoseconds between now and the next timer event,
+	 *         flush or redraw, 0 if one is due now, or -1 if there are none
 	 */
-	private long getSleepTime(final long timeout) {
-		Date now = new Date();
-		long nowTime = now.getTime();
-		long sleepTime = timeout;
-		for (TTimer timer : timers) {
-			long nextTickTime = timer.getNextTick().getTime();
-			if (nextTickTime < nowTime) {
-				return 0;
+	private long getSleepTime() {
+		long now = System.nanoTime();
+		long sleepTime = -1;
+		synchronized (timers) {
+			if (timers.size() > 0) {
+				sleepTime = Math.max(timers.nextTick() - now, 0);
 			}
-
-			long timeDifference = nextTickTime - nowTime;
-			if (timeDifference < sleepTime) {
-				sleepTime = timeDifference;
+		}
+		if (flushDeferred) {
+			long flushTime = Math.max(flushDeadline - now, 0);
+			if ((sleepTime < 0) || (flushTime < sleepTime)) {
+				sleepTime = flushTime;
+			}
+		}
+		if (idleRedraw) {
+			long idleTime = Math.max(idleDeadline - now, 0);
+			if ((sleepTime < 0) || (idleTime < sleepTime)) {
+				sleepTime = idleTime;
 			}
 		}
-		assert (sleepTime >= 0);
-		assert (sleepTime <= timeout);
 		return sleepTime;
 	}
 
@@ -1116,6 +1639,9 @@ public class TApplication implements Runnable {
 			}
 		}
 
+		// Uncover whatever was underneath
+		invalidate();
+
 		// Perform window cleanup
 		window.onClose();
 
@@ -1129,9 +1655,7 @@ public class TApplication implements Runnable {
 
 			// Wake the secondary thread, it will wake the primary as it
 			// exits.
-			synchronized (secondaryEventHandler) {
-				secondaryEventHandler.notify();
-			}
+			secondaryEventHandler.signal();
 		}
 	}
 
@@ -1184,6 +1708,7 @@ public class TApplication implements Runnable {
 
 		} // synchronized (windows)
 
+		invalidate();
 	}
 
 	/**
@@ -1210,6 +1735,7 @@ public class TApplication implements Runnable {
 			window.setActive(true);
 			window.onFocus();
 		}
+		invalidate();
 	}
 
 	/**
@@ -1619,9 +2145,7 @@ public class TApplication implements Runnable {
 	 *            new event to add to the queue
 	 */
 	public final void addMenuEvent(final TInputEvent event) {
-		synchronized (fillEventQueue) {
-			fillEventQueue.add(event);
-		}
+		eventQueue.add(event);
 		closeMenu();
 	}
 
@@ -1808,7 +2332,8 @@ public class TApplication implements Runnable {
 	 * @param recurring
 	 *            if true, re-schedule this timer after every tick
 	 * @param action
-	 *            function to call when button is pressed
+	 *            function to call on each tick. The screen is redrawn after
+	 *            the ticks that are due together have all run.
 	 * @return the timer
 	 */
 	public final TTimer addTimer(final long duration, final boolean recurring, final TAction action) {
@@ -1817,6 +2342,8 @@ public class TApplication implements Runnable {
 		synchronized (timers) {
 			timers.add(timer);
 		}
+		// Wake run() so that it does not sleep past the first tick.
+		eventQueue.wakeup();
 		return timer;
 	}
 
@@ -1828,6 +2355,7 @@ public class TApplication implements Runnable {
 	 */
 	public final void removeTimer(final TTimer timer) {
 		synchronized (timers) {
+			timer.cancelled = true;
 			timers.remove(timer);
 		}
 	}
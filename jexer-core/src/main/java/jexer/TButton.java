@@ -35,6 +35,7 @@ import jexer.bits.CellAttributes;
 import jexer.bits.Color;
 import jexer.bits.GraphicsChars;
 import jexer.bits.MnemonicString;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -46,6 +47,36 @@ import jexer.event.TMouseEvent;
  */
 public final class TButton extends TWidget {
 
+    /**
+     * Theme color "tbutton.disabled".
+     */
+    private static final ThemeKey TBUTTON_DISABLED =
+        ThemeKey.get("tbutton.disabled");
+
+    /**
+     * Theme color "tbutton.active".
+     */
+    private static final ThemeKey TBUTTON_ACTIVE =
+        ThemeKey.get("tbutton.active");
+
+    /**
+     * Theme color "tbutton.mnemonic.highlighted".
+     */
+    private static final ThemeKey TBUTTON_MNEMONIC_HIGHLIGHTED =
+        ThemeKey.get("tbutton.mnemonic.highlighted");
+
+    /**
+     * Theme color "tbutton.inactive".
+     */
+    private static final ThemeKey TBUTTON_INACTIVE =
+        ThemeKey.get("tbutton.inactive");
+
+    /**
+     * Theme color "tbutton.mnemonic".
+     */
+    private static final ThemeKey TBUTTON_MNEMONIC =
+        ThemeKey.get("tbutton.mnemonic");
+
     /**
      * The shortcut and button text.
      */
@@ -156,14 +187,14 @@ public final class TButton extends TWidget {
         shadowColor.setBold(false);
 
         if (!isEnabled()) {
-            buttonColor = getTheme().getColor("tbutton.disabled");
-            menuMnemonicColor = getTheme().getColor("tbutton.disabled");
+            buttonColor = getTheme().getColor(TBUTTON_DISABLED);
+            menuMnemonicColor = getTheme().getColor(TBUTTON_DISABLED);
         } else if (isAbsoluteActive()) {
-            buttonColor = getTheme().getColor("tbutton.active");
-            menuMnemonicColor = getTheme().getColor("tbutton.mnemonic.highlighted");
+            buttonColor = getTheme().getColor(TBUTTON_ACTIVE);
+            menuMnemonicColor = getTheme().getColor(TBUTTON_MNEMONIC_HIGHLIGHTED);
         } else {
-            buttonColor = getTheme().getColor("tbutton.inactive");
-            menuMnemonicColor = getTheme().getColor("tbutton.mnemonic");
+            buttonColor = getTheme().getColor(TBUTTON_INACTIVE);
+            menuMnemonicColor = getTheme().getColor(TBUTTON_MNEMONIC);
         }
 
         if (inButtonPress) {
@@ -32,6 +32,7 @@ import static jexer.TKeypress.kbSpace;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -40,6 +41,18 @@ import jexer.event.TMouseEvent;
  */
 public final class TCheckbox extends TWidget {
 
+    /**
+     * Theme color "tcheckbox.active".
+     */
+    private static final ThemeKey TCHECKBOX_ACTIVE =
+        ThemeKey.get("tcheckbox.active");
+
+    /**
+     * Theme color "tcheckbox.inactive".
+     */
+    private static final ThemeKey TCHECKBOX_INACTIVE =
+        ThemeKey.get("tcheckbox.inactive");
+
     /**
      * Checkbox state, true means checked.
      */
@@ -60,7 +73,10 @@ public final class TCheckbox extends TWidget {
      * @param checked new checked value.
      */
     public void setChecked(final boolean checked) {
-        this.checked = checked;
+        if (this.checked != checked) {
+            this.checked = checked;
+            invalidate();
+        }
     }
 
     /**
@@ -114,9 +130,9 @@ public final class TCheckbox extends TWidget {
         CellAttributes checkboxColor;
 
         if (isAbsoluteActive()) {
-            checkboxColor = getTheme().getColor("tcheckbox.active");
+            checkboxColor = getTheme().getColor(TCHECKBOX_ACTIVE);
         } else {
-            checkboxColor = getTheme().getColor("tcheckbox.inactive");
+            checkboxColor = getTheme().getColor(TCHECKBOX_INACTIVE);
         }
 
         getScreen().putCharXY(0, 0, '[', checkboxColor);
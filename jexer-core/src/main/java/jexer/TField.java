@@ -40,6 +40,7 @@ import static jexer.TKeypress.kbRight;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -48,6 +49,17 @@ import jexer.event.TMouseEvent;
  */
 public class TField extends TWidget {
 
+    /**
+     * Theme color "tfield.active".
+     */
+    private static final ThemeKey TFIELD_ACTIVE = ThemeKey.get("tfield.active");
+
+    /**
+     * Theme color "tfield.inactive".
+     */
+    private static final ThemeKey TFIELD_INACTIVE =
+        ThemeKey.get("tfield.inactive");
+
     /**
      * Field text.
      */
@@ -71,6 +83,7 @@ public class TField extends TWidget {
         this.text = text;
         position = 0;
         windowStart = 0;
+        invalidate();
     }
 
     /**
@@ -209,9 +222,9 @@ public class TField extends TWidget {
         CellAttributes fieldColor;
 
         if (isAbsoluteActive()) {
-            fieldColor = getTheme().getColor("tfield.active");
+            fieldColor = getTheme().getColor(TFIELD_ACTIVE);
         } else {
-            fieldColor = getTheme().getColor("tfield.inactive");
+            fieldColor = getTheme().getColor(TFIELD_INACTIVE);
         }
 
         int end = windowStart + getWidth();
@@ -30,6 +30,7 @@ package jexer;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TMouseEvent;
 
 /**
@@ -37,6 +38,17 @@ import jexer.event.TMouseEvent;
  */
 public final class THScroller extends TWidget {
 
+    /**
+     * Theme color "tscroller.arrows".
+     */
+    private static final ThemeKey TSCROLLER_ARROWS =
+        ThemeKey.get("tscroller.arrows");
+
+    /**
+     * Theme color "tscroller.bar".
+     */
+    private static final ThemeKey TSCROLLER_BAR = ThemeKey.get("tscroller.bar");
+
     /**
      * Value that corresponds to being on the left edge of the scroll bar.
      */
@@ -59,7 +71,10 @@ public final class THScroller extends TWidget {
      * @param leftValue the new scroll value
      */
     public void setLeftValue(final int leftValue) {
-        this.leftValue = leftValue;
+        if (this.leftValue != leftValue) {
+            this.leftValue = leftValue;
+            invalidate();
+        }
     }
 
     /**
@@ -84,7 +99,10 @@ public final class THScroller extends TWidget {
      * @param rightValue the new scroll value
      */
     public void setRightValue(final int rightValue) {
-        this.rightValue = rightValue;
+        if (this.rightValue != rightValue) {
+            this.rightValue = rightValue;
+            invalidate();
+        }
     }
 
     /**
@@ -107,7 +125,10 @@ public final class THScroller extends TWidget {
      * @param value the new scroll value
      */
     public void setValue(final int value) {
-        this.value = value;
+        if (this.value != value) {
+            this.value = value;
+            invalidate();
+        }
     }
 
     /**
@@ -173,8 +194,8 @@ public final class THScroller extends TWidget {
      */
     @Override
     public void draw() {
-        CellAttributes arrowColor = getTheme().getColor("tscroller.arrows");
-        CellAttributes barColor = getTheme().getColor("tscroller.bar");
+        CellAttributes arrowColor = getTheme().getColor(TSCROLLER_ARROWS);
+        CellAttributes barColor = getTheme().getColor(TSCROLLER_BAR);
         getScreen().putCharXY(0, 0, GraphicsChars.CP437[0x11], arrowColor);
         getScreen().putCharXY(getWidth() - 1, 0, GraphicsChars.CP437[0x10],
             arrowColor);
@@ -29,6 +29,7 @@
 package jexer;
 
 import jexer.bits.CellAttributes;
+import jexer.bits.ThemeKey;
 
 /**
  * TLabel implements a simple label.
@@ -56,12 +57,13 @@ public final class TLabel extends TWidget {
      */
     public void setLabel(final String label) {
         this.label = label;
+        invalidate();
     }
 
     /**
      * Label color.
      */
-    private String colorKey;
+    private ThemeKey colorKey;
 
     /**
      * Public constructor, using the default "tlabel" for colorKey.
@@ -93,7 +95,7 @@ public final class TLabel extends TWidget {
         super(parent, false, x, y, text.length(), 1);
 
         this.label = text;
-        this.colorKey = colorKey;
+        this.colorKey = ThemeKey.get(colorKey);
     }
 
     /**
@@ -45,6 +45,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import jexer.bits.CellAttributes;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -53,6 +54,23 @@ import jexer.event.TMouseEvent;
  */
 public class TList extends TWidget {
 
+    /**
+     * Theme color "tlist.selected".
+     */
+    private static final ThemeKey TLIST_SELECTED =
+        ThemeKey.get("tlist.selected");
+
+    /**
+     * Theme color "tlist".
+     */
+    private static final ThemeKey TLIST = ThemeKey.get("tlist");
+
+    /**
+     * Theme color "tlist.inactive".
+     */
+    private static final ThemeKey TLIST_INACTIVE =
+        ThemeKey.get("tlist.inactive");
+
     /**
      * The list of strings to display.
      */
@@ -78,7 +96,10 @@ public class TList extends TWidget {
      * @param index -1 to unselect, otherwise the index into the list
      */
     public final void setSelectedIndex(final int index) {
-        selectedString = index;
+        if (selectedString != index) {
+            selectedString = index;
+            invalidate();
+        }
     }
 
     /**
@@ -102,6 +123,7 @@ public class TList extends TWidget {
         strings.clear();
         strings.addAll(list);
         reflow();
+        invalidate();
     }
 
     /**
@@ -303,11 +325,11 @@ public class TList extends TWidget {
                 line = "";
             }
             if (i == selectedString) {
-                color = getTheme().getColor("tlist.selected");
+                color = getTheme().getColor(TLIST_SELECTED);
             } else if (isAbsoluteActive()) {
-                color = getTheme().getColor("tlist");
+                color = getTheme().getColor(TLIST);
             } else {
-                color = getTheme().getColor("tlist.inactive");
+                color = getTheme().getColor(TLIST_INACTIVE);
             }
             String formatString = "%-" + Integer.toString(getWidth() - 1) + "s";
             getScreen().putStringXY(0, topY, String.format(formatString, line),
@@ -319,9 +341,9 @@ public class TList extends TWidget {
         }
 
         if (isAbsoluteActive()) {
-            color = getTheme().getColor("tlist");
+            color = getTheme().getColor(TLIST);
         } else {
-            color = getTheme().getColor("tlist.inactive");
+            color = getTheme().getColor(TLIST_INACTIVE);
         }
 
         // Pad the rest with blank lines
@@ -30,12 +30,24 @@ package jexer;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 
 /**
  * TField implements an editable text field.
  */
 public final class TPasswordField extends TField {
 
+    /**
+     * Theme color "tfield.active".
+     */
+    private static final ThemeKey TFIELD_ACTIVE = ThemeKey.get("tfield.active");
+
+    /**
+     * Theme color "tfield.inactive".
+     */
+    private static final ThemeKey TFIELD_INACTIVE =
+        ThemeKey.get("tfield.inactive");
+
     /**
      * Public constructor.
      *
@@ -96,9 +108,9 @@ public final class TPasswordField extends TField {
 
         boolean showStars = false;
         if (isAbsoluteActive()) {
-            fieldColor = getTheme().getColor("tfield.active");
+            fieldColor = getTheme().getColor(TFIELD_ACTIVE);
         } else {
-            fieldColor = getTheme().getColor("tfield.inactive");
+            fieldColor = getTheme().getColor(TFIELD_INACTIVE);
             showStars = true;
         }
 
@@ -30,12 +30,25 @@ package jexer;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 
 /**
  * TProgressBar implements a simple progress bar.
  */
 public final class TProgressBar extends TWidget {
 
+    /**
+     * Theme color "tprogressbar.complete".
+     */
+    private static final ThemeKey TPROGRESSBAR_COMPLETE =
+        ThemeKey.get("tprogressbar.complete");
+
+    /**
+     * Theme color "tprogressbar.incomplete".
+     */
+    private static final ThemeKey TPROGRESSBAR_INCOMPLETE =
+        ThemeKey.get("tprogressbar.incomplete");
+
     /**
      * Value that corresponds to 0% progress.
      */
@@ -56,7 +69,10 @@ public final class TProgressBar extends TWidget {
      * @param minValue the value that corresponds to 0% progress
      */
     public void setMinValue(final int minValue) {
-        this.minValue = minValue;
+        if (this.minValue != minValue) {
+            this.minValue = minValue;
+            invalidate();
+        }
     }
 
     /**
@@ -79,7 +95,10 @@ public final class TProgressBar extends TWidget {
      * @param maxValue the value that corresponds to 100% progress
      */
     public void setMaxValue(final int maxValue) {
-        this.maxValue = maxValue;
+        if (this.maxValue != maxValue) {
+            this.maxValue = maxValue;
+            invalidate();
+        }
     }
 
     /**
@@ -102,7 +121,10 @@ public final class TProgressBar extends TWidget {
      * @param value the current value of the progress
      */
     public void setValue(final int value) {
-        this.value = value;
+        if (this.value != value) {
+            this.value = value;
+            invalidate();
+        }
     }
 
     /**
@@ -128,8 +150,8 @@ public final class TProgressBar extends TWidget {
      */
     @Override
     public void draw() {
-        CellAttributes completeColor = getTheme().getColor("tprogressbar.complete");
-        CellAttributes incompleteColor = getTheme().getColor("tprogressbar.incomplete");
+        CellAttributes completeColor = getTheme().getColor(TPROGRESSBAR_COMPLETE);
+        CellAttributes incompleteColor = getTheme().getColor(TPROGRESSBAR_INCOMPLETE);
 
         float progress = ((float)value - minValue) / ((float)maxValue - minValue);
         int progressInt = (int)(progress * 100);
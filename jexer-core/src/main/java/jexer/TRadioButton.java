@@ -32,6 +32,7 @@ import static jexer.TKeypress.kbSpace;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -40,6 +41,18 @@ import jexer.event.TMouseEvent;
  */
 public final class TRadioButton extends TWidget {
 
+    /**
+     * Theme color "tradiobutton.active".
+     */
+    private static final ThemeKey TRADIOBUTTON_ACTIVE =
+        ThemeKey.get("tradiobutton.active");
+
+    /**
+     * Theme color "tradiobutton.inactive".
+     */
+    private static final ThemeKey TRADIOBUTTON_INACTIVE =
+        ThemeKey.get("tradiobutton.inactive");
+
     /**
      * RadioButton state, true means selected.
      */
@@ -133,9 +146,9 @@ public final class TRadioButton extends TWidget {
         CellAttributes radioButtonColor;
 
         if (isAbsoluteActive()) {
-            radioButtonColor = getTheme().getColor("tradiobutton.active");
+            radioButtonColor = getTheme().getColor(TRADIOBUTTON_ACTIVE);
         } else {
-            radioButtonColor = getTheme().getColor("tradiobutton.inactive");
+            radioButtonColor = getTheme().getColor(TRADIOBUTTON_INACTIVE);
         }
 
         getScreen().putCharXY(0, 0, '(', radioButtonColor);
@@ -29,12 +29,25 @@
 package jexer;
 
 import jexer.bits.CellAttributes;
+import jexer.bits.ThemeKey;
 
 /**
  * TRadioGroup is a collection of TRadioButtons with a box and label.
  */
 public final class TRadioGroup extends TWidget {
 
+    /**
+     * Theme color "tradiogroup.active".
+     */
+    private static final ThemeKey TRADIOGROUP_ACTIVE =
+        ThemeKey.get("tradiogroup.active");
+
+    /**
+     * Theme color "tradiogroup.inactive".
+     */
+    private static final ThemeKey TRADIOGROUP_INACTIVE =
+        ThemeKey.get("tradiogroup.inactive");
+
     /**
      * Label for this radio button group.
      */
@@ -95,9 +108,9 @@ public final class TRadioGroup extends TWidget {
         CellAttributes radioGroupColor;
 
         if (isAbsoluteActive()) {
-            radioGroupColor = getTheme().getColor("tradiogroup.active");
+            radioGroupColor = getTheme().getColor(TRADIOGROUP_ACTIVE);
         } else {
-            radioGroupColor = getTheme().getColor("tradiogroup.inactive");
+            radioGroupColor = getTheme().getColor(TRADIOGROUP_INACTIVE);
         }
 
         getScreen().drawBox(0, 0, getWidth(), getHeight(),
@@ -41,22 +41,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
-import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 import jexer.event.TResizeEvent;
 import jexer.tterminal.DisplayLine;
+import jexer.tterminal.DisplayListener;
 import jexer.tterminal.ECMA48;
 
 /**
  * TTerminalWindow exposes a ECMA-48 / ANSI X3.64 style terminal in a window.
  */
-public class TTerminalWindow extends TWindow {
+public class TTerminalWindow extends TWindow implements DisplayListener {
 
     /**
      * The emulator.
@@ -116,7 +115,8 @@ public class TTerminalWindow extends TWindow {
             pb.redirectErrorStream(true);
             shell = pb.start();
             emulator = new ECMA48(deviceType, shell.getInputStream(),
-                shell.getOutputStream());
+                shell.getOutputStream(), application.getThreadFactory());
+            emulator.setDisplayListener(this);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -146,7 +146,9 @@ public class TTerminalWindow extends TWindow {
 
         super(application, "Terminal", x, y, 80 + 2, 24 + 2, flags);
 
-        emulator = new ECMA48(ECMA48.DeviceType.XTERM, input, output);
+        emulator = new ECMA48(ECMA48.DeviceType.XTERM, input, output,
+            application.getThreadFactory());
+        emulator.setDisplayListener(this);
 
         // Setup the scroll bars
         onResize(new TResizeEvent(TResizeEvent.Type.WIDGET, getWidth(),
@@ -169,40 +171,28 @@ public class TTerminalWindow extends TWindow {
             // Draw the box using my superclass
             super.draw();
 
-            List<DisplayLine> scrollback = emulator.getScrollbackBuffer();
-            List<DisplayLine> display = emulator.getDisplayBuffer();
-
             // Put together the visible rows
             int visibleHeight = getHeight() - 2;
-            int visibleBottom = scrollback.size() + display.size()
+            int visibleBottom = emulator.getLineCount()
                 + vScroller.getValue();
             assert (visibleBottom >= 0);
-
-            List<DisplayLine> preceedingBlankLines = new LinkedList<DisplayLine>();
             int visibleTop = visibleBottom - visibleHeight;
-            if (visibleTop < 0) {
-                for (int i = visibleTop; i < 0; i++) {
-                    preceedingBlankLines.add(emulator.getBlankDisplayLine());
-                }
-                visibleTop = 0;
-            }
-            assert (visibleTop >= 0);
-
-            List<DisplayLine> displayLines = new LinkedList<DisplayLine>();
-            displayLines.addAll(scrollback);
-            displayLines.addAll(display);
 
-            List<DisplayLine> visibleLines = new LinkedList<DisplayLine>();
-            visibleLines.addAll(preceedingBlankLines);
-            visibleLines.addAll(displayLines.subList(visibleTop,
-                    visibleBottom));
-
-            visibleHeight -= visibleLines.size();
-            assert (visibleHeight >= 0);
-
-            // Now draw the emulator screen
+            // Now draw the emulator screen straight from its buffers
             int row = 1;
-            for (DisplayLine line: visibleLines) {
+            DisplayLine blankLine = null;
+            for (int index = visibleTop; index < visibleBottom; index++) {
+                DisplayLine line;
+                if (index < 0) {
+                    if (blankLine == null) {
+                        blankLine = emulator.getBlankDisplayLine();
+                    }
+                    line = blankLine;
+                } else {
+                    line = emulator.getLine(index);
+                }
+                visibleHeight--;
+
                 int widthMax = emulator.getWidth();
                 if (line.isDoubleWidth()) {
                     widthMax /= 2;
@@ -211,20 +201,15 @@ public class TTerminalWindow extends TWindow {
                     widthMax = getWidth() - 2;
                 }
                 for (int i = 0; i < widthMax; i++) {
-                    Cell ch = line.charAt(i);
-                    Cell newCell = new Cell();
-                    newCell.setTo(ch);
-                    boolean reverse = line.isReverseColor() ^ ch.isReverse();
-                    newCell.setReverse(false);
-                    if (reverse) {
-                        newCell.setBackColor(ch.getForeColor());
-                        newCell.setForeColor(ch.getBackColor());
-                    }
+                    int packed = line.packedAt(i);
+                    packed = CellBuffer.resolveReverse(packed,
+                        line.isReverseColor() ^ CellBuffer.isReverse(packed));
                     if (line.isDoubleWidth()) {
-                        getScreen().putCharXY((i * 2) + 1, row, newCell);
-                        getScreen().putCharXY((i * 2) + 2, row, ' ', newCell);
+                        getScreen().putPackedXY((i * 2) + 1, row, packed);
+                        getScreen().putPackedXY((i * 2) + 2, row,
+                            (packed & CellBuffer.ATTR_MASK) | ' ');
                     } else {
-                        getScreen().putCharXY(i + 1, row, newCell);
+                        getScreen().putPackedXY(i + 1, row, packed);
                     }
                 }
                 row++;
@@ -233,6 +218,7 @@ public class TTerminalWindow extends TWindow {
                     break;
                 }
             }
+            assert (visibleHeight >= 0);
             CellAttributes background = new CellAttributes();
             // Fill in the blank lines on bottom
             for (int i = 0; i < visibleHeight; i++) {
@@ -244,6 +230,14 @@ public class TTerminalWindow extends TWindow {
 
     }
 
+    /**
+     * Redraw when the emulator has new output.  This is called on the
+     * emulator's reader thread.
+     */
+    public void displayChanged() {
+        invalidate();
+    }
+
     /**
      * Handle window close.
      */
@@ -363,8 +357,7 @@ public class TTerminalWindow extends TWindow {
                 vScroller.setHeight(getHeight() - 2);
             }
             vScroller.setTopValue(getHeight() - 2
-                - (emulator.getScrollbackBuffer().size()
-                    + emulator.getDisplayBuffer().size()));
+                - emulator.getLineCount());
             vScroller.setBigChange(getHeight() - 2);
 
         } // synchronized (emulator)
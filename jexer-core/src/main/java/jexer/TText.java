@@ -41,6 +41,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import jexer.bits.CellAttributes;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -63,7 +64,7 @@ public final class TText extends TWidget {
     /**
      * Text color.
      */
-    private String colorKey;
+    private ThemeKey colorKey;
 
     /**
      * Vertical scrollbar.
@@ -216,6 +217,7 @@ public final class TText extends TWidget {
         hScroller.setBigChange(getWidth() - 1);
 
         computeBounds();
+        invalidate();
     }
 
     /**
@@ -267,7 +269,7 @@ public final class TText extends TWidget {
         super(parent, x, y, width, height);
 
         this.text = text;
-        this.colorKey = colorKey;
+        this.colorKey = ThemeKey.get(colorKey);
 
         lines = new LinkedList<String>();
 
@@ -28,7 +28,7 @@
  */
 package jexer;
 
-import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * TTimer implements a simple timer.
@@ -41,22 +41,34 @@ public final class TTimer {
     boolean recurring = false;
 
     /**
-     * Duration (in millis) between ticks if this is a recurring timer.
+     * If true, this timer was removed and must not be re-scheduled.  Note
+     * package private access.
+     */
+    boolean cancelled = false;
+
+    /**
+     * Duration (in nanos) between ticks if this is a recurring timer.
      */
     private long duration = 0;
 
     /**
-     * The next time this timer needs to be ticked.
+     * The next System.nanoTime() at which this timer needs to be ticked.
+     */
+    private long nextTick;
+
+    /**
+     * Position in TTimerQueue's heap, or -1 if it is not scheduled.  Note
+     * package private access.
      */
-    private Date nextTick;
+    int heapIndex = -1;
 
     /**
      * Get the next time this timer needs to be ticked.  Note package private
      * access.
      *
-     * @return time at which action should be called
+     * @return System.nanoTime() value at which action should be called
      */
-    Date getNextTick() {
+    long getNextTick() {
         return nextTick;
     }
 
@@ -73,9 +85,8 @@ public final class TTimer {
             action.DO();
         }
         // Set next tick
-        Date ticked = new Date();
         if (recurring) {
-            nextTick = new Date(ticked.getTime() + duration);
+            nextTick = System.nanoTime() + duration;
         }
     }
 
@@ -89,11 +100,10 @@ public final class TTimer {
     TTimer(final long duration, final boolean recurring, final TAction action) {
 
         this.recurring = recurring;
-        this.duration  = duration;
+        this.duration  = TimeUnit.MILLISECONDS.toNanos(duration);
         this.action    = action;
 
-        Date now = new Date();
-        nextTick = new Date(now.getTime() + duration);
+        nextTick = System.nanoTime() + this.duration;
     }
 
 }
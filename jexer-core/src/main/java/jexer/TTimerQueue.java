@@ -0,0 +1,199 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TTimerQueue is a binary min-heap of timers ordered by their next tick.
+ * Adding and removing a timer are O(log n), and the next deadline is O(1),
+ * so the application does not scan every timer on every pass.  It is not
+ * thread safe: TApplication synchronizes on it.
+ */
+final class TTimerQueue {
+
+    /**
+     * The heap.  heap[0] is the timer due first.
+     */
+    private TTimer [] heap = new TTimer[16];
+
+    /**
+     * Number of timers in the heap.
+     */
+    private int size = 0;
+
+    /**
+     * Get the number of scheduled timers.
+     *
+     * @return the number of timers
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a timer.
+     *
+     * @param timer the timer, which must not be scheduled already
+     */
+    public void add(final TTimer timer) {
+        assert (timer.heapIndex < 0);
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = timer;
+        timer.heapIndex = size;
+        size++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Unschedule a timer.
+     *
+     * @param timer the timer
+     * @return true if the timer was scheduled
+     */
+    public boolean remove(final TTimer timer) {
+        int i = timer.heapIndex;
+        if ((i < 0) || (i >= size) || (heap[i] != timer)) {
+            return false;
+        }
+        removeAt(i);
+        return true;
+    }
+
+    /**
+     * Get the next tick of the timer due first.
+     *
+     * @return System.nanoTime() value of the next tick, or Long.MAX_VALUE if
+     * there are no timers
+     */
+    public long nextTick() {
+        if (size == 0) {
+            return Long.MAX_VALUE;
+        }
+        return heap[0].getNextTick();
+    }
+
+    /**
+     * Remove every timer that is due and append it to a list, earliest
+     * first.
+     *
+     * @param now System.nanoTime() value to compare against
+     * @param due list to append the due timers to
+     */
+    public void pollDue(final long now, final List<TTimer> due) {
+        while ((size > 0) && (heap[0].getNextTick() - now <= 0)) {
+            due.add(heap[0]);
+            removeAt(0);
+        }
+    }
+
+    /**
+     * Remove the timer at one position in the heap.
+     *
+     * @param i position in the heap
+     */
+    private void removeAt(final int i) {
+        TTimer timer = heap[i];
+        timer.heapIndex = -1;
+        size--;
+        if (i == size) {
+            heap[size] = null;
+            return;
+        }
+        heap[i] = heap[size];
+        heap[i].heapIndex = i;
+        heap[size] = null;
+        siftDown(i);
+        siftUp(i);
+    }
+
+    /**
+     * See if one timer is due before another.  nanoTime() values are
+     * compared by their difference so that wraparound does not matter.
+     *
+     * @param a a timer
+     * @param b another timer
+     * @return true if a ticks before b
+     */
+    private static boolean before(final TTimer a, final TTimer b) {
+        return (a.getNextTick() - b.getNextTick() < 0);
+    }
+
+    /**
+     * Move a timer towards the root until its parent is due before it.
+     *
+     * @param i position in the heap
+     */
+    private void siftUp(final int i) {
+        TTimer timer = heap[i];
+        int child = i;
+        while (child > 0) {
+            int parent = (child - 1) / 2;
+            if (!before(timer, heap[parent])) {
+                break;
+            }
+            heap[child] = heap[parent];
+            heap[child].heapIndex = child;
+            child = parent;
+        }
+        heap[child] = timer;
+        timer.heapIndex = child;
+    }
+
+    /**
+     * Move a timer towards the leaves until it is due before its children.
+     *
+     * @param i position in the heap
+     */
+    private void siftDown(final int i) {
+        TTimer timer = heap[i];
+        int parent = i;
+        for (;;) {
+            int child = (2 * parent) + 1;
+            if (child >= size) {
+                break;
+            }
+            if ((child + 1 < size) && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], timer)) {
+                break;
+            }
+            heap[parent] = heap[child];
+            heap[parent].heapIndex = parent;
+            parent = child;
+        }
+        heap[parent] = timer;
+        timer.heapIndex = parent;
+    }
+
+}
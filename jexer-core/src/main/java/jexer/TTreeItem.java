@@ -37,6 +37,7 @@ import java.util.List;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -45,6 +46,35 @@ import jexer.event.TMouseEvent;
  */
 public class TTreeItem extends TWidget {
 
+    /**
+     * Theme color "ttreeview".
+     */
+    private static final ThemeKey TTREEVIEW = ThemeKey.get("ttreeview");
+
+    /**
+     * Theme color "ttreeview.expandbutton".
+     */
+    private static final ThemeKey TTREEVIEW_EXPANDBUTTON =
+        ThemeKey.get("ttreeview.expandbutton");
+
+    /**
+     * Theme color "ttreeview.selected".
+     */
+    private static final ThemeKey TTREEVIEW_SELECTED =
+        ThemeKey.get("ttreeview.selected");
+
+    /**
+     * Theme color "ttreeview.inactive".
+     */
+    private static final ThemeKey TTREEVIEW_INACTIVE =
+        ThemeKey.get("ttreeview.inactive");
+
+    /**
+     * Theme color "ttreeview.unreadable".
+     */
+    private static final ThemeKey TTREEVIEW_UNREADABLE =
+        ThemeKey.get("ttreeview.unreadable");
+
     /**
      * Hang onto reference to my parent TTreeView so I can call its reflow()
      * when I add a child node.
@@ -408,18 +438,18 @@ public class TTreeItem extends TWidget {
 
         int offset = -view.getHScroller().getValue();
 
-        CellAttributes color = getTheme().getColor("ttreeview");
-        CellAttributes textColor = getTheme().getColor("ttreeview");
-        CellAttributes expanderColor = getTheme().getColor("ttreeview.expandbutton");
-        CellAttributes selectedColor = getTheme().getColor("ttreeview.selected");
+        CellAttributes color = getTheme().getColor(TTREEVIEW);
+        CellAttributes textColor = getTheme().getColor(TTREEVIEW);
+        CellAttributes expanderColor = getTheme().getColor(TTREEVIEW_EXPANDBUTTON);
+        CellAttributes selectedColor = getTheme().getColor(TTREEVIEW_SELECTED);
 
         if (!getParent().isAbsoluteActive()) {
-            color = getTheme().getColor("ttreeview.inactive");
-            textColor = getTheme().getColor("ttreeview.inactive");
+            color = getTheme().getColor(TTREEVIEW_INACTIVE);
+            textColor = getTheme().getColor(TTREEVIEW_INACTIVE);
         }
 
         if (!selectable) {
-            textColor = getTheme().getColor("ttreeview.unreadable");
+            textColor = getTheme().getColor(TTREEVIEW_UNREADABLE);
         }
 
         // Blank out the background
@@ -40,6 +40,8 @@ import static jexer.TKeypress.kbUp;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jexer.bits.ColorTheme;
 import jexer.event.TCommandEvent;
@@ -491,6 +493,23 @@ public abstract class TWidget implements Comparable<TWidget> {
         // Default widget draws nothing.
     }
 
+    /**
+     * Mark this widget as needing to be redrawn.  The application redraws
+     * on its next pass, so this may be called from any thread.  The
+     * setters of the standard widgets call this when they change
+     * something.  Other code that changes what draw() would show outside
+     * of an input event, timer, or onIdle(), such as a background thread,
+     * must call this itself.
+     */
+    public void invalidate() {
+        if ((window == null) || (window.getApplication() == null)) {
+            // Not attached yet, it will be drawn when it is.
+            return;
+        }
+        window.invalidateLayer();
+        window.getApplication().repaint();
+    }
+
     /**
      * Called by parent to render to TWindow.
      */
@@ -918,7 +937,8 @@ public abstract class TWidget implements Comparable<TWidget> {
 
     /**
      * Method that subclasses can override to do processing when the UI is
-     * idle.
+     * idle.  A window with a widget that overrides this is redrawn
+     * periodically, so onIdle() need not call invalidate() itself.
      */
     public void onIdle() {
         // Default: do nothing, pass to children instead
@@ -927,6 +947,44 @@ public abstract class TWidget implements Comparable<TWidget> {
         }
     }
 
+    /**
+     * The widget classes already looked at by hasIdleWork(), mapped to
+     * whether they override onIdle().
+     */
+    private static final Map<Class<?>, Boolean> idleOverrides =
+        new ConcurrentHashMap<Class<?>, Boolean>();
+
+    /**
+     * See if this widget or any widget inside it overrides onIdle().  Note
+     * package private access: TApplication uses this to decide which
+     * windows to redraw periodically.
+     *
+     * @return true if onIdle() might change what this widget draws
+     */
+    final boolean hasIdleWork() {
+        Boolean overridden = idleOverrides.get(getClass());
+        if (overridden == null) {
+            try {
+                Class<?> declarer = getClass().getMethod("onIdle")
+                    .getDeclaringClass();
+                overridden = (declarer != TWidget.class);
+            } catch (NoSuchMethodException e) {
+                // onIdle() is public, so this cannot happen.
+                overridden = false;
+            }
+            idleOverrides.put(getClass(), overridden);
+        }
+        if (overridden) {
+            return true;
+        }
+        for (TWidget widget: children) {
+            if (widget.hasIdleWork()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Consume event.  Subclasses that want to intercept all events in one go
      * can override this method.
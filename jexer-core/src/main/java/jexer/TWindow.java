@@ -52,11 +52,13 @@ import static jexer.TKeypress.kbUp;
 import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TCommandEvent;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMenuEvent;
 import jexer.event.TMouseEvent;
 import jexer.event.TResizeEvent;
+import jexer.io.LayerScreen;
 import jexer.io.Screen;
 import jexer.menu.TMenu;
 
@@ -65,6 +67,72 @@ import jexer.menu.TMenu;
  */
 public class TWindow extends TWidget {
 
+    /**
+     * Theme color "twindow.background.windowmove".
+     */
+    private static final ThemeKey TWINDOW_BACKGROUND_WINDOWMOVE =
+        ThemeKey.get("twindow.background.windowmove");
+
+    /**
+     * Theme color "twindow.background.modal".
+     */
+    private static final ThemeKey TWINDOW_BACKGROUND_MODAL =
+        ThemeKey.get("twindow.background.modal");
+
+    /**
+     * Theme color "twindow.background.modal.inactive".
+     */
+    private static final ThemeKey TWINDOW_BACKGROUND_MODAL_INACTIVE =
+        ThemeKey.get("twindow.background.modal.inactive");
+
+    /**
+     * Theme color "twindow.background".
+     */
+    private static final ThemeKey TWINDOW_BACKGROUND =
+        ThemeKey.get("twindow.background");
+
+    /**
+     * Theme color "twindow.background.inactive".
+     */
+    private static final ThemeKey TWINDOW_BACKGROUND_INACTIVE =
+        ThemeKey.get("twindow.background.inactive");
+
+    /**
+     * Theme color "twindow.border.windowmove".
+     */
+    private static final ThemeKey TWINDOW_BORDER_WINDOWMOVE =
+        ThemeKey.get("twindow.border.windowmove");
+
+    /**
+     * Theme color "twindow.border.modal.windowmove".
+     */
+    private static final ThemeKey TWINDOW_BORDER_MODAL_WINDOWMOVE =
+        ThemeKey.get("twindow.border.modal.windowmove");
+
+    /**
+     * Theme color "twindow.border.modal".
+     */
+    private static final ThemeKey TWINDOW_BORDER_MODAL =
+        ThemeKey.get("twindow.border.modal");
+
+    /**
+     * Theme color "twindow.border.modal.inactive".
+     */
+    private static final ThemeKey TWINDOW_BORDER_MODAL_INACTIVE =
+        ThemeKey.get("twindow.border.modal.inactive");
+
+    /**
+     * Theme color "twindow.border".
+     */
+    private static final ThemeKey TWINDOW_BORDER =
+        ThemeKey.get("twindow.border");
+
+    /**
+     * Theme color "twindow.border.inactive".
+     */
+    private static final ThemeKey TWINDOW_BORDER_INACTIVE =
+        ThemeKey.get("twindow.border.inactive");
+
     /**
      * Window's parent TApplication.
      */
@@ -81,15 +149,84 @@ public class TWindow extends TWidget {
     }
 
     /**
-     * Get the Screen.
+     * Get the Screen.  While the window is rendering its retained layer,
+     * this is the layer.
      *
      * @return the Screen
      */
     @Override
     public final Screen getScreen() {
+        if (drawingLayer) {
+            return layer;
+        }
         return application.getScreen();
     }
 
+    /**
+     * The retained cell layer, used when the application is in retained
+     * mode.  It covers the window plus the shadow to its right and below.
+     */
+    private LayerScreen layer = null;
+
+    /**
+     * If true, the layer matches what draw() would produce.
+     */
+    private volatile boolean layerValid = false;
+
+    /**
+     * The value of isActive() when the layer was drawn.
+     */
+    private boolean layerActive = false;
+
+    /**
+     * If true, drawLayer() is running and getScreen() returns the layer.
+     */
+    private boolean drawingLayer = false;
+
+    /**
+     * Mark the retained layer as needing to be drawn again.  Note package
+     * private access.
+     */
+    final void invalidateLayer() {
+        layerValid = false;
+    }
+
+    /**
+     * Get the retained layer, drawing it first if it is out of date.  Note
+     * package private access: only TApplication uses this.
+     *
+     * @return the layer, with its top-left corner at this window's (x, y)
+     */
+    final LayerScreen drawLayer() {
+        int layerWidth = getWidth() + 2;
+        int layerHeight = getHeight() + 1;
+        if (layer == null) {
+            layer = new LayerScreen(layerWidth, layerHeight);
+            layerValid = false;
+        } else if ((layer.getWidth() != layerWidth)
+            || (layer.getHeight() != layerHeight)
+        ) {
+            layer.setDimensions(layerWidth, layerHeight);
+            layerValid = false;
+        }
+        if (layerValid && (layerActive == isActive())) {
+            return layer;
+        }
+
+        // Anything invalidated while drawing stays invalid.
+        layerValid = true;
+        layerActive = isActive();
+        layer.erase();
+        layer.setOrigin(getX(), getY());
+        drawingLayer = true;
+        try {
+            drawChildren();
+        } finally {
+            drawingLayer = false;
+        }
+        return layer;
+    }
+
     /**
      * Window title.
      */
@@ -110,7 +247,10 @@ public class TWindow extends TWidget {
      * @param title new window title
      */
     public final void setTitle(final String title) {
-        this.title = title;
+        if (!title.equals(this.title)) {
+            this.title = title;
+            invalidate();
+        }
     }
 
     /**
@@ -392,21 +532,21 @@ public class TWindow extends TWidget {
             && (inWindowMove || inWindowResize || inKeyboardResize)
         ) {
             assert (isActive());
-            return getTheme().getColor("twindow.background.windowmove");
+            return getTheme().getColor(TWINDOW_BACKGROUND_WINDOWMOVE);
         } else if (isModal() && inWindowMove) {
             assert (isActive());
-            return getTheme().getColor("twindow.background.modal");
+            return getTheme().getColor(TWINDOW_BACKGROUND_MODAL);
         } else if (isModal()) {
             if (isActive()) {
-                return getTheme().getColor("twindow.background.modal");
+                return getTheme().getColor(TWINDOW_BACKGROUND_MODAL);
             }
-            return getTheme().getColor("twindow.background.modal.inactive");
+            return getTheme().getColor(TWINDOW_BACKGROUND_MODAL_INACTIVE);
         } else if (isActive()) {
             assert (!isModal());
-            return getTheme().getColor("twindow.background");
+            return getTheme().getColor(TWINDOW_BACKGROUND);
         } else {
             assert (!isModal());
-            return getTheme().getColor("twindow.background.inactive");
+            return getTheme().getColor(TWINDOW_BACKGROUND_INACTIVE);
         }
     }
 
@@ -420,22 +560,22 @@ public class TWindow extends TWidget {
             && (inWindowMove || inWindowResize || inKeyboardResize)
         ) {
             assert (isActive());
-            return getTheme().getColor("twindow.border.windowmove");
+            return getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE);
         } else if (isModal() && inWindowMove) {
             assert (isActive());
-            return getTheme().getColor("twindow.border.modal.windowmove");
+            return getTheme().getColor(TWINDOW_BORDER_MODAL_WINDOWMOVE);
         } else if (isModal()) {
             if (isActive()) {
-                return getTheme().getColor("twindow.border.modal");
+                return getTheme().getColor(TWINDOW_BORDER_MODAL);
             } else {
-                return getTheme().getColor("twindow.border.modal.inactive");
+                return getTheme().getColor(TWINDOW_BORDER_MODAL_INACTIVE);
             }
         } else if (isActive()) {
             assert (!isModal());
-            return getTheme().getColor("twindow.border");
+            return getTheme().getColor(TWINDOW_BORDER);
         } else {
             assert (!isModal());
-            return getTheme().getColor("twindow.border.inactive");
+            return getTheme().getColor(TWINDOW_BORDER_INACTIVE);
         }
     }
 
@@ -517,13 +657,13 @@ public class TWindow extends TWidget {
             if (mouseOnClose() && mouse.isMouse1()) {
                 putCharXY(3, 0, GraphicsChars.CP437[0x0F],
                     !isModal()
-                    ? getTheme().getColor("twindow.border.windowmove")
-                    : getTheme().getColor("twindow.border.modal.windowmove"));
+                    ? getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE)
+                    : getTheme().getColor(TWINDOW_BORDER_MODAL_WINDOWMOVE));
             } else {
                 putCharXY(3, 0, GraphicsChars.CP437[0xFE],
                     !isModal()
-                    ? getTheme().getColor("twindow.border.windowmove")
-                    : getTheme().getColor("twindow.border.modal.windowmove"));
+                    ? getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE)
+                    : getTheme().getColor(TWINDOW_BORDER_MODAL_WINDOWMOVE));
             }
 
             // Draw the maximize button
@@ -533,14 +673,14 @@ public class TWindow extends TWidget {
                 putCharXY(getWidth() - 3, 0, ']', border);
                 if (mouseOnMaximize() && mouse.isMouse1()) {
                     putCharXY(getWidth() - 4, 0, GraphicsChars.CP437[0x0F],
-                        getTheme().getColor("twindow.border.windowmove"));
+                        getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE));
                 } else {
                     if (maximized) {
                         putCharXY(getWidth() - 4, 0, GraphicsChars.CP437[0x12],
-                            getTheme().getColor("twindow.border.windowmove"));
+                            getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE));
                     } else {
                         putCharXY(getWidth() - 4, 0, GraphicsChars.UPARROW,
-                            getTheme().getColor("twindow.border.windowmove"));
+                            getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE));
                     }
                 }
 
@@ -548,10 +688,10 @@ public class TWindow extends TWidget {
                 if ((flags & RESIZABLE) != 0) {
                     putCharXY(getWidth() - 2, getHeight() - 1,
                         GraphicsChars.SINGLE_BAR,
-                        getTheme().getColor("twindow.border.windowmove"));
+                        getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE));
                     putCharXY(getWidth() - 1, getHeight() - 1,
                         GraphicsChars.LRCORNER,
-                        getTheme().getColor("twindow.border.windowmove"));
+                        getTheme().getColor(TWINDOW_BORDER_WINDOWMOVE));
                 }
             }
         }
@@ -1,11 +1,52 @@
 package jexer.backend;
 
+import java.util.List;
+
+import jexer.event.TInputEvent;
+
 public abstract class AbstractTerminal {
 	
 	protected Object listener;
 
+    /**
+     * The event queue.  Terminals add input events here, and the queue
+     * wakes up its consumer.  It exists before the terminal starts
+     * producing events and is never replaced, so no event can go to a
+     * queue that nobody drains.
+     */
+    protected final InputEventQueue eventQueue = new InputEventQueue();
+
     public void setListener(Object listener) {
 		this.listener = listener;
 	}
+
+    /**
+     * Get the event queue, so that the application can consume input
+     * straight from it.
+     *
+     * @return the queue input events are added to
+     */
+    public final InputEventQueue getEventQueue() {
+        return eventQueue;
+    }
+
+    /**
+     * Check if there are events in the queue.
+     *
+     * @return if true, getEvents() has something to return to the backend
+     */
+    public boolean hasEvents() {
+        return !eventQueue.isEmpty();
+    }
+
+    /**
+     * Return any events in the queue.  Only the queue's consumer may call
+     * this.
+     *
+     * @param queue list to append new events to
+     */
+    public void getEvents(final List<TInputEvent> queue) {
+        eventQueue.drainTo(queue);
+    }
     
 }
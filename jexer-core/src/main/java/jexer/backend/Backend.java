@@ -60,6 +60,16 @@ public abstract class Backend<T extends AbstractTerminal> {
 		terminal.setListener(l);
 	}
 
+    /**
+     * Get the terminal's event queue, so that the application can consume
+     * input events straight from it.
+     *
+     * @return the queue input events are added to
+     */
+    public InputEventQueue getEventQueue() {
+        return terminal.getEventQueue();
+    }
+
     /**
      * The screen to draw on.
      */
@@ -88,6 +98,25 @@ public abstract class Backend<T extends AbstractTerminal> {
      */
     public abstract void getEvents(List<TInputEvent> queue);
 
+    /**
+     * Subclasses must provide an implementation that checks for pending
+     * events without removing them.
+     *
+     * @return if true, getEvents() has something to return
+     */
+    public abstract boolean hasEvents();
+
+    /**
+     * Get the number of bytes already flushed that the remote side has not
+     * taken yet.  Subclasses with a network or otherwise buffered output
+     * override this; the default is 0.
+     *
+     * @return the number of bytes
+     */
+    public int getPendingOutput() {
+        return 0;
+    }
+
     /**
      * Subclasses must provide an implementation that closes sockets,
      * restores console, etc.
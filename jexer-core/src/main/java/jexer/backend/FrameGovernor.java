@@ -0,0 +1,152 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.backend;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FrameGovernor decides when a session may send its next frame.  It caps
+ * the frame rate, backs off when flushing takes a long time (a slow link
+ * blocking the writes), and holds frames while the connection still has
+ * output pending.  A frame that is held is not lost: the Screen stays dirty
+ * and the next flush sends its latest state, so intermediate frames are
+ * skipped rather than queued.
+ */
+public final class FrameGovernor {
+
+    /**
+     * How often to check again while output is pending.
+     */
+    private static final long BACKLOG_POLL_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * The shortest time between the start of two flushes, or 0 for no
+     * limit.
+     */
+    private long minFrameNanos;
+
+    /**
+     * System.nanoTime() when the last flush started.
+     */
+    private long lastFlushStart;
+
+    /**
+     * How long the last flush took.
+     */
+    private long lastFlushNanos = 0;
+
+    /**
+     * If true, no flush has happened yet.
+     */
+    private boolean firstFrame = true;
+
+    /**
+     * Number of flushes that were held back.
+     */
+    private volatile long deferredFrames = 0;
+
+    /**
+     * Public constructor.
+     *
+     * @param maxFramesPerSecond the frame rate cap, or 0 for no cap
+     */
+    public FrameGovernor(final int maxFramesPerSecond) {
+        setMaxFramesPerSecond(maxFramesPerSecond);
+    }
+
+    /**
+     * Set the frame rate cap.
+     *
+     * @param maxFramesPerSecond the frame rate cap, or 0 for no cap
+     */
+    public void setMaxFramesPerSecond(final int maxFramesPerSecond) {
+        if (maxFramesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid frame rate: "
+                + maxFramesPerSecond);
+        }
+        if (maxFramesPerSecond == 0) {
+            minFrameNanos = 0;
+        } else {
+            minFrameNanos = TimeUnit.SECONDS.toNanos(1) / maxFramesPerSecond;
+        }
+    }
+
+    /**
+     * Get the number of flushes that were held back.  Each one was merged
+     * into a later frame.
+     *
+     * @return the number of flushes
+     */
+    public long getDeferredFrames() {
+        return deferredFrames;
+    }
+
+    /**
+     * See how long to wait before the next flush.  A flush may not start
+     * before the frame interval has passed, nor before twice the duration
+     * of the last flush has passed, nor while output is still pending.
+     *
+     * @param now System.nanoTime()
+     * @param pendingOutput bytes flushed earlier that the connection has
+     * not accepted yet
+     * @return 0 to flush now, otherwise the number of nanoseconds to wait
+     */
+    public long getDelay(final long now, final int pendingOutput) {
+        if (pendingOutput > 0) {
+            return Math.max(minFrameNanos, BACKLOG_POLL_NANOS);
+        }
+        if (firstFrame) {
+            return 0;
+        }
+        long interval = Math.max(minFrameNanos, 2 * lastFlushNanos);
+        long delay = lastFlushStart + interval - now;
+        return Math.max(delay, 0);
+    }
+
+    /**
+     * Record that a flush was held back.
+     */
+    public void frameDeferred() {
+        deferredFrames++;
+    }
+
+    /**
+     * Record a flush.
+     *
+     * @param start System.nanoTime() when the flush started
+     * @param end System.nanoTime() when the flush returned
+     */
+    public void frameFlushed(final long start, final long end) {
+        lastFlushStart = start;
+        lastFlushNanos = end - start;
+        firstFrame = false;
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.backend;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import jexer.event.TInputEvent;
+import jexer.event.TMouseEvent;
+import jexer.event.TResizeEvent;
+
+/**
+ * InputEventQueue is a lock-free multi-producer single-consumer queue of
+ * input events.  Any number of threads (terminal readers, the Swing event
+ * dispatch thread, event handlers posting menu events) may add() events
+ * without blocking each other, and a single consumer thread (TApplication's
+ * run() loop) drains them in batches.
+ *
+ * <p>The queue is also the consumer's wakeup primitive: await() parks the
+ * consumer until an event arrives or another thread calls wakeup().  A
+ * wakeup that arrives before await() is remembered, so it cannot be lost,
+ * and a burst of events unparks the consumer only once.
+ *
+ * <p>The consumer can coalesce() what it drains: a mouse motion event
+ * followed by another one with the same buttons, or a resize followed by
+ * another resize, is dropped in favor of the later one.
+ */
+public final class InputEventQueue {
+
+    /**
+     * One link in the queue.
+     */
+    private static final class Node {
+
+        /**
+         * The event, or null for the stub node at the head.
+         */
+        private TInputEvent event;
+
+        /**
+         * The next node, set by the producer that added it.
+         */
+        private volatile Node next;
+
+        /**
+         * Constructor.
+         *
+         * @param event the event
+         */
+        Node(final TInputEvent event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * The stub node in front of the oldest event.  Only the consumer
+     * changes this.
+     */
+    private volatile Node head;
+
+    /**
+     * The newest node.  Producers swap themselves in here.
+     */
+    private final AtomicReference<Node> tail;
+
+    /**
+     * If true, wakeup() was called since the consumer last returned from
+     * await().
+     */
+    private final AtomicBoolean signalled = new AtomicBoolean(false);
+
+    /**
+     * The thread sleeping in await(), or null.
+     */
+    private volatile Thread consumer;
+
+    /**
+     * Number of mouse motion events dropped by coalescing.  Only the
+     * consumer changes this.
+     */
+    private volatile long droppedMotionEvents = 0;
+
+    /**
+     * Number of resize events dropped by coalescing.  Only the consumer
+     * changes this.
+     */
+    private volatile long droppedResizeEvents = 0;
+
+    /**
+     * Get the number of mouse motion events dropped by coalescing.
+     *
+     * @return the number of events
+     */
+    public long getDroppedMotionEvents() {
+        return droppedMotionEvents;
+    }
+
+    /**
+     * Get the number of resize events dropped by coalescing.
+     *
+     * @return the number of events
+     */
+    public long getDroppedResizeEvents() {
+        return droppedResizeEvents;
+    }
+
+    /**
+     * Public constructor.
+     */
+    public InputEventQueue() {
+        head = new Node(null);
+        tail = new AtomicReference<Node>(head);
+    }
+
+    /**
+     * Add an event and wake up the consumer.  This may be called from any
+     * thread and never blocks.
+     *
+     * @param event the new event
+     */
+    public void add(final TInputEvent event) {
+        Node node = new Node(event);
+        Node previous = tail.getAndSet(node);
+        previous.next = node;
+        wakeup();
+    }
+
+    /**
+     * Add several events and wake up the consumer once.
+     *
+     * @param events the new events
+     */
+    public void addAll(final List<TInputEvent> events) {
+        if (events.size() == 0) {
+            return;
+        }
+        for (TInputEvent event : events) {
+            Node node = new Node(event);
+            Node previous = tail.getAndSet(node);
+            previous.next = node;
+        }
+        wakeup();
+    }
+
+    /**
+     * Check if there are events to drain.  An event whose add() has not
+     * finished yet may be missed, but its wakeup() will not be.
+     *
+     * @return true if drainTo() has something to return
+     */
+    public boolean isEmpty() {
+        return (head.next == null);
+    }
+
+    /**
+     * Move all of the queued events to a list, oldest first.  Only the
+     * consumer thread may call this.
+     *
+     * @param list list to append the events to
+     * @return the number of events moved
+     */
+    public int drainTo(final List<TInputEvent> list) {
+        int n = 0;
+        Node node = head;
+        for (Node next = node.next; next != null; next = node.next) {
+            list.add(next.event);
+            next.event = null;
+            node = next;
+            n++;
+        }
+        head = node;
+        return n;
+    }
+
+    /**
+     * Append an event to a list, replacing the last event in the list if the
+     * new one supersedes it.  Only the consumer thread may call this.
+     *
+     * @param events list of events waiting to be dispatched
+     * @param event the new event
+     */
+    public void coalesceInto(final List<TInputEvent> events,
+        final TInputEvent event) {
+
+        int last = events.size() - 1;
+        if ((last >= 0) && supersedes(event, events.get(last))) {
+            events.set(last, event);
+        } else {
+            events.add(event);
+        }
+    }
+
+    /**
+     * Drop every event in a list that is superseded by the event right
+     * after it.  Only the consumer thread may call this.
+     *
+     * @param events list of events, for example from drainTo()
+     */
+    public void coalesce(final List<TInputEvent> events) {
+        int n = 0;
+        for (int i = 0; i < events.size(); i++) {
+            TInputEvent event = events.get(i);
+            if ((n > 0) && supersedes(event, events.get(n - 1))) {
+                events.set(n - 1, event);
+            } else {
+                events.set(n, event);
+                n++;
+            }
+        }
+        events.subList(n, events.size()).clear();
+    }
+
+    /**
+     * See if an event makes the one before it redundant, and count it if
+     * so.
+     *
+     * @param event the newer event
+     * @param previous the event right before it
+     * @return true if previous can be dropped
+     */
+    private boolean supersedes(final TInputEvent event,
+        final TInputEvent previous) {
+
+        if ((event instanceof TMouseEvent)
+            && (previous instanceof TMouseEvent)
+        ) {
+            TMouseEvent mouse = (TMouseEvent) event;
+            TMouseEvent old = (TMouseEvent) previous;
+            if ((mouse.getType() == TMouseEvent.Type.MOUSE_MOTION)
+                && (old.getType() == TMouseEvent.Type.MOUSE_MOTION)
+                && (mouse.isMouse1() == old.isMouse1())
+                && (mouse.isMouse2() == old.isMouse2())
+                && (mouse.isMouse3() == old.isMouse3())
+                && (mouse.isMouseWheelUp() == old.isMouseWheelUp())
+                && (mouse.isMouseWheelDown() == old.isMouseWheelDown())
+            ) {
+                droppedMotionEvents++;
+                return true;
+            }
+            return false;
+        }
+        if ((event instanceof TResizeEvent)
+            && (previous instanceof TResizeEvent)
+            && (((TResizeEvent) event).getType()
+                == ((TResizeEvent) previous).getType())
+        ) {
+            droppedResizeEvents++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Wake up the consumer if it is in await(), or make its next await()
+     * return immediately.  This may be called from any thread.
+     */
+    public void wakeup() {
+        if (!signalled.getAndSet(true)) {
+            Thread thread = consumer;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    /**
+     * Park the calling thread until there are events, wakeup() is called,
+     * or the timeout expires.  Only the consumer thread may call this.
+     *
+     * @param nanos maximum time to wait in nanoseconds, or a negative number
+     * to wait indefinitely
+     */
+    public void await(final long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        consumer = Thread.currentThread();
+        try {
+            while (!signalled.getAndSet(false) && isEmpty()) {
+                if (nanos < 0) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    return;
+                }
+            }
+        } finally {
+            consumer = null;
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.backend;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ThreadFactories creates the threads that TApplication, the backends, and
+ * the terminal emulator run on.  On a JDK with virtual threads, virtual()
+ * returns a factory for them, so that one JVM can serve thousands of
+ * sessions without thousands of OS threads.  Older JDKs fall back to
+ * platform threads.
+ *
+ * <p>The default factory is platform threads, or virtual threads if the
+ * jexer.virtualThreads property is "true".  It can also be changed with
+ * setDefault().
+ */
+public final class ThreadFactories {
+
+    /**
+     * Creates platform threads just like new Thread(runnable).
+     */
+    private static final ThreadFactory PLATFORM = new ThreadFactory() {
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(runnable);
+        }
+    };
+
+    /**
+     * The virtual thread factory, or null if this JDK does not have
+     * virtual threads.
+     */
+    private static final ThreadFactory VIRTUAL = findVirtual();
+
+    /**
+     * The factory used when none is specified.
+     */
+    private static volatile ThreadFactory defaultFactory =
+        (Boolean.getBoolean("jexer.virtualThreads") ? virtual() : PLATFORM);
+
+    /**
+     * Private constructor prevents accidental creation of this class.
+     */
+    private ThreadFactories() {
+    }
+
+    /**
+     * Look up Thread.ofVirtual().factory() by reflection, since this code
+     * is compiled for JDKs that do not have it.
+     *
+     * @return the factory, or null if virtual threads are not available
+     */
+    private static ThreadFactory findVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class,
+                long.class).invoke(builder, "jexer-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").
+                invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * See if virtual threads are available.
+     *
+     * @return true if virtual() returns a virtual thread factory
+     */
+    public static boolean isVirtualAvailable() {
+        return (VIRTUAL != null);
+    }
+
+    /**
+     * Get a factory for platform threads.
+     *
+     * @return the factory
+     */
+    public static ThreadFactory platform() {
+        return PLATFORM;
+    }
+
+    /**
+     * Get a factory for virtual threads.
+     *
+     * @return the factory, or the platform thread factory if this JDK does
+     * not have virtual threads
+     */
+    public static ThreadFactory virtual() {
+        if (VIRTUAL != null) {
+            return VIRTUAL;
+        }
+        return PLATFORM;
+    }
+
+    /**
+     * Get the factory used when none is specified.
+     *
+     * @return the factory
+     */
+    public static ThreadFactory getDefault() {
+        return defaultFactory;
+    }
+
+    /**
+     * Set the factory used when none is specified.  This affects threads
+     * created after the call.
+     *
+     * @param factory the factory
+     */
+    public static void setDefault(final ThreadFactory factory) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory must not be null");
+        }
+        defaultFactory = factory;
+    }
+
+}
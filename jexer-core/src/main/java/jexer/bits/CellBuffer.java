@@ -0,0 +1,724 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.bits;
+
+import java.util.Arrays;
+
+/**
+ * CellBuffer is a packed grid of text cells.  Each cell is stored as one
+ * int holding the character and all of its attributes, so a whole screen is
+ * one array rather than one Cell object per position, and two cells are
+ * equal exactly when their ints are equal.
+ *
+ * <p>The packed layout is:
+ *
+ * <p><pre>
+ *   bits  0-15  character
+ *   bits 16-18  foreground color (Color.getValue())
+ *   bits 19-21  background color (Color.getValue())
+ *   bit     22  bold
+ *   bit     23  blink
+ *   bit     24  reverse
+ *   bit     25  underline
+ *   bit     26  protect
+ * </pre>
+ *
+ * <p>Everything above bit 15 is the attribute part of the cell.
+ *
+ * <p>A buffer can also keep a hash of each row up to date on every write.
+ * Rows of two buffers of the same width with different hashes differ, so a
+ * Screen can rule out most unchanged rows with one compare per row.  Equal
+ * hashes do not prove the rows equal.  Buffers that are written much more
+ * often than they are compared, such as the terminal emulator's lines, do
+ * not keep hashes.
+ */
+public final class CellBuffer {
+
+    /**
+     * Mask for the character bits.
+     */
+    public static final int CHAR_MASK = 0xFFFF;
+
+    /**
+     * Mask for the attribute bits.
+     */
+    public static final int ATTR_MASK = ~CHAR_MASK;
+
+    /**
+     * Shift for the foreground color.
+     */
+    private static final int FORE_SHIFT = 16;
+
+    /**
+     * Shift for the background color.
+     */
+    private static final int BACK_SHIFT = 19;
+
+    /**
+     * Bold bit.
+     */
+    private static final int BOLD = 1 << 22;
+
+    /**
+     * Blink bit.
+     */
+    private static final int BLINK = 1 << 23;
+
+    /**
+     * Reverse bit.
+     */
+    private static final int REVERSE = 1 << 24;
+
+    /**
+     * Underline bit.
+     */
+    private static final int UNDERLINE = 1 << 25;
+
+    /**
+     * Protect bit.
+     */
+    private static final int PROTECT = 1 << 26;
+
+    /**
+     * Mask for the attribute bits that are visible on a terminal: colors,
+     * bold, blink, reverse, and underline, but not protect.
+     */
+    public static final int SGR_MASK = ATTR_MASK & ~PROTECT;
+
+    /**
+     * A blank cell: ' ', white foreground, black background, no
+     * bold/blink/reverse/underline/protect.  This matches Cell.reset().
+     */
+    public static final int BLANK = ' '
+        | (Color.WHITE.getValue() << FORE_SHIFT)
+        | (Color.BLACK.getValue() << BACK_SHIFT);
+
+    /**
+     * Width of the grid.
+     */
+    private final int width;
+
+    /**
+     * Height of the grid.
+     */
+    private final int height;
+
+    /**
+     * The cells, row-major.
+     */
+    private final int [] cells;
+
+    /**
+     * For each row, the sum of cellHash() over its cells, or null if this
+     * buffer does not keep row hashes.
+     */
+    private final long [] rowHashes;
+
+    /**
+     * Public constructor sets every cell to BLANK.  The buffer does not keep
+     * row hashes.
+     *
+     * @param width number of columns
+     * @param height number of rows
+     */
+    public CellBuffer(final int width, final int height) {
+        this(width, height, false);
+    }
+
+    /**
+     * Public constructor sets every cell to BLANK.
+     *
+     * @param width number of columns
+     * @param height number of rows
+     * @param hashRows if true, keep a hash of every row up to date, for
+     * getRowHash().  That costs two cell hashes on every write that changes
+     * a cell, and a pass over the row on every move().
+     */
+    public CellBuffer(final int width, final int height,
+        final boolean hashRows) {
+
+        this.width = width;
+        this.height = height;
+        cells = new int[width * height];
+        if (hashRows) {
+            rowHashes = new long[height];
+        } else {
+            rowHashes = null;
+        }
+        fill(BLANK);
+    }
+
+    /**
+     * Hash one cell.  The hash depends on the column so that moving cells
+     * within a row changes the row hash, but not on the row, so that rows
+     * can be compared with other rows.  A row hash is the sum of its cell
+     * hashes, which lets a write update it without looking at the rest of
+     * the row.
+     *
+     * @param x column coordinate
+     * @param packed the packed cell
+     * @return the hash
+     */
+    private static long cellHash(final int x, final int packed) {
+        // The splitmix64 finalizer
+        long z = (packed & 0xFFFFFFFFL) + (x + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Compute the hash of a row from scratch.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     */
+    private void rehashRow(final int y) {
+        long hash = 0;
+        int base = y * width;
+        for (int x = 0; x < width; x++) {
+            hash += cellHash(x, cells[base + x]);
+        }
+        rowHashes[y] = hash;
+    }
+
+    /**
+     * See if this buffer keeps row hashes.
+     *
+     * @return true if getRowHash() can be used
+     */
+    public boolean isRowHashed() {
+        return (rowHashes != null);
+    }
+
+    /**
+     * Get the hash of a row.  Rows of buffers of the same width with
+     * different hashes differ.  Rows with the same hash are only probably
+     * equal, so callers that need to know must compare the cells.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @return the hash
+     * @throws IllegalStateException if this buffer does not keep row hashes
+     */
+    public long getRowHash(final int y) {
+        if (rowHashes == null) {
+            throw new IllegalStateException("Row hashes are not kept");
+        }
+        return rowHashes[y];
+    }
+
+    /**
+     * Get the width.
+     *
+     * @return number of columns
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height.
+     *
+     * @return number of rows
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    // ------------------------------------------------------------------------
+    // Packing ----------------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+     * Pack a set of attributes.
+     *
+     * @param attr the attributes
+     * @return the attribute bits of a packed cell, with a zero character
+     */
+    public static int packAttr(final CellAttributes attr) {
+        int packed = (attr.getForeColor().getValue() << FORE_SHIFT)
+            | (attr.getBackColor().getValue() << BACK_SHIFT);
+        if (attr.isBold()) {
+            packed |= BOLD;
+        }
+        if (attr.isBlink()) {
+            packed |= BLINK;
+        }
+        if (attr.isReverse()) {
+            packed |= REVERSE;
+        }
+        if (attr.isUnderline()) {
+            packed |= UNDERLINE;
+        }
+        if (attr.isProtect()) {
+            packed |= PROTECT;
+        }
+        return packed;
+    }
+
+    /**
+     * Pack a character and a set of attributes.
+     *
+     * @param ch the character
+     * @param attr the attributes
+     * @return the packed cell
+     */
+    public static int pack(final char ch, final CellAttributes attr) {
+        return packAttr(attr) | ch;
+    }
+
+    /**
+     * Pack a Cell.
+     *
+     * @param cell the Cell
+     * @return the packed cell
+     */
+    public static int pack(final Cell cell) {
+        return packAttr(cell) | cell.getChar();
+    }
+
+    /**
+     * Unpack the attributes of a packed cell.
+     *
+     * @param packed the packed cell
+     * @param attr the attributes to set.  If attr is a Cell its character
+     * is also set.
+     */
+    public static void unpack(final int packed, final CellAttributes attr) {
+        attr.setForeColor(getForeColor(packed));
+        attr.setBackColor(getBackColor(packed));
+        attr.setBold(isBold(packed));
+        attr.setBlink(isBlink(packed));
+        attr.setReverse(isReverse(packed));
+        attr.setUnderline(isUnderline(packed));
+        attr.setProtect(isProtect(packed));
+        if (attr instanceof Cell) {
+            ((Cell) attr).setChar(getChar(packed));
+        }
+    }
+
+    /**
+     * Get the character of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return the character
+     */
+    public static char getChar(final int packed) {
+        return (char) (packed & CHAR_MASK);
+    }
+
+    /**
+     * Get the foreground color of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return the foreground color
+     */
+    public static Color getForeColor(final int packed) {
+        return Color.getColor((packed >>> FORE_SHIFT) & 0x07);
+    }
+
+    /**
+     * Get the background color of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return the background color
+     */
+    public static Color getBackColor(final int packed) {
+        return Color.getColor((packed >>> BACK_SHIFT) & 0x07);
+    }
+
+    /**
+     * Get the bold flag of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return bold value
+     */
+    public static boolean isBold(final int packed) {
+        return ((packed & BOLD) != 0);
+    }
+
+    /**
+     * Get the blink flag of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return blink value
+     */
+    public static boolean isBlink(final int packed) {
+        return ((packed & BLINK) != 0);
+    }
+
+    /**
+     * Get the reverse flag of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return reverse value
+     */
+    public static boolean isReverse(final int packed) {
+        return ((packed & REVERSE) != 0);
+    }
+
+    /**
+     * Get the underline flag of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return underline value
+     */
+    public static boolean isUnderline(final int packed) {
+        return ((packed & UNDERLINE) != 0);
+    }
+
+    /**
+     * Get the protect flag of a packed cell.
+     *
+     * @param packed the packed cell
+     * @return protect value
+     */
+    public static boolean isProtect(final int packed) {
+        return ((packed & PROTECT) != 0);
+    }
+
+    /**
+     * Check to see if a packed cell is blank.
+     *
+     * @param packed the packed cell
+     * @return true if the cell matches Cell.isBlank()
+     */
+    public static boolean isBlank(final int packed) {
+        return (packed == BLANK);
+    }
+
+    /**
+     * Show a packed cell's reverse attribute by swapping its colors.
+     *
+     * @param packed a packed cell
+     * @param reverse if true, swap the foreground and background colors
+     * @return the cell with the reverse attribute cleared, and with its
+     * colors swapped if reverse is true
+     */
+    public static int resolveReverse(final int packed, final boolean reverse) {
+        int result = packed & ~REVERSE;
+        if (reverse) {
+            int fore = (packed >>> FORE_SHIFT) & 0x7;
+            int back = (packed >>> BACK_SHIFT) & 0x7;
+            result &= ~((0x7 << FORE_SHIFT) | (0x7 << BACK_SHIFT));
+            result |= (back << FORE_SHIFT) | (fore << BACK_SHIFT);
+        }
+        return result;
+    }
+
+    // ------------------------------------------------------------------------
+    // Single cell access -----------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the packed cell at one location.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @return the packed cell
+     */
+    public int get(final int x, final int y) {
+        return cells[y * width + x];
+    }
+
+    /**
+     * Set the packed cell at one location.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param packed the packed cell
+     */
+    public void set(final int x, final int y, final int packed) {
+        int i = y * width + x;
+        int old = cells[i];
+        if (old != packed) {
+            cells[i] = packed;
+            if (rowHashes != null) {
+                rowHashes[y] += cellHash(x, packed) - cellHash(x, old);
+            }
+        }
+    }
+
+    /**
+     * Set the character and attributes at one location.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param ch the character
+     * @param attr the attributes
+     */
+    public void set(final int x, final int y, final char ch,
+        final CellAttributes attr) {
+
+        set(x, y, pack(ch, attr));
+    }
+
+    /**
+     * Get the character at one location.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @return the character
+     */
+    public char getChar(final int x, final int y) {
+        return getChar(cells[y * width + x]);
+    }
+
+    /**
+     * Set the character at one location without changing its attributes.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param ch the character
+     */
+    public void setChar(final int x, final int y, final char ch) {
+        set(x, y, (cells[y * width + x] & ATTR_MASK) | ch);
+    }
+
+    /**
+     * Set the attributes at one location without changing its character.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param attr the attributes
+     */
+    public void setAttr(final int x, final int y, final CellAttributes attr) {
+        set(x, y, (cells[y * width + x] & CHAR_MASK) | packAttr(attr));
+    }
+
+    /**
+     * Copy one location out into a Cell.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param cell the Cell to set
+     */
+    public void getCell(final int x, final int y, final Cell cell) {
+        unpack(cells[y * width + x], cell);
+    }
+
+    // ------------------------------------------------------------------------
+    // Bulk operations --------------------------------------------------------
+    // ------------------------------------------------------------------------
+
+    /**
+     * Set every cell to the same value.
+     *
+     * @param packed the packed cell
+     */
+    public void fill(final int packed) {
+        Arrays.fill(cells, packed);
+        if ((rowHashes != null) && (height > 0)) {
+            rehashRow(0);
+            Arrays.fill(rowHashes, rowHashes[0]);
+        }
+    }
+
+    /**
+     * Set part of a row to the same value.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @param packed the packed cell
+     */
+    public void fill(final int y, final int left, final int right,
+        final int packed) {
+
+        for (int x = left; x < right; x++) {
+            set(x, y, packed);
+        }
+    }
+
+    /**
+     * Copy every cell from another buffer of the same dimensions.
+     *
+     * @param src the buffer to copy from
+     * @throws IllegalArgumentException if the dimensions differ
+     */
+    public void copyFrom(final CellBuffer src) {
+        if ((src.width != width) || (src.height != height)) {
+            throw new IllegalArgumentException("Cannot copy " + src.width
+                + "x" + src.height + " buffer to " + width + "x" + height);
+        }
+        System.arraycopy(src.cells, 0, cells, 0, cells.length);
+        if (rowHashes != null) {
+            for (int y = 0; y < height; y++) {
+                copyRowHash(src, y, y);
+            }
+        }
+    }
+
+    /**
+     * Bring the hash of a row up to date after a whole row was copied into
+     * it.
+     *
+     * @param src the buffer the row was copied from
+     * @param srcY row copied from
+     * @param destY row copied to
+     */
+    private void copyRowHash(final CellBuffer src, final int srcY,
+        final int destY) {
+
+        if (src.rowHashes != null) {
+            rowHashes[destY] = src.rowHashes[srcY];
+        } else {
+            rehashRow(destY);
+        }
+    }
+
+    /**
+     * Copy part of a row from another buffer of the same width.
+     *
+     * @param src the buffer to copy from
+     * @param y row coordinate.  0 is the top-most row.
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     */
+    public void copyFrom(final CellBuffer src, final int y, final int left,
+        final int right) {
+
+        copyRow(src, y, y, left, right);
+    }
+
+    /**
+     * Copy part of a row from another row, possibly of this buffer.  The
+     * buffers must have the same width.
+     *
+     * @param src the buffer to copy from
+     * @param srcY row to copy from
+     * @param destY row to copy to
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     */
+    public void copyRow(final CellBuffer src, final int srcY, final int destY,
+        final int left, final int right) {
+
+        if ((left == 0) && (right == width)) {
+            System.arraycopy(src.cells, srcY * src.width, cells,
+                destY * width, width);
+            if (rowHashes != null) {
+                copyRowHash(src, srcY, destY);
+            }
+            return;
+        }
+        int srcBase = srcY * src.width;
+        for (int x = left; x < right; x++) {
+            set(x, destY, src.cells[srcBase + x]);
+        }
+    }
+
+    /**
+     * Move cells within one row, as for an insert or delete character.
+     * Overlapping ranges are handled correctly.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @param srcX first column to move
+     * @param destX column to move srcX to
+     * @param n number of cells to move
+     */
+    public void move(final int y, final int srcX, final int destX,
+        final int n) {
+
+        System.arraycopy(cells, y * width + srcX, cells, y * width + destX, n);
+        if (rowHashes != null) {
+            rehashRow(y);
+        }
+    }
+
+    /**
+     * Find the first cell on part of a row that differs from another buffer
+     * of the same width.
+     *
+     * @param other the buffer to compare against
+     * @param y row coordinate.  0 is the top-most row.
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @return the first differing column, or -1 if the span is identical
+     */
+    public int mismatch(final CellBuffer other, final int y, final int left,
+        final int right) {
+
+        int base = y * width;
+        int otherBase = y * other.width;
+        for (int x = left; x < right; x++) {
+            if (cells[base + x] != other.cells[otherBase + x]) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the last cell on part of a row that differs from another buffer
+     * of the same width.
+     *
+     * @param other the buffer to compare against
+     * @param y row coordinate.  0 is the top-most row.
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @return the last differing column, or -1 if the span is identical
+     */
+    public int mismatchRight(final CellBuffer other, final int y,
+        final int left, final int right) {
+
+        int base = y * width;
+        int otherBase = y * other.width;
+        for (int x = right - 1; x >= left; x--) {
+            if (cells[base + x] != other.cells[otherBase + x]) {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compare part of a row with part of a possibly different row of
+     * another buffer of the same width.
+     *
+     * @param y row coordinate in this buffer
+     * @param other the buffer to compare against
+     * @param otherY row coordinate in other
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @return true if the spans are identical
+     */
+    public boolean rowEquals(final int y, final CellBuffer other,
+        final int otherY, final int left, final int right) {
+
+        int base = y * width;
+        int otherBase = otherY * other.width;
+        for (int x = left; x < right; x++) {
+            if (cells[base + x] != other.cells[otherBase + x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
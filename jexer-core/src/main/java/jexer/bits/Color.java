@@ -90,6 +90,35 @@ public final class Color {
         }
     }
 
+    /**
+     * Return one of the static Color instances by its SGR value.
+     *
+     * @param value 0 (black) through 7 (white)
+     * @return Color.BLACK, Color.RED, etc.
+     */
+    static Color getColor(final int value) {
+        switch (value) {
+        case SGRBLACK:
+            return Color.BLACK;
+        case SGRRED:
+            return Color.RED;
+        case SGRGREEN:
+            return Color.GREEN;
+        case SGRYELLOW:
+            return Color.YELLOW;
+        case SGRBLUE:
+            return Color.BLUE;
+        case SGRMAGENTA:
+            return Color.MAGENTA;
+        case SGRCYAN:
+            return Color.CYAN;
+        case SGRWHITE:
+            return Color.WHITE;
+        default:
+            throw new IllegalArgumentException("Invalid Color value: " + value);
+        }
+    }
+
     /**
      * SGR black value = 0.
      */
@@ -33,6 +33,7 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
@@ -42,6 +43,9 @@ import java.util.TreeMap;
 /**
  * ColorTheme is a collection of colors keyed by string.  A default theme is
  * also provided that matches the blue-and-white theme used by Turbo Vision.
+ *
+ * <p>Colors can also be looked up by ThemeKey, which is an array index
+ * rather than a string search.  Drawing code should use that form.
  */
 public final class ColorTheme {
 
@@ -50,6 +54,11 @@ public final class ColorTheme {
      */
     private SortedMap<String, CellAttributes> colors;
 
+    /**
+     * The current theme colors, indexed by ThemeKey id.
+     */
+    private CellAttributes [] colorsByKey = new CellAttributes[0];
+
     /**
      * Public constructor sets the theme to the default.
      */
@@ -69,6 +78,20 @@ public final class ColorTheme {
         return attr;
     }
 
+    /**
+     * Retrieve the CellAttributes for a theme color key.
+     *
+     * @param key theme color key, e.g. ThemeKey.get("twindow.border")
+     * @return color associated with key, e.g. bold yellow on blue
+     */
+    public CellAttributes getColor(final ThemeKey key) {
+        int id = key.getId();
+        if (id < colorsByKey.length) {
+            return colorsByKey[id];
+        }
+        return null;
+    }
+
     /**
      * Retrieve all the names in the theme.
      *
@@ -90,6 +113,13 @@ public final class ColorTheme {
      */
     public void setColor(final String name, final CellAttributes color) {
         colors.put(name, color);
+
+        int id = ThemeKey.get(name).getId();
+        if (id >= colorsByKey.length) {
+            colorsByKey = Arrays.copyOf(colorsByKey,
+                Math.max(id + 1, colorsByKey.length * 2));
+        }
+        colorsByKey[id] = color;
     }
 
     /**
@@ -151,7 +181,7 @@ public final class ColorTheme {
             }
             color.setForeColor(Color.getColor(foreColor));
             color.setBackColor(Color.getColor(backColor));
-            colors.put(key, color);
+            setColor(key, color);
         }
         // All done.
         reader.close();
@@ -168,149 +198,149 @@ public final class ColorTheme {
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("twindow.border", color);
+        setColor("twindow.border", color);
 
         // TWindow background
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("twindow.background", color);
+        setColor("twindow.background", color);
 
         // TWindow border - inactive
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("twindow.border.inactive", color);
+        setColor("twindow.border.inactive", color);
 
         // TWindow background - inactive
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("twindow.background.inactive", color);
+        setColor("twindow.background.inactive", color);
 
         // TWindow border - modal
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.WHITE);
         color.setBold(true);
-        colors.put("twindow.border.modal", color);
+        setColor("twindow.border.modal", color);
 
         // TWindow background - modal
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(false);
-        colors.put("twindow.background.modal", color);
+        setColor("twindow.background.modal", color);
 
         // TWindow border - modal + inactive
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(true);
-        colors.put("twindow.border.modal.inactive", color);
+        setColor("twindow.border.modal.inactive", color);
 
         // TWindow background - modal + inactive
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(false);
-        colors.put("twindow.background.modal.inactive", color);
+        setColor("twindow.background.modal.inactive", color);
 
         // TWindow border - during window movement - modal
         color = new CellAttributes();
         color.setForeColor(Color.GREEN);
         color.setBackColor(Color.WHITE);
         color.setBold(true);
-        colors.put("twindow.border.modal.windowmove", color);
+        setColor("twindow.border.modal.windowmove", color);
 
         // TWindow border - during window movement
         color = new CellAttributes();
         color.setForeColor(Color.GREEN);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("twindow.border.windowmove", color);
+        setColor("twindow.border.windowmove", color);
 
         // TWindow background - during window movement
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("twindow.background.windowmove", color);
+        setColor("twindow.background.windowmove", color);
 
         // TApplication background
         color = new CellAttributes();
         color.setForeColor(Color.BLUE);
         color.setBackColor(Color.WHITE);
         color.setBold(false);
-        colors.put("tapplication.background", color);
+        setColor("tapplication.background", color);
 
         // TButton text
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.GREEN);
         color.setBold(false);
-        colors.put("tbutton.inactive", color);
+        setColor("tbutton.inactive", color);
         color = new CellAttributes();
         color.setForeColor(Color.CYAN);
         color.setBackColor(Color.GREEN);
         color.setBold(true);
-        colors.put("tbutton.active", color);
+        setColor("tbutton.active", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(true);
-        colors.put("tbutton.disabled", color);
+        setColor("tbutton.disabled", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.GREEN);
         color.setBold(true);
-        colors.put("tbutton.mnemonic", color);
+        setColor("tbutton.mnemonic", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.GREEN);
         color.setBold(true);
-        colors.put("tbutton.mnemonic.highlighted", color);
+        setColor("tbutton.mnemonic.highlighted", color);
 
         // TLabel text
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("tlabel", color);
+        setColor("tlabel", color);
 
         // TText text
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLACK);
         color.setBold(false);
-        colors.put("ttext", color);
+        setColor("ttext", color);
 
         // TField text
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tfield.inactive", color);
+        setColor("tfield.inactive", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLACK);
         color.setBold(true);
-        colors.put("tfield.active", color);
+        setColor("tfield.active", color);
 
         // TCheckbox
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tcheckbox.inactive", color);
+        setColor("tcheckbox.inactive", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLACK);
         color.setBold(true);
-        colors.put("tcheckbox.active", color);
+        setColor("tcheckbox.active", color);
 
 
         // TRadioButton
@@ -318,131 +348,131 @@ public final class ColorTheme {
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tradiobutton.inactive", color);
+        setColor("tradiobutton.inactive", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLACK);
         color.setBold(true);
-        colors.put("tradiobutton.active", color);
+        setColor("tradiobutton.active", color);
 
         // TRadioGroup
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tradiogroup.inactive", color);
+        setColor("tradiogroup.inactive", color);
         color = new CellAttributes();
         color.setForeColor(Color.YELLOW);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("tradiogroup.active", color);
+        setColor("tradiogroup.active", color);
 
         // TMenu
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(false);
-        colors.put("tmenu", color);
+        setColor("tmenu", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.GREEN);
         color.setBold(false);
-        colors.put("tmenu.highlighted", color);
+        setColor("tmenu.highlighted", color);
         color = new CellAttributes();
         color.setForeColor(Color.RED);
         color.setBackColor(Color.WHITE);
         color.setBold(false);
-        colors.put("tmenu.mnemonic", color);
+        setColor("tmenu.mnemonic", color);
         color = new CellAttributes();
         color.setForeColor(Color.RED);
         color.setBackColor(Color.GREEN);
         color.setBold(false);
-        colors.put("tmenu.mnemonic.highlighted", color);
+        setColor("tmenu.mnemonic.highlighted", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.WHITE);
         color.setBold(true);
-        colors.put("tmenu.disabled", color);
+        setColor("tmenu.disabled", color);
 
         // TProgressBar
         color = new CellAttributes();
         color.setForeColor(Color.BLUE);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("tprogressbar.complete", color);
+        setColor("tprogressbar.complete", color);
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tprogressbar.incomplete", color);
+        setColor("tprogressbar.incomplete", color);
 
         // THScroller / TVScroller
         color = new CellAttributes();
         color.setForeColor(Color.CYAN);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tscroller.bar", color);
+        setColor("tscroller.bar", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLUE);
         color.setBackColor(Color.CYAN);
         color.setBold(false);
-        colors.put("tscroller.arrows", color);
+        setColor("tscroller.arrows", color);
 
         // TTreeView
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("ttreeview", color);
+        setColor("ttreeview", color);
         color = new CellAttributes();
         color.setForeColor(Color.GREEN);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("ttreeview.expandbutton", color);
+        setColor("ttreeview.expandbutton", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.CYAN);
         color.setBold(false);
-        colors.put("ttreeview.selected", color);
+        setColor("ttreeview.selected", color);
         color = new CellAttributes();
         color.setForeColor(Color.RED);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("ttreeview.unreadable", color);
+        setColor("ttreeview.unreadable", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("ttreeview.inactive", color);
+        setColor("ttreeview.inactive", color);
 
         // TList
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLUE);
         color.setBold(false);
-        colors.put("tlist", color);
+        setColor("tlist", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.CYAN);
         color.setBold(false);
-        colors.put("tlist.selected", color);
+        setColor("tlist.selected", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.CYAN);
         color.setBold(false);
-        colors.put("tlist.unreadable", color);
+        setColor("tlist.unreadable", color);
         color = new CellAttributes();
         color.setForeColor(Color.BLACK);
         color.setBackColor(Color.BLUE);
         color.setBold(true);
-        colors.put("tlist.inactive", color);
+        setColor("tlist.inactive", color);
 
         // TEditor
         color = new CellAttributes();
         color.setForeColor(Color.WHITE);
         color.setBackColor(Color.BLACK);
         color.setBold(false);
-        colors.put("teditor", color);
+        setColor("teditor", color);
 
     }
 
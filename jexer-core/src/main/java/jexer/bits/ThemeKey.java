@@ -0,0 +1,115 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.bits;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ThemeKey is an interned ColorTheme color name.  Each name gets one
+ * ThemeKey with a small integer id, so a ColorTheme can look its colors up
+ * by array index instead of by string.  Widgets should get their keys once,
+ * e.g. in a static field, and pass them to ColorTheme.getColor().
+ */
+public final class ThemeKey {
+
+    /**
+     * All the keys made so far, by name.
+     */
+    private static final Map<String, ThemeKey> keys =
+        new HashMap<String, ThemeKey>();
+
+    /**
+     * The color name, e.g. "twindow.border".
+     */
+    private final String name;
+
+    /**
+     * The id, unique among all keys.
+     */
+    private final int id;
+
+    /**
+     * Private constructor used by get().
+     *
+     * @param name the color name
+     * @param id the id
+     */
+    private ThemeKey(final String name, final int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Get the key for a color name, making it the first time a name is
+     * seen.  The same name always returns the same instance.
+     *
+     * @param name theme color name, e.g. "twindow.border"
+     * @return the key
+     */
+    public static ThemeKey get(final String name) {
+        synchronized (keys) {
+            ThemeKey key = keys.get(name);
+            if (key == null) {
+                key = new ThemeKey(name, keys.size());
+                keys.put(name, key);
+            }
+            return key;
+        }
+    }
+
+    /**
+     * Get the color name.
+     *
+     * @return the name, e.g. "twindow.border"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the id.  Ids start at 0 and are handed out in order.
+     *
+     * @return the id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Make human-readable description of this ThemeKey.
+     *
+     * @return the color name
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
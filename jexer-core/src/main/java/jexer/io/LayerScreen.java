@@ -0,0 +1,110 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import jexer.bits.CellBuffer;
+
+/**
+ * LayerScreen is an offscreen Screen that a TWindow draws into when the
+ * application is in retained mode.  The application composites layers onto
+ * the real Screen.  Cells start out transparent, so a layer can also carry
+ * the attribute-only cells of a window's shadow.
+ */
+public final class LayerScreen extends Screen {
+
+    /**
+     * A cell nothing was drawn to.  Bit 27 is not used by packed cells.
+     */
+    public static final int TRANSPARENT = 1 << 27;
+
+    /**
+     * Public constructor.
+     *
+     * @param width layer width
+     * @param height layer height
+     */
+    public LayerScreen(final int width, final int height) {
+        setDimensions(width, height);
+    }
+
+    /**
+     * Make every cell transparent and reset the offset and clipping.
+     */
+    public void erase() {
+        logical.fill(TRANSPARENT);
+        resetClipping();
+    }
+
+    /**
+     * Get the packed cell at one location.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @return packed cell, possibly with the TRANSPARENT bit
+     */
+    public int getLayerXY(final int x, final int y) {
+        return logical.get(x, y);
+    }
+
+    /**
+     * Put a layer cell over a cell below it.  Transparent cells leave the
+     * cell below alone, a character drawn without attributes keeps the
+     * attributes below, and attributes drawn without a character (such as
+     * a shadow) keep the character below.
+     *
+     * @param below packed cell already on the screen
+     * @param layer packed cell from a layer
+     * @return the packed cell to show
+     */
+    public static int composite(final int below, final int layer) {
+        char ch = CellBuffer.getChar(layer);
+        if ((layer & TRANSPARENT) != 0) {
+            if (ch == 0) {
+                return below;
+            }
+            return (below & CellBuffer.ATTR_MASK) | ch;
+        }
+        if (ch == 0) {
+            return (below & CellBuffer.CHAR_MASK)
+                | (layer & CellBuffer.ATTR_MASK);
+        }
+        return layer;
+    }
+
+    /**
+     * Layers are not flushed, the application composites them.
+     */
+    @Override
+    public void flushPhysical() {
+        clearDamage();
+        dirty = false;
+        reallyCleared = false;
+    }
+
+}
@@ -28,8 +28,12 @@
  */
 package jexer.io;
 
+import java.util.Arrays;
+import java.util.BitSet;
+
 import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 import jexer.bits.GraphicsChars;
 
 /**
@@ -48,6 +52,30 @@ public abstract class Screen {
      */
     protected int height;
 
+    /**
+     * Absolute column of this screen's left edge.  This is 0 except for
+     * offscreen layers (see LayerScreen).
+     */
+    private int originX;
+
+    /**
+     * Absolute row of this screen's top edge.
+     */
+    private int originY;
+
+    /**
+     * Set the absolute position of this screen's top-left corner.  Offsets
+     * passed to setOffsetX() and setOffsetY() are absolute, so widgets can
+     * draw into an offscreen layer the same way they draw to the screen.
+     *
+     * @param originX absolute column of the left edge
+     * @param originY absolute row of the top edge
+     */
+    public final void setOrigin(final int originX, final int originY) {
+        this.originX = originX;
+        this.originY = originY;
+    }
+
     /**
      * Drawing offset for x.
      */
@@ -56,10 +84,10 @@ public abstract class Screen {
     /**
      * Set drawing offset for x.
      *
-     * @param offsetX new drawing offset
+     * @param offsetX new drawing offset, in absolute coordinates
      */
     public final void setOffsetX(final int offsetX) {
-        this.offsetX = offsetX;
+        this.offsetX = offsetX - originX;
     }
 
     /**
@@ -70,10 +98,10 @@ public abstract class Screen {
     /**
      * Set drawing offset for y.
      *
-     * @param offsetY new drawing offset
+     * @param offsetY new drawing offset, in absolute coordinates
      */
     public final void setOffsetY(final int offsetY) {
-        this.offsetY = offsetY;
+        this.offsetY = offsetY - originY;
     }
 
     /**
@@ -171,12 +199,12 @@ public abstract class Screen {
     /**
      * The physical screen last sent out on flush().
      */
-    protected Cell [][] physical;
+    protected CellBuffer physical;
 
     /**
      * The logical screen being rendered to.
      */
-    protected Cell [][] logical;
+    protected CellBuffer logical;
 
     /**
      * When true, logical != physical.
@@ -193,6 +221,365 @@ public abstract class Screen {
         return dirty;
     }
 
+    /**
+     * The fewest changed rows findScroll() will move a block for.
+     */
+    private static final int MIN_SCROLL_ROWS = 2;
+
+    /**
+     * Rows of the logical screen that have been changed since the last call
+     * to clearDamage().  Every cell where logical and physical differ is
+     * inside the damage, but the damage may also cover cells that were
+     * changed and then changed back.
+     */
+    private BitSet damagedRows = new BitSet();
+
+    /**
+     * For each damaged row, the left-most column changed since the last
+     * call to clearDamage().
+     */
+    private int [] damageLeft;
+
+    /**
+     * For each damaged row, the right-most column changed since the last
+     * call to clearDamage().
+     */
+    private int [] damageRight;
+
+    /**
+     * For each row, the number of cells where logical and physical differ.
+     * Kept up to date by every write to logical, and counted again when a
+     * subclass changes physical.
+     */
+    private int [] changedCells;
+
+    /**
+     * Mark one cell of the logical screen as damaged.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     */
+    private void damage(final int x, final int y) {
+        if (damagedRows.get(y)) {
+            if (x < damageLeft[y]) {
+                damageLeft[y] = x;
+            }
+            if (x > damageRight[y]) {
+                damageRight[y] = x;
+            }
+        } else {
+            damagedRows.set(y);
+            damageLeft[y] = x;
+            damageRight[y] = x;
+        }
+    }
+
+    /**
+     * Set one cell of the logical screen, marking it damaged only if its
+     * value changes.  Writing the same value again leaves the damage alone,
+     * so redrawing an unchanged screen costs nothing to flush.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param packed the packed cell
+     */
+    private void putLogical(final int x, final int y, final int packed) {
+        int old = logical.get(x, y);
+        if (old != packed) {
+            int physicalPacked = physical.get(x, y);
+            if (old == physicalPacked) {
+                changedCells[y]++;
+            } else if (packed == physicalPacked) {
+                changedCells[y]--;
+            }
+            dirty = true;
+            damage(x, y);
+            logical.set(x, y, packed);
+        }
+    }
+
+    /**
+     * Count the cells of one row where logical and physical differ.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     */
+    private void countChanged(final int y) {
+        int n = 0;
+        for (int x = 0; x < width; x++) {
+            if (logical.get(x, y) != physical.get(x, y)) {
+                n++;
+            }
+        }
+        changedCells[y] = n;
+    }
+
+    /**
+     * Mark the entire screen as damaged.
+     */
+    protected final void damageAll() {
+        damageRows(0, height);
+    }
+
+    /**
+     * Mark entire rows as damaged.  Subclasses call this after they change
+     * physical themselves.
+     *
+     * @param top top row (inclusive)
+     * @param bottom bottom row (exclusive)
+     */
+    protected final void damageRows(final int top, final int bottom) {
+        damagedRows.set(top, bottom);
+        for (int y = top; y < bottom; y++) {
+            damageLeft[y] = 0;
+            damageRight[y] = width - 1;
+            countChanged(y);
+        }
+    }
+
+    /**
+     * Forget all damage.  Subclasses call this after they have brought the
+     * physical screen up to date in flushPhysical().
+     */
+    protected final void clearDamage() {
+        damagedRows.clear();
+        Arrays.fill(changedCells, 0);
+    }
+
+    /**
+     * Find the next damaged row.  Backends can iterate the damaged rows
+     * with:
+     *
+     * <p><pre>
+     *   for (int y = nextDamagedRow(0); y &gt;= 0; y = nextDamagedRow(y + 1))
+     * </pre>
+     *
+     * @param y row to start searching from
+     * @return the first damaged row at or below y, or -1 if there are none
+     */
+    public final int nextDamagedRow(final int y) {
+        if (y >= height) {
+            return -1;
+        }
+        return damagedRows.nextSetBit(y);
+    }
+
+    /**
+     * See if a row has been damaged.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @return true if at least one cell on row y has been changed since the
+     * last flush
+     */
+    public final boolean isRowDamaged(final int y) {
+        return damagedRows.get(y);
+    }
+
+    /**
+     * Get the left edge of the damaged span on a row.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @return the left-most damaged column (inclusive), or width if the row
+     * is not damaged
+     */
+    public final int getDamageLeft(final int y) {
+        if (!damagedRows.get(y)) {
+            return width;
+        }
+        return damageLeft[y];
+    }
+
+    /**
+     * Get the right edge of the damaged span on a row.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @return one past the right-most damaged column (exclusive), or 0 if
+     * the row is not damaged
+     */
+    public final int getDamageRight(final int y) {
+        if (!damagedRows.get(y)) {
+            return 0;
+        }
+        return damageRight[y] + 1;
+    }
+
+    /**
+     * See if a row differs between the logical and physical screens.  This
+     * does not look at the row: every write keeps a count of the cells that
+     * differ, so a row that was redrawn with what it already showed is
+     * unchanged even though it is damaged.
+     *
+     * @param y row coordinate.  0 is the top-most row.
+     * @return true if row y needs to be drawn
+     */
+    public final boolean isRowChanged(final int y) {
+        return (changedCells[y] > 0);
+    }
+
+    /**
+     * Find the next row that differs between the logical and physical
+     * screens.  Backends can iterate the rows to draw with:
+     *
+     * <p><pre>
+     *   for (int y = nextChangedRow(0); y &gt;= 0; y = nextChangedRow(y + 1))
+     * </pre>
+     *
+     * @param y row to start searching from
+     * @return the first changed row at or below y, or -1 if there are none
+     */
+    public final int nextChangedRow(final int y) {
+        for (int i = y; i < height; i++) {
+            if (isRowChanged(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * For each row, true if findScroll() found it changed.  Reused between
+     * calls.
+     */
+    private boolean [] scrollChanged = new boolean[0];
+
+    /**
+     * Look for a block of rows that moved vertically between the physical
+     * and logical screens, such as text scrolling in a window.  A backend
+     * that can move pixels or scroll the terminal can do that, call
+     * scrollPhysical(), and then draw only the rows that are still
+     * different.
+     *
+     * <p>Blocks are only looked for starting at changed rows, trying the
+     * smallest shifts first, and the first one that fixes at least
+     * MIN_SCROLL_ROWS changed rows is taken.
+     *
+     * @return a block worth moving, or null if there is none
+     */
+    protected final ScrollRegion findScroll() {
+        // Find the rows and columns that changed.
+        boolean [] changed = scrollChanged;
+        Arrays.fill(changed, false);
+        int changedRows = 0;
+        int top = -1;
+        int bottom = -1;
+        int left = width;
+        int right = 0;
+        for (int y = nextDamagedRow(0); y >= 0; y = nextDamagedRow(y + 1)) {
+            if (changedCells[y] == 0) {
+                continue;
+            }
+            int first = logical.mismatch(physical, y, damageLeft[y],
+                damageRight[y] + 1);
+            if (first < 0) {
+                continue;
+            }
+            int last = logical.mismatchRight(physical, y, first,
+                damageRight[y] + 1);
+            changed[y] = true;
+            changedRows++;
+            if (top < 0) {
+                top = y;
+            }
+            bottom = y + 1;
+            left = Math.min(left, first);
+            right = Math.max(right, last + 1);
+        }
+        if (changedRows < MIN_SCROLL_ROWS) {
+            return null;
+        }
+
+        // A block starts at a changed row that matches a row of physical
+        // some distance away, and runs for as long as the rows below keep
+        // matching at that distance.
+        int maxShift = bottom - top - 1;
+        for (int y = top; y < bottom; y++) {
+            if (!changed[y]) {
+                continue;
+            }
+            for (int distance = 1; distance <= maxShift; distance++) {
+                for (int shift = distance; shift >= -distance;
+                     shift -= 2 * distance) {
+
+                    if (!scrollMatch(y, shift, left, right)) {
+                        continue;
+                    }
+                    int last = y;
+                    int fixed = 1;
+                    while ((last + 1 < bottom)
+                        && scrollMatch(last + 1, shift, left, right)
+                    ) {
+                        last++;
+                        if (changed[last]) {
+                            fixed++;
+                        }
+                    }
+                    if (fixed < MIN_SCROLL_ROWS) {
+                        continue;
+                    }
+                    if (shift > 0) {
+                        return new ScrollRegion(left, right, y,
+                            last + shift + 1, shift);
+                    }
+                    return new ScrollRegion(left, right, y + shift,
+                        last + 1, shift);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * See if part of a logical row matches a physical row some distance
+     * away.  For whole rows, different row hashes rule out a match without
+     * looking at the cells.
+     *
+     * @param y logical row
+     * @param shift distance to the physical row
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @return true if the spans are identical
+     */
+    private boolean scrollMatch(final int y, final int shift, final int left,
+        final int right) {
+
+        int physicalY = y + shift;
+        if ((physicalY < 0) || (physicalY >= height)) {
+            return false;
+        }
+        if ((left == 0)
+            && (right == width)
+            && (logical.getRowHash(y) != physical.getRowHash(physicalY))
+        ) {
+            return false;
+        }
+        return logical.rowEquals(y, physical, physicalY, left, right);
+    }
+
+    /**
+     * Move rows of the physical screen the way a backend just moved them on
+     * the device.  Rows the block moved away from keep their old contents.
+     *
+     * @param scroll the block to move, usually from findScroll()
+     */
+    protected final void scrollPhysical(final ScrollRegion scroll) {
+        int shift = scroll.getShift();
+        if (shift > 0) {
+            for (int y = scroll.getTop(); y < scroll.getBottom() - shift; y++) {
+                physical.copyRow(physical, y + shift, y, scroll.getLeft(),
+                    scroll.getRight());
+            }
+        } else {
+            for (int y = scroll.getBottom() - 1; y >= scroll.getTop() - shift;
+                 y--) {
+
+                physical.copyRow(physical, y + shift, y, scroll.getLeft(),
+                    scroll.getRight());
+            }
+        }
+        for (int y = scroll.getTop(); y < scroll.getBottom(); y++) {
+            countChanged(y);
+        }
+    }
+
     /**
      * Set if the user explicitly wants to redraw everything starting with a
      * ECMATerminal.clearAll().
@@ -225,11 +612,27 @@ public abstract class Screen {
     public final CellAttributes getAttrXY(final int x, final int y) {
         CellAttributes attr = new CellAttributes();
         if ((x >= 0) && (x < width) && (y >= 0) && (y < height)) {
-            attr.setTo(logical[x][y]);
+            CellBuffer.unpack(logical.get(x, y), attr);
         }
         return attr;
     }
 
+    /**
+     * Get the packed cell (see CellBuffer) at one location.  This ignores
+     * clipping and offset.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @return packed character and attributes at (x, y), or BLANK if (x, y)
+     * is off-screen
+     */
+    public final int getPackedXY(final int x, final int y) {
+        if ((x >= 0) && (x < width) && (y >= 0) && (y < height)) {
+            return logical.get(x, y);
+        }
+        return CellBuffer.BLANK;
+    }
+
     /**
      * Set the attributes at one location.
      *
@@ -270,14 +673,8 @@ public abstract class Screen {
         }
 
         if ((X >= 0) && (X < width) && (Y >= 0) && (Y < height)) {
-            dirty = true;
-            logical[X][Y].setForeColor(attr.getForeColor());
-            logical[X][Y].setBackColor(attr.getBackColor());
-            logical[X][Y].setBold(attr.isBold());
-            logical[X][Y].setBlink(attr.isBlink());
-            logical[X][Y].setReverse(attr.isReverse());
-            logical[X][Y].setUnderline(attr.isUnderline());
-            logical[X][Y].setProtect(attr.isProtect());
+            putLogical(X, Y, (logical.get(X, Y) & CellBuffer.CHAR_MASK)
+                | CellBuffer.packAttr(attr));
         }
     }
 
@@ -289,9 +686,10 @@ public abstract class Screen {
      */
     public final void putAll(final char ch, final CellAttributes attr) {
 
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                putCharXY(x, y, ch, attr);
+        int packed = CellBuffer.pack(ch, attr);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                putPackedXY(x, y, packed);
             }
         }
     }
@@ -307,6 +705,36 @@ public abstract class Screen {
         putCharXY(x, y, ch.getChar(), ch);
     }
 
+    /**
+     * Render one packed cell (see CellBuffer).
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     * @param packed character + attributes to draw
+     */
+    public final void putPackedXY(final int x, final int y,
+        final int packed) {
+
+        if ((x < clipLeft)
+            || (x >= clipRight)
+            || (y < clipTop)
+            || (y >= clipBottom)
+        ) {
+            return;
+        }
+
+        int X = x + offsetX;
+        int Y = y + offsetY;
+
+        if ((X >= 0) && (X < width) && (Y >= 0) && (Y < height)) {
+            // Do not put control characters on the display
+            assert (CellBuffer.getChar(packed) >= 0x20);
+            assert (CellBuffer.getChar(packed) != 0x7F);
+
+            putLogical(X, Y, packed);
+        }
+    }
+
     /**
      * Render one character with attributes.
      *
@@ -332,20 +760,11 @@ public abstract class Screen {
         // System.err.printf("putCharXY: %d, %d, %c\n", X, Y, ch);
 
         if ((X >= 0) && (X < width) && (Y >= 0) && (Y < height)) {
-            dirty = true;
-
             // Do not put control characters on the display
             assert (ch >= 0x20);
             assert (ch != 0x7F);
 
-            logical[X][Y].setChar(ch);
-            logical[X][Y].setForeColor(attr.getForeColor());
-            logical[X][Y].setBackColor(attr.getBackColor());
-            logical[X][Y].setBold(attr.isBold());
-            logical[X][Y].setBlink(attr.isBlink());
-            logical[X][Y].setReverse(attr.isReverse());
-            logical[X][Y].setUnderline(attr.isUnderline());
-            logical[X][Y].setProtect(attr.isProtect());
+            putLogical(X, Y, CellBuffer.pack(ch, attr));
         }
     }
 
@@ -372,8 +791,7 @@ public abstract class Screen {
         // System.err.printf("putCharXY: %d, %d, %c\n", X, Y, ch);
 
         if ((X >= 0) && (X < width) && (Y >= 0) && (Y < height)) {
-            dirty = true;
-            logical[X][Y].setChar(ch);
+            putLogical(X, Y, (logical.get(X, Y) & CellBuffer.ATTR_MASK) | ch);
         }
     }
 
@@ -388,10 +806,12 @@ public abstract class Screen {
     public final void putStringXY(final int x, final int y, final String str,
         final CellAttributes attr) {
 
+        // Pack the attributes once rather than once per cell.
+        int packedAttr = CellBuffer.packAttr(attr);
         int i = x;
         for (int j = 0; j < str.length(); j++) {
             char ch = str.charAt(j);
-            putCharXY(i, y, ch, attr);
+            putPackedXY(i, y, packedAttr | ch);
             i++;
             if (i == width) {
                 break;
@@ -432,8 +852,9 @@ public abstract class Screen {
     public final void vLineXY(final int x, final int y, final int n,
         final char ch, final CellAttributes attr) {
 
+        int packed = CellBuffer.pack(ch, attr);
         for (int i = y; i < y + n; i++) {
-            putCharXY(x, i, ch, attr);
+            putPackedXY(x, i, packed);
         }
     }
 
@@ -449,8 +870,9 @@ public abstract class Screen {
     public final void hLineXY(final int x, final int y, final int n,
         final char ch, final CellAttributes attr) {
 
+        int packed = CellBuffer.pack(ch, attr);
         for (int i = x; i < x + n; i++) {
-            putCharXY(i, y, ch, attr);
+            putPackedXY(i, y, packed);
         }
     }
 
@@ -461,31 +883,12 @@ public abstract class Screen {
      * @param height new height
      */
     private synchronized void reallocate(final int width, final int height) {
-        if (logical != null) {
-            for (int row = 0; row < this.height; row++) {
-                for (int col = 0; col < this.width; col++) {
-                    logical[col][row] = null;
-                }
-            }
-            logical = null;
-        }
-        logical = new Cell[width][height];
-        if (physical != null) {
-            for (int row = 0; row < this.height; row++) {
-                for (int col = 0; col < this.width; col++) {
-                    physical[col][row] = null;
-                }
-            }
-            physical = null;
-        }
-        physical = new Cell[width][height];
-
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                physical[col][row] = new Cell();
-                logical[col][row] = new Cell();
-            }
-        }
+        logical = new CellBuffer(width, height, true);
+        physical = new CellBuffer(width, height, true);
+        scrollChanged = new boolean[height];
+        damageLeft = new int[height];
+        damageRight = new int[height];
+        changedCells = new int[height];
 
         this.width = width;
         this.height = height;
@@ -497,6 +900,8 @@ public abstract class Screen {
 
         reallyCleared = true;
         dirty = true;
+        damagedRows.clear();
+        damageAll();
     }
 
     /**
@@ -566,10 +971,10 @@ public abstract class Screen {
      * clip variables.
      */
     public final synchronized void reset() {
-        dirty = true;
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                logical[col][row].reset();
+        // Only the cells that were not blank already are damaged.
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                putLogical(x, y, CellBuffer.BLANK);
             }
         }
         resetClipping();
@@ -599,11 +1004,8 @@ public abstract class Screen {
      */
     public final void clearPhysical() {
         dirty = true;
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                physical[col][row].reset();
-            }
-        }
+        physical.fill(CellBuffer.BLANK);
+        damageAll();
     }
 
     /**
@@ -770,6 +1172,6 @@ public abstract class Screen {
      * Hide the cursor.
      */
     public final void hideCursor() {
-        cursorVisible = false;
+        putCursor(false, cursorX, cursorY);
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+/**
+ * A block of rows that moved vertically between the physical and logical
+ * screens, as found by Screen.findScroll().  Within columns [left, right)
+ * and rows [top, bottom), each logical row y equals physical row y +
+ * shift, for every y where both rows are inside the region.
+ */
+public final class ScrollRegion {
+
+    /**
+     * Left column (inclusive).
+     */
+    private final int left;
+
+    /**
+     * Right column (exclusive).
+     */
+    private final int right;
+
+    /**
+     * Top row (inclusive).
+     */
+    private final int top;
+
+    /**
+     * Bottom row (exclusive).
+     */
+    private final int bottom;
+
+    /**
+     * Number of rows the contents moved up, or negative for down.
+     */
+    private final int shift;
+
+    /**
+     * Public constructor.
+     *
+     * @param left left column (inclusive)
+     * @param right right column (exclusive)
+     * @param top top row (inclusive)
+     * @param bottom bottom row (exclusive)
+     * @param shift number of rows the contents moved up, or negative for
+     * down
+     */
+    public ScrollRegion(final int left, final int right, final int top,
+        final int bottom, final int shift) {
+
+        this.left = left;
+        this.right = right;
+        this.top = top;
+        this.bottom = bottom;
+        this.shift = shift;
+    }
+
+    /**
+     * Get the left column.
+     *
+     * @return the left column (inclusive)
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the right column.
+     *
+     * @return the right column (exclusive)
+     */
+    public int getRight() {
+        return right;
+    }
+
+    /**
+     * Get the top row.
+     *
+     * @return the top row (inclusive)
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Get the bottom row.
+     *
+     * @return the bottom row (exclusive)
+     */
+    public int getBottom() {
+        return bottom;
+    }
+
+    /**
+     * Get the shift.
+     *
+     * @return number of rows the contents moved up, or negative for down
+     */
+    public int getShift() {
+        return shift;
+    }
+
+    /**
+     * Make human-readable description of this ScrollRegion.
+     *
+     * @return displayable String
+     */
+    @Override
+    public String toString() {
+        return String.format("ScrollRegion: columns %d-%d rows %d-%d shift %d",
+            left, right, top, bottom, shift);
+    }
+
+}
@@ -51,6 +51,7 @@ import jexer.TWindow;
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
 import jexer.bits.MnemonicString;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 
@@ -59,6 +60,11 @@ import jexer.event.TMouseEvent;
  */
 public final class TMenu extends TWindow {
 
+    /**
+     * Theme color "tmenu".
+     */
+    private static final ThemeKey TMENU = ThemeKey.get("tmenu");
+
     /**
      * If true, this is a sub-menu.  Note package private access.
      */
@@ -139,7 +145,7 @@ public final class TMenu extends TWindow {
      */
     @Override
     public void draw() {
-        CellAttributes background = getTheme().getColor("tmenu");
+        CellAttributes background = getTheme().getColor(TMENU);
 
         assert (isAbsoluteActive());
 
@@ -35,6 +35,7 @@ import jexer.TWidget;
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
 import jexer.bits.MnemonicString;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMenuEvent;
 import jexer.event.TMouseEvent;
@@ -44,6 +45,35 @@ import jexer.event.TMouseEvent;
  */
 public class TMenuItem extends TWidget {
 
+    /**
+     * Theme color "tmenu".
+     */
+    private static final ThemeKey TMENU = ThemeKey.get("tmenu");
+
+    /**
+     * Theme color "tmenu.highlighted".
+     */
+    private static final ThemeKey TMENU_HIGHLIGHTED =
+        ThemeKey.get("tmenu.highlighted");
+
+    /**
+     * Theme color "tmenu.mnemonic.highlighted".
+     */
+    private static final ThemeKey TMENU_MNEMONIC_HIGHLIGHTED =
+        ThemeKey.get("tmenu.mnemonic.highlighted");
+
+    /**
+     * Theme color "tmenu.mnemonic".
+     */
+    private static final ThemeKey TMENU_MNEMONIC =
+        ThemeKey.get("tmenu.mnemonic");
+
+    /**
+     * Theme color "tmenu.disabled".
+     */
+    private static final ThemeKey TMENU_DISABLED =
+        ThemeKey.get("tmenu.disabled");
+
     /**
      * Label for this menu item.
      */
@@ -212,19 +242,19 @@ public class TMenuItem extends TWidget {
      */
     @Override
     public void draw() {
-        CellAttributes background = getTheme().getColor("tmenu");
+        CellAttributes background = getTheme().getColor(TMENU);
         CellAttributes menuColor;
         CellAttributes menuMnemonicColor;
         if (isAbsoluteActive()) {
-            menuColor = getTheme().getColor("tmenu.highlighted");
-            menuMnemonicColor = getTheme().getColor("tmenu.mnemonic.highlighted");
+            menuColor = getTheme().getColor(TMENU_HIGHLIGHTED);
+            menuMnemonicColor = getTheme().getColor(TMENU_MNEMONIC_HIGHLIGHTED);
         } else {
             if (isEnabled()) {
-                menuColor = getTheme().getColor("tmenu");
-                menuMnemonicColor = getTheme().getColor("tmenu.mnemonic");
+                menuColor = getTheme().getColor(TMENU);
+                menuMnemonicColor = getTheme().getColor(TMENU_MNEMONIC);
             } else {
-                menuColor = getTheme().getColor("tmenu.disabled");
-                menuMnemonicColor = getTheme().getColor("tmenu.disabled");
+                menuColor = getTheme().getColor(TMENU_DISABLED);
+                menuMnemonicColor = getTheme().getColor(TMENU_DISABLED);
             }
         }
 
@@ -30,12 +30,18 @@ package jexer.menu;
 
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 
 /**
  * TMenuSeparator is a special case menu item.
  */
 public final class TMenuSeparator extends TMenuItem {
 
+    /**
+     * Theme color "tmenu".
+     */
+    private static final ThemeKey TMENU = ThemeKey.get("tmenu");
+
     /**
      * Package private constructor.
      *
@@ -55,7 +61,7 @@ public final class TMenuSeparator extends TMenuItem {
      */
     @Override
     public void draw() {
-        CellAttributes background = getTheme().getColor("tmenu");
+        CellAttributes background = getTheme().getColor(TMENU);
 
         getScreen().putCharXY(0, 0, GraphicsChars.CP437[0xC3], background);
         getScreen().putCharXY(getWidth() - 1, 0, GraphicsChars.CP437[0xB4],
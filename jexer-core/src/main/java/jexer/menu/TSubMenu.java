@@ -39,6 +39,7 @@ import jexer.TKeypress;
 import jexer.TWidget;
 import jexer.bits.CellAttributes;
 import jexer.bits.GraphicsChars;
+import jexer.bits.ThemeKey;
 import jexer.event.TKeypressEvent;
 
 /**
@@ -46,6 +47,23 @@ import jexer.event.TKeypressEvent;
  */
 public final class TSubMenu extends TMenuItem {
 
+    /**
+     * Theme color "tmenu.highlighted".
+     */
+    private static final ThemeKey TMENU_HIGHLIGHTED =
+        ThemeKey.get("tmenu.highlighted");
+
+    /**
+     * Theme color "tmenu".
+     */
+    private static final ThemeKey TMENU = ThemeKey.get("tmenu");
+
+    /**
+     * Theme color "tmenu.disabled".
+     */
+    private static final ThemeKey TMENU_DISABLED =
+        ThemeKey.get("tmenu.disabled");
+
     /**
      * The menu window.  Note package private access.
      */
@@ -82,12 +100,12 @@ public final class TSubMenu extends TMenuItem {
 
         CellAttributes menuColor;
         if (isAbsoluteActive()) {
-            menuColor = getTheme().getColor("tmenu.highlighted");
+            menuColor = getTheme().getColor(TMENU_HIGHLIGHTED);
         } else {
             if (isEnabled()) {
-                menuColor = getTheme().getColor("tmenu");
+                menuColor = getTheme().getColor(TMENU);
             } else {
-                menuColor = getTheme().getColor("tmenu.disabled");
+                menuColor = getTheme().getColor(TMENU_DISABLED);
             }
         }
 
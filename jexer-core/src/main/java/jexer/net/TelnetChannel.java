@@ -0,0 +1,1178 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.net;
+
+import static jexer.net.TelnetSocket.C_CR;
+import static jexer.net.TelnetSocket.C_LF;
+import static jexer.net.TelnetSocket.C_NUL;
+import static jexer.net.TelnetSocket.TELNET_DO;
+import static jexer.net.TelnetSocket.TELNET_DONT;
+import static jexer.net.TelnetSocket.TELNET_IAC;
+import static jexer.net.TelnetSocket.TELNET_SB;
+import static jexer.net.TelnetSocket.TELNET_SE;
+import static jexer.net.TelnetSocket.TELNET_WILL;
+import static jexer.net.TelnetSocket.TELNET_WONT;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import jexer.backend.OutputBacklog;
+import jexer.session.SessionInfo;
+
+/**
+ * TelnetChannel is one connection of a TelnetChannelServer.  It performs
+ * the same server-side telnet protocol as TelnetInputStream and
+ * TelnetOutputStream, but as a state machine over ByteBuffers driven by
+ * the server's selector thread.  Output may be written from any thread; it
+ * is queued here and sent when the socket is writable.
+ */
+public final class TelnetChannel implements SessionInfo {
+
+    /**
+     * The server that owns my selector.
+     */
+    private TelnetChannelServer server;
+
+    /**
+     * The non-blocking socket.
+     */
+    private SocketChannel channel;
+
+    /**
+     * My registration with the server's selector.
+     */
+    private SelectionKey key;
+
+    /**
+     * Guards the output buffer and the channel state shared with the
+     * selector thread.  This is a ReentrantLock rather than a monitor so
+     * that a virtual thread blocked in write() does not pin its carrier.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when the selector thread sends output or the channel
+     * closes, to wake a write() waiting for room.
+     */
+    private final Condition outputSent = lock.newCondition();
+
+    /**
+     * Encoded bytes waiting to be sent, in fill mode.  Guarded by lock.
+     */
+    private ByteBuffer output = ByteBuffer.allocate(1024);
+
+    /**
+     * The most bytes the output buffer may hold.  A remote side that lets
+     * this much pile up is not reading, and its connection is dropped.
+     */
+    public static final int MAX_OUTPUT = 1024 * 1024;
+
+    /**
+     * How long write() waits for room in the output buffer before it drops
+     * the connection, in millis.
+     */
+    private static final long WRITE_TIMEOUT = 10000;
+
+    /**
+     * If true, the output buffer filled up and the channel will be closed
+     * without sending what is in it.  Guarded by lock.
+     */
+    private boolean dropped = false;
+
+    /**
+     * The object attached with attach(), usually the session served over
+     * this connection.
+     */
+    private volatile Object attachment = null;
+
+    /**
+     * If true, this channel is waiting in the server's queue.  Guarded by
+     * lock.
+     */
+    private boolean queued = false;
+
+    /**
+     * If true, close() was called and the channel will be closed once its
+     * output is sent.  Guarded by lock.
+     */
+    private boolean closing = false;
+
+    /**
+     * If true, the socket has been closed.  Only used on the selector
+     * thread.
+     */
+    private boolean closed = false;
+
+    /**
+     * Package private constructor.
+     *
+     * @param server the server that accepted this connection
+     * @param channel the non-blocking socket
+     */
+    TelnetChannel(final TelnetChannelServer server,
+        final SocketChannel channel) {
+
+        this.server  = server;
+        this.channel = channel;
+    }
+
+    /**
+     * Attach an object to this connection, such as the backend of the
+     * session it serves, for the TelnetChannelListener to find again.
+     *
+     * @param attachment the object, or null
+     */
+    public void attach(final Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Get the object attached with attach().
+     *
+     * @return the object, or null
+     */
+    public Object attachment() {
+        return attachment;
+    }
+
+    /**
+     * Get the underlying socket.
+     *
+     * @return the SocketChannel
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * See if this connection is in ASCII mode.
+     *
+     * @return if true, this connection is in ASCII mode
+     */
+    public boolean isAscii() {
+        return (!binaryMode);
+    }
+
+    /**
+     * Get the terminal type reported by the client.
+     *
+     * @return the terminal type, or an empty string
+     */
+    public String getTerminalType() {
+        return terminalType;
+    }
+
+    /**
+     * Get the terminal speed reported by the client.
+     *
+     * @return the terminal speed, or an empty string
+     */
+    public String getTerminalSpeed() {
+        return terminalSpeed;
+    }
+
+    /**
+     * Get an OutputStream that writes to this connection.  flush() and
+     * close() only hand the data to the selector thread.  write() blocks
+     * only while MAX_OUTPUT bytes are waiting to be sent, so it must not be
+     * called from the selector thread.  The stream implements OutputBacklog
+     * so that the backend can see how much of it the remote side has not
+     * taken yet, and send less before it comes to that.
+     *
+     * @return the OutputStream
+     */
+    public OutputStream getOutputStream() {
+        return new ChannelOutputStream();
+    }
+
+    /**
+     * The OutputStream returned by getOutputStream().
+     */
+    private final class ChannelOutputStream extends OutputStream
+                                            implements OutputBacklog {
+
+        @Override
+        public void write(final int b) throws IOException {
+            TelnetChannel.this.write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off,
+            final int len) throws IOException {
+
+            TelnetChannel.this.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            TelnetChannel.this.flush();
+        }
+
+        @Override
+        public void close() {
+            TelnetChannel.this.close();
+        }
+
+        @Override
+        public int getPendingOutput() {
+            return TelnetChannel.this.getPendingOutput();
+        }
+    }
+
+    /**
+     * Get the number of bytes that were written but not yet accepted by the
+     * socket.
+     *
+     * @return the number of bytes
+     */
+    public int getPendingOutput() {
+        lock.lock();
+        try {
+            return output.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue bytes to be sent to the remote side.  They are handed to the
+     * selector thread on the next flush().  If MAX_OUTPUT bytes are already
+     * waiting, this waits for the selector thread to send some of them, and
+     * drops the connection if the remote side takes none for
+     * WRITE_TIMEOUT.  It must not be called from the selector thread.
+     *
+     * @param b the data
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException if the channel is closed or was dropped
+     */
+    public void write(final byte[] b, final int off,
+        final int len) throws IOException {
+
+        lock.lock();
+        try {
+            if (closing) {
+                throw new IOException("TelnetChannel is closed");
+            }
+            // Each byte could become up to 4 bytes (CR NUL IAC IAC).
+            int n = len * 4;
+            if ((output.position() > 0)
+                && (output.position() + n > MAX_OUTPUT)
+            ) {
+                waitForOutput(n);
+            }
+            if (!reserve(n)) {
+                throw new IOException("TelnetChannel output is full");
+            }
+            for (int i = off; i < off + len; i++) {
+                encode(b[i]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the selector thread to send enough output to make room.
+     * Must be called with lock held.
+     *
+     * @param n the number of bytes about to be put
+     * @throws IOException if the channel is closed, or was dropped because
+     * the remote side took nothing for WRITE_TIMEOUT
+     */
+    private void waitForOutput(final int n) throws IOException {
+        // Send what is there even if the caller has not flushed.
+        requestService();
+
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT;
+        int position = output.position();
+        while ((output.position() > 0)
+            && (output.position() + n > MAX_OUTPUT)
+        ) {
+            if (closing) {
+                throw new IOException("TelnetChannel is closed");
+            }
+            if (output.position() < position) {
+                // Some was sent, so the remote side is still reading.
+                position = output.position();
+                deadline = System.currentTimeMillis() + WRITE_TIMEOUT;
+            }
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                drop();
+                throw new IOException("TelnetChannel output is full");
+            }
+            try {
+                outputSent.await(wait, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for "
+                    + "TelnetChannel output");
+            }
+        }
+    }
+
+    /**
+     * Send everything written so far.  This does not block.
+     *
+     * @throws IOException if the channel is closed
+     */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            if (closing) {
+                throw new IOException("TelnetChannel is closed");
+            }
+            if ((binaryMode == false) && (writeCR == true)) {
+                // CR <anything> -> CR NULL
+                if (!reserve(2)) {
+                    throw new IOException("TelnetChannel output is full");
+                }
+                output.put((byte) C_CR);
+                output.put((byte) C_NUL);
+                writeCR = false;
+            }
+            if (output.position() == 0) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        requestService();
+    }
+
+    /**
+     * Close the connection after the pending output has been sent.  The
+     * listener's channelClosed() is called from the selector thread.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            if (closing) {
+                return;
+            }
+            closing = true;
+        } finally {
+            lock.unlock();
+        }
+        requestService();
+    }
+
+    // SessionInfo interface --------------------------------------------------
+
+    /**
+     * User name.
+     */
+    private volatile String username = "";
+
+    /**
+     * Language.
+     */
+    private volatile String language = "en_US";
+
+    /**
+     * Text window width.
+     */
+    private volatile int windowWidth = 80;
+
+    /**
+     * Text window height.
+     */
+    private volatile int windowHeight = 24;
+
+    /**
+     * Username getter.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Username setter.
+     *
+     * @param username the value
+     */
+    public void setUsername(final String username) {
+        this.username = username;
+    }
+
+    /**
+     * Language getter.
+     *
+     * @return the language
+     */
+    public String getLanguage() {
+        return this.language;
+    }
+
+    /**
+     * Language setter.
+     *
+     * @param language the value
+     */
+    public void setLanguage(final String language) {
+        this.language = language;
+    }
+
+    /**
+     * Text window width getter.
+     *
+     * @return the window width
+     */
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Text window height getter.
+     *
+     * @return the window height
+     */
+    public int getWindowHeight() {
+        return windowHeight;
+    }
+
+    /**
+     * Re-query the text window size.
+     */
+    public void queryWindowSize() {
+        // NOP
+    }
+
+    // Selector thread --------------------------------------------------------
+
+    /**
+     * Register with the selector and send the options we want to negotiate.
+     * Called from the selector thread.
+     *
+     * @param key the SelectionKey for this channel
+     */
+    void open(final SelectionKey key) {
+        this.key = key;
+        lock.lock();
+        try {
+            telnetSendOptions();
+        } finally {
+            lock.unlock();
+        }
+        service();
+    }
+
+    /**
+     * Hand this channel to the selector thread.
+     */
+    private void requestService() {
+        lock.lock();
+        try {
+            if (queued) {
+                return;
+            }
+            queued = true;
+        } finally {
+            lock.unlock();
+        }
+        server.requestService(this);
+    }
+
+    /**
+     * Update the interest set after a write() or close() from another
+     * thread.  Called from the selector thread.
+     */
+    void service() {
+        if (closed) {
+            return;
+        }
+        boolean pending;
+        boolean closeNow;
+        lock.lock();
+        try {
+            queued = false;
+            pending = (output.position() > 0);
+            closeNow = dropped || (closing && !pending);
+        } finally {
+            lock.unlock();
+        }
+        if (closeNow) {
+            closeNow();
+        } else if (pending) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Send as much pending output as the socket will take.  Called from the
+     * selector thread when the socket is writable.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void writeReady() throws IOException {
+        boolean pending;
+        boolean closeNow;
+        lock.lock();
+        try {
+            output.flip();
+            channel.write(output);
+            output.compact();
+            pending = (output.position() > 0);
+            closeNow = dropped || (closing && !pending);
+            // Wake a write() waiting for room.
+            outputSent.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (closeNow) {
+            closeNow();
+        } else if (!pending) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Run freshly read bytes through the telnet protocol.  Called from the
+     * selector thread.
+     *
+     * @param in the bytes read from the socket
+     * @param buf the buffer into which the data is decoded.  It must hold
+     * in.remaining() + 1 bytes.
+     * @return the number of decoded bytes in buf
+     */
+    int readReady(final ByteBuffer in, final byte [] buf) {
+        int bufN;
+        boolean pending;
+        lock.lock();
+        try {
+            int before = output.position();
+            bufN = decode(in, buf);
+            pending = (output.position() > before);
+        } finally {
+            lock.unlock();
+        }
+        if (pending) {
+            // Option negotiation produced a response.
+            service();
+        }
+        return bufN;
+    }
+
+    /**
+     * Close the socket now, dropping any pending output.  Called from the
+     * selector thread.
+     */
+    void closeNow() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        lock.lock();
+        try {
+            closing = true;
+            outputSent.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // SQUASH
+        }
+        server.channelClosed(this);
+    }
+
+    // Telnet protocol --------------------------------------------------------
+
+    /**
+     * If true, telnet ECHO mode is set such that local echo is off and
+     * remote echo is on.
+     */
+    private boolean echoMode = false;
+
+    /**
+     * If true, telnet BINARY mode is enabled.
+     */
+    private volatile boolean binaryMode = false;
+
+    /**
+     * If true, the SUPPRESS-GO-AHEAD option is enabled.
+     */
+    private boolean goAhead = true;
+
+    /**
+     * If true, request the client terminal type.
+     */
+    private boolean doTermType = true;
+
+    /**
+     * If true, request the client terminal speed.
+     */
+    private boolean doTermSpeed = true;
+
+    /**
+     * If true, request the Negotiate About Window Size option.
+     */
+    private boolean doNAWS = true;
+
+    /**
+     * If true, request the New Environment option.
+     */
+    private boolean doEnvironment = true;
+
+    /**
+     * The terminal type reported by the client.
+     */
+    private volatile String terminalType = "";
+
+    /**
+     * The terminal speed reported by the client.
+     */
+    private volatile String terminalSpeed = "";
+
+    /**
+     * When true, the last read byte from the remote side was IAC.
+     */
+    private boolean iac = false;
+
+    /**
+     * When true, we are in the middle of a DO/DONT/WILL/WONT negotiation.
+     */
+    private boolean dowill = false;
+
+    /**
+     * The telnet option being negotiated.
+     */
+    private int dowillType = 0;
+
+    /**
+     * When true, we are waiting to see the end of the sub-negotiation
+     * sequence.
+     */
+    private boolean subnegEnd = false;
+
+    /**
+     * When true, the last byte read from the remote side was CR.
+     */
+    private boolean readCR = false;
+
+    /**
+     * When true, the last byte the caller passed to write() was a CR.
+     */
+    private boolean writeCR = false;
+
+    /**
+     * The subnegotiation buffer.
+     */
+    private byte [] subnegBuffer = new byte[64];
+
+    /**
+     * The number of bytes in subnegBuffer.
+     */
+    private int subnegN = 0;
+
+    /**
+     * Make room in the output buffer.  The buffer does not grow past
+     * MAX_OUTPUT: if there is no room left, the connection is dropped.
+     *
+     * @param n the number of bytes about to be put
+     * @return true if there is room, false if the connection was dropped
+     */
+    private boolean reserve(final int n) {
+        if (output.remaining() >= n) {
+            return true;
+        }
+        if ((output.position() > 0) && (output.position() + n > MAX_OUTPUT)) {
+            drop();
+            return false;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(Math.min(
+            output.capacity() * 2, MAX_OUTPUT), output.position() + n));
+        output.flip();
+        bigger.put(output);
+        output = bigger;
+        return true;
+    }
+
+    /**
+     * Close the connection without sending the pending output, because the
+     * remote side is not taking it.  Must be called with lock held.
+     */
+    private void drop() {
+        if (dropped) {
+            return;
+        }
+        dropped = true;
+        closing = true;
+        outputSent.signalAll();
+        requestService();
+    }
+
+    /**
+     * Encode one byte of caller data into the output buffer.  There must be
+     * room for 4 bytes.
+     *
+     * @param ch the byte
+     */
+    private void encode(final byte ch) {
+        if (binaryMode == true) {
+            if (ch == (byte) TELNET_IAC) {
+                // IAC -> IAC IAC
+                output.put((byte) TELNET_IAC);
+            }
+            output.put(ch);
+            return;
+        }
+
+        // Non-binary mode: a bare CR is CR NUL, CR LF is CR LF.
+        if (writeCR == true) {
+            output.put((byte) C_CR);
+            if (ch == C_LF) {
+                output.put(ch);
+                writeCR = false;
+                return;
+            }
+            output.put((byte) C_NUL);
+            writeCR = false;
+        }
+        if (ch == C_CR) {
+            writeCR = true;
+        } else if (ch == (byte) TELNET_IAC) {
+            // IAC -> IAC IAC
+            output.put((byte) TELNET_IAC);
+            output.put(ch);
+        } else {
+            output.put(ch);
+        }
+    }
+
+    /**
+     * Send a DO/DON'T/WILL/WON'T response to the remote side.
+     *
+     * @param response a TELNET_DO/DONT/WILL/WONT byte
+     * @param option telnet option byte (binary mode, term type, etc.)
+     */
+    private void respond(final int response, final int option) {
+        if (!reserve(3)) {
+            return;
+        }
+        output.put((byte) TELNET_IAC);
+        output.put((byte) response);
+        output.put((byte) option);
+    }
+
+    /**
+     * Build sub-negotiation packet (RFC 855) with a single SEND byte.
+     *
+     * @param option telnet option
+     */
+    private void requestSubneg(final int option) {
+        if (!reserve(6)) {
+            return;
+        }
+        output.put((byte) TELNET_IAC);
+        output.put((byte) TELNET_SB);
+        output.put((byte) option);
+        output.put((byte) 1);
+        output.put((byte) TELNET_IAC);
+        output.put((byte) TELNET_SE);
+    }
+
+    /**
+     * Send the options we want to negotiate on.  These are the same as
+     * TelnetInputStream.telnetSendOptions() uses for a server.
+     */
+    private void telnetSendOptions() {
+        if (binaryMode == false) {
+            // Binary Transmission: must ask both do and will
+            respond(TELNET_DO, 0);
+            respond(TELNET_WILL, 0);
+        }
+
+        if (goAhead == true) {
+            // Suppress Go Ahead
+            respond(TELNET_DO, 3);
+            respond(TELNET_WILL, 3);
+        }
+
+        // Enable Echo - I echo to them, they do not echo back to me.
+        respond(TELNET_DONT, 1);
+        respond(TELNET_WILL, 1);
+
+        if (doTermType == true) {
+            respond(TELNET_DO, 24);
+        }
+        if (doTermSpeed == true) {
+            respond(TELNET_DO, 32);
+        }
+        if (doNAWS == true) {
+            respond(TELNET_DO, 31);
+        }
+        if (doEnvironment == true) {
+            respond(TELNET_DO, 39);
+        }
+    }
+
+    /**
+     * Handle a DO/DON'T/WILL/WON'T for one option.
+     *
+     * @param option the option byte
+     */
+    private void handleOption(final int option) {
+        boolean yes = (dowillType == TELNET_WILL)
+            || (dowillType == TELNET_DO);
+
+        switch (option) {
+
+        case 0:
+            // Binary Transmission
+            if (dowillType == TELNET_DO) {
+                respond(TELNET_WILL, option);
+            }
+            binaryMode = yes;
+            break;
+
+        case 1:
+            // Echo
+            if (dowillType == TELNET_DO) {
+                respond(TELNET_WILL, option);
+            }
+            echoMode = yes;
+            break;
+
+        case 3:
+            // Suppress Go Ahead
+            if (dowillType == TELNET_DO) {
+                respond(TELNET_WILL, option);
+            }
+            goAhead = !yes;
+            break;
+
+        case 24:
+            // Terminal Type
+            if ((dowillType == TELNET_WILL) && doTermType) {
+                requestSubneg(option);
+            }
+            doTermType = false;
+            break;
+
+        case 31:
+            // NAWS: only sent by the client.
+            doNAWS = (dowillType == TELNET_WILL);
+            break;
+
+        case 32:
+            // Terminal Speed
+            if ((dowillType == TELNET_WILL) && doTermSpeed) {
+                requestSubneg(option);
+            }
+            doTermSpeed = false;
+            break;
+
+        case 39:
+            // New Environment
+            if ((dowillType == TELNET_WILL) && doEnvironment) {
+                requestSubneg(option);
+            }
+            doEnvironment = false;
+            break;
+
+        default:
+            // Other side asked for something we don't understand.  Tell
+            // them we will not do this option.
+            if (dowillType == TELNET_DO) {
+                respond(TELNET_WONT, option);
+            } else if (dowillType == TELNET_WILL) {
+                respond(TELNET_DONT, option);
+            }
+            break;
+        }
+    }
+
+    /**
+     * Get the subnegotiation buffer bytes from start as a string.
+     *
+     * @param start the first byte
+     * @return the string
+     */
+    private String subnegString(final int start) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < subnegN; i++) {
+            sb.append((char) (subnegBuffer[i] & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Handle the New Environment option.  Like TelnetInputStream, this
+     * fails to handle ESC as defined in RFC 1572.
+     */
+    private void handleNewEnvironment() {
+        if ((subnegN < 2) || (subnegBuffer[1] != 0)) {
+            // Not "IS", the other side isn't following the rules.
+            return;
+        }
+        Map<String, String> newEnv = new TreeMap<String, String>();
+        StringBuilder name = null;
+        StringBuilder value = null;
+
+        for (int i = 2; i < subnegN; i++) {
+            byte b = subnegBuffer[i];
+            if ((b == 0) || (b == 3)) {
+                // VAR or USERVAR
+                if ((name != null) && (value != null)
+                    && (value.length() > 0)
+                ) {
+                    newEnv.put(name.toString(), value.toString());
+                }
+                name = new StringBuilder();
+                value = null;
+            } else if (name == null) {
+                // The other side isn't following the rules, see ya.
+                return;
+            } else if ((b == 1) && (value == null)) {
+                // VALUE
+                value = new StringBuilder();
+            } else if (value != null) {
+                value.append((char) (b & 0xFF));
+            } else {
+                name.append((char) (b & 0xFF));
+            }
+        }
+        if ((name != null) && (value != null) && (value.length() > 0)) {
+            newEnv.put(name.toString(), value.toString());
+        }
+
+        if (newEnv.containsKey("LANG")) {
+            language = newEnv.get("LANG");
+        }
+        if (newEnv.containsKey("LOGNAME")) {
+            username = newEnv.get("LOGNAME");
+        }
+        if (newEnv.containsKey("USER")) {
+            username = newEnv.get("USER");
+        }
+    }
+
+    /**
+     * Handle an option sub-negotiation.
+     *
+     * @return true if the window size changed
+     */
+    private boolean handleSubneg() {
+        if (subnegN < 2) {
+            // The other side is a broken telnetd.
+            return false;
+        }
+
+        switch (subnegBuffer[0]) {
+
+        case 24:
+            // Terminal Type: client sent "IS"
+            if (subnegBuffer[1] == 0) {
+                terminalType = subnegString(2);
+            }
+            break;
+
+        case 32:
+            // Terminal Speed: client sent "IS"
+            if (subnegBuffer[1] == 0) {
+                terminalSpeed = subnegString(2);
+            }
+            break;
+
+        case 31:
+            // NAWS: IAC IAC was already undoubled
+            if (subnegN >= 5) {
+                int width = ((subnegBuffer[1] & 0xFF) << 8)
+                    | (subnegBuffer[2] & 0xFF);
+                int height = ((subnegBuffer[3] & 0xFF) << 8)
+                    | (subnegBuffer[4] & 0xFF);
+                if ((width > 0) && (height > 0)
+                    && ((width != windowWidth) || (height != windowHeight))
+                ) {
+                    windowWidth = width;
+                    windowHeight = height;
+                    return true;
+                }
+            }
+            break;
+
+        case 39:
+            // Environment
+            handleNewEnvironment();
+            break;
+
+        default:
+            // Ignore this one
+            break;
+        }
+        return false;
+    }
+
+    /**
+     * Add a byte to the subnegotiation buffer.
+     *
+     * @param b the byte
+     */
+    private void subnegAdd(final byte b) {
+        if (subnegN == subnegBuffer.length) {
+            if (subnegN >= 1024) {
+                // Runaway subnegotiation, drop it.
+                return;
+            }
+            byte [] bigger = new byte[subnegN * 2];
+            System.arraycopy(subnegBuffer, 0, bigger, 0, subnegN);
+            subnegBuffer = bigger;
+        }
+        subnegBuffer[subnegN++] = b;
+    }
+
+    /**
+     * If true, the last decode() saw a new window size.
+     */
+    private boolean resized = false;
+
+    /**
+     * See if the last readReady() saw a new window size, and reset the
+     * flag.  Called from the selector thread.
+     *
+     * @return true if the window size changed
+     */
+    boolean checkResized() {
+        boolean result = resized;
+        resized = false;
+        return result;
+    }
+
+    /**
+     * Run bytes through the telnet protocol.  This is the same state
+     * machine as TelnetInputStream.readImpl().
+     *
+     * @param in the bytes read from the socket
+     * @param buf the buffer into which the data is decoded
+     * @return the number of decoded bytes in buf
+     */
+    private int decode(final ByteBuffer in, final byte [] buf) {
+        int bufN = 0;
+
+        while (in.hasRemaining()) {
+            byte b = in.get();
+
+            if (subnegEnd == true) {
+                // Looking for IAC SE to end this subnegotiation
+                if (iac == true) {
+                    iac = false;
+                    if (b == (byte) TELNET_SE) {
+                        subnegEnd = false;
+                        if (handleSubneg()) {
+                            resized = true;
+                        }
+                    } else {
+                        // IAC IAC is an argument byte
+                        subnegAdd(b);
+                    }
+                } else if (b == (byte) TELNET_IAC) {
+                    iac = true;
+                } else {
+                    subnegAdd(b);
+                }
+                continue;
+            }
+
+            // Look for DO/DON'T/WILL/WON'T option
+            if (dowill == true) {
+                handleOption(b & 0xFF);
+                dowill = false;
+                continue;
+            }
+
+            if (iac == true) {
+                iac = false;
+                switch (b & 0xFF) {
+                case TELNET_IAC:
+                    // IAC IAC -> IAC
+                    break;
+                case TELNET_SB:
+                    // From here we wait for the IAC SE
+                    subnegEnd = true;
+                    subnegN = 0;
+                    continue;
+                case TELNET_WILL:
+                case TELNET_WONT:
+                case TELNET_DO:
+                case TELNET_DONT:
+                    dowill = true;
+                    dowillType = b & 0xFF;
+                    continue;
+                default:
+                    // Everything else is equivalent to IAC NOP
+                    continue;
+                }
+            } else if (b == (byte) TELNET_IAC) {
+                iac = true;
+                continue;
+            }
+
+            if (binaryMode == true) {
+                buf[bufN++] = b;
+                continue;
+            }
+
+            // According to RFC 854, in NVT ASCII mode:
+            //     Bare CR -> CR NUL
+            //     CR LF -> CR LF
+            if (readCR == true) {
+                buf[bufN++] = (byte) C_CR;
+                readCR = false;
+                if (b == C_NUL) {
+                    continue;
+                }
+            }
+            if (b == C_CR) {
+                readCR = true;
+                continue;
+            }
+            buf[bufN++] = b;
+        }
+
+        return bufN;
+    }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.net;
+
+/**
+ * TelnetChannelListener receives the connections and decoded input of a
+ * TelnetChannelServer.  All of these methods are called on the server's
+ * selector thread, so they must not block.
+ *
+ * <p>To host an application on each connection, channelOpened() creates an
+ * ECMA48Backend(listener, channel), attach()es it to the channel, and
+ * starts the application on its own thread.  channelRead() passes the bytes
+ * to the backend's addInput(), channelResized() calls its windowResized(),
+ * and channelClosed() shuts the backend down.  The channel is the
+ * backend's SessionInfo, so that is where the new size is read from.
+ */
+public interface TelnetChannelListener {
+
+    /**
+     * A new connection was accepted.  The telnet options have been sent but
+     * not yet answered.
+     *
+     * @param channel the new connection
+     */
+    public void channelOpened(TelnetChannel channel);
+
+    /**
+     * Data arrived from the remote side, with all of the telnet protocol
+     * removed.  The buffer is reused after this call returns.
+     *
+     * @param channel the connection
+     * @param buffer the decoded bytes
+     * @param offset the start offset in buffer
+     * @param length the number of bytes
+     */
+    public void channelRead(TelnetChannel channel, byte [] buffer,
+        int offset, int length);
+
+    /**
+     * The remote side reported a new window size (NAWS).  The new size is
+     * in channel.getWindowWidth() and getWindowHeight().
+     *
+     * @param channel the connection
+     */
+    public void channelResized(TelnetChannel channel);
+
+    /**
+     * The connection was closed, either by the remote side or by
+     * TelnetChannel.close().
+     *
+     * @param channel the connection
+     */
+    public void channelClosed(TelnetChannel channel);
+}
@@ -0,0 +1,353 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TelnetChannelServer is a non-blocking telnet server.  One thread runs a
+ * Selector over the listening socket and every TelnetChannel it accepts,
+ * performs the telnet protocol, and hands decoded input to a
+ * TelnetChannelListener.  Unlike TelnetServerSocket, no thread is needed
+ * per connection.
+ */
+public final class TelnetChannelServer implements Runnable {
+
+    /**
+     * The listening socket.
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * The selector for the listening socket and all connections.
+     */
+    private Selector selector;
+
+    /**
+     * The listener that receives connections and input.
+     */
+    private TelnetChannelListener listener;
+
+    /**
+     * Channels with output or a close() waiting for the selector thread.
+     */
+    private ConcurrentLinkedQueue<TelnetChannel> serviceQueue =
+        new ConcurrentLinkedQueue<TelnetChannel>();
+
+    /**
+     * Raw bytes read from a socket, shared by all connections.
+     */
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(8192);
+
+    /**
+     * Decoded bytes passed to the listener, shared by all connections.
+     * Decoding can hold back one CR, so this is one byte larger.
+     */
+    private byte [] decodeBuffer = new byte[readBuffer.capacity() + 1];
+
+    /**
+     * If true, close() has been called.
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * How long to stop accepting after accept() fails, in millis.  The
+     * usual cause is running out of file descriptors, which only closing
+     * some connections can fix.
+     */
+    private static final long ACCEPT_BACKOFF = 1000;
+
+    /**
+     * The listening socket's key.
+     */
+    private SelectionKey acceptKey;
+
+    /**
+     * System.currentTimeMillis() when accepting resumes after a failed
+     * accept(), or 0 if it is not paused.  Only used by the selector
+     * thread.
+     */
+    private long acceptResume = 0;
+
+    /**
+     * Create a server bound to the specified port.
+     *
+     * @param port the port number, or 0 to use a port number that is
+     * automatically allocated.
+     * @param listener the listener that receives connections and input
+     * @throws IOException if an I/O error occurs
+     */
+    public TelnetChannelServer(final int port,
+        final TelnetChannelListener listener) throws IOException {
+
+        this(new InetSocketAddress(port), listener);
+    }
+
+    /**
+     * Create a server bound to the specified address.
+     *
+     * @param address the local address and port to bind to
+     * @param listener the listener that receives connections and input
+     * @throws IOException if an I/O error occurs
+     */
+    public TelnetChannelServer(final SocketAddress address,
+        final TelnetChannelListener listener) throws IOException {
+
+        this.listener = listener;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(address);
+        acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Get the port the server is listening on.
+     *
+     * @return the port number
+     */
+    public int getLocalPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Stop the server and close every connection.
+     */
+    public void close() {
+        stopped = true;
+        selector.wakeup();
+    }
+
+    /**
+     * Run the selector loop until close() is called.  A failure on one
+     * connection, including an exception thrown by the listener, closes
+     * only that connection.
+     */
+    public void run() {
+        try {
+            while (!stopped) {
+                if (acceptResume == 0) {
+                    selector.select();
+                } else {
+                    long now = System.currentTimeMillis();
+                    if (now < acceptResume) {
+                        selector.select(acceptResume - now);
+                    }
+                    if (System.currentTimeMillis() >= acceptResume) {
+                        acceptResume = 0;
+                        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                    }
+                }
+
+                TelnetChannel telnet;
+                while ((telnet = serviceQueue.poll()) != null) {
+                    try {
+                        telnet.service();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        telnet.closeNow();
+                    }
+                }
+
+                Iterator<SelectionKey> keys =
+                    selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    telnet = (TelnetChannel) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(telnet);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            telnet.writeReady();
+                        }
+                    } catch (IOException e) {
+                        telnet.closeNow();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                        telnet.closeNow();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (ClosedSelectorException e) {
+            // SQUASH
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Accept all pending connections.  If accept() fails, stop accepting
+     * for ACCEPT_BACKOFF and keep serving the connections already open.
+     */
+    private void accept() {
+        for (;;) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                e.printStackTrace();
+                acceptKey.interestOps(0);
+                acceptResume = System.currentTimeMillis() + ACCEPT_BACKOFF;
+                return;
+            }
+            if (channel == null) {
+                return;
+            }
+            TelnetChannel telnet = null;
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                telnet = new TelnetChannel(this, channel);
+                SelectionKey key = channel.register(selector,
+                    SelectionKey.OP_READ, telnet);
+                listener.channelOpened(telnet);
+                telnet.open(key);
+            } catch (IOException e) {
+                close(channel, telnet);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                close(channel, telnet);
+            }
+        }
+    }
+
+    /**
+     * Close a connection that failed while it was being accepted.
+     *
+     * @param channel the socket
+     * @param telnet the TelnetChannel, or null if it was not created yet
+     */
+    private void close(final SocketChannel channel,
+        final TelnetChannel telnet) {
+
+        if (telnet != null) {
+            telnet.closeNow();
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // SQUASH
+        }
+    }
+
+    /**
+     * Read from a connection and pass the decoded bytes to the listener.
+     *
+     * @param telnet the connection
+     * @throws IOException if an I/O error occurs
+     */
+    private void read(final TelnetChannel telnet) throws IOException {
+        readBuffer.clear();
+        int rc = telnet.getChannel().read(readBuffer);
+        if (rc < 0) {
+            telnet.closeNow();
+            return;
+        }
+        readBuffer.flip();
+        int n = telnet.readReady(readBuffer, decodeBuffer);
+        if (telnet.checkResized()) {
+            listener.channelResized(telnet);
+        }
+        if (n > 0) {
+            listener.channelRead(telnet, decodeBuffer, 0, n);
+        }
+    }
+
+    /**
+     * Close the selector, the listening socket, and every connection.
+     */
+    private void shutdown() {
+        if (selector.isOpen()) {
+            List<SelectionKey> keys =
+                new ArrayList<SelectionKey>(selector.keys());
+            for (SelectionKey key: keys) {
+                if (key.attachment() instanceof TelnetChannel) {
+                    ((TelnetChannel) key.attachment()).closeNow();
+                }
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            // SQUASH
+        }
+    }
+
+    /**
+     * Queue a channel for the selector thread.  Called by TelnetChannel.
+     *
+     * @param telnet the channel with output or a close() pending
+     */
+    void requestService(final TelnetChannel telnet) {
+        serviceQueue.add(telnet);
+        selector.wakeup();
+    }
+
+    /**
+     * A channel was closed.  Called by TelnetChannel on the selector
+     * thread.
+     *
+     * @param telnet the closed channel
+     */
+    void channelClosed(final TelnetChannel telnet) {
+        try {
+            listener.channelClosed(telnet);
+        } catch (RuntimeException e) {
+            // The connection is gone either way.
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -30,6 +30,7 @@ package jexer.tterminal;
 
 import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 
 /**
  * This represents a single line of the display buffer.
@@ -41,18 +42,42 @@ public final class DisplayLine {
     private static final int MAX_LINE_LENGTH = 256;
 
     /**
-     * The characters/attributes of the line.
+     * The characters/attributes of the line, packed as one row of a
+     * CellBuffer.
      */
-    private Cell [] chars;
+    private CellBuffer chars;
 
     /**
-     * Get the Cell at a specific column.
+     * When the line is compacted, chars is shorter than MAX_LINE_LENGTH and
+     * every column past its end is this packed cell.
+     */
+    private int fill;
+
+    /**
+     * Get a copy of the Cell at a specific column.  Changing the returned
+     * Cell does not change this line.
      *
      * @param idx the character index
      * @return the Cell
      */
     public Cell charAt(final int idx) {
-        return chars[idx];
+        Cell cell = new Cell();
+        CellBuffer.unpack(packedAt(idx), cell);
+        return cell;
+    }
+
+    /**
+     * Get the packed cell at a specific column.
+     *
+     * @param idx the character index
+     * @return the packed cell, see CellBuffer
+     */
+    public int packedAt(final int idx) {
+        if (idx >= chars.getWidth()) {
+            assert (idx < MAX_LINE_LENGTH);
+            return fill;
+        }
+        return chars.get(idx, 0);
     }
 
     /**
@@ -61,7 +86,7 @@ public final class DisplayLine {
      * @return line length
      */
     public int length() {
-        return chars.length;
+        return MAX_LINE_LENGTH;
     }
 
     /**
@@ -146,11 +171,52 @@ public final class DisplayLine {
      * @param attr current drawing attributes
      */
     public DisplayLine(final CellAttributes attr) {
-        chars = new Cell[MAX_LINE_LENGTH];
-        for (int i = 0; i < chars.length; i++) {
-            chars[i] = new Cell();
-            chars[i].setTo(attr);
+        chars = new CellBuffer(MAX_LINE_LENGTH, 1);
+        fill = CellBuffer.pack(' ', attr);
+        chars.fill(fill);
+    }
+
+    /**
+     * Release the storage for the identical cells at the end of the line.
+     * This is done to lines that scroll into the scrollback buffer, which
+     * are usually much shorter than MAX_LINE_LENGTH.  A compacted line
+     * behaves exactly like the original, and is expanded again if it is
+     * changed.  Compacting a line that is already compacted releases only
+     * the stored cells that match its fill.
+     */
+    public void compact() {
+        int n = chars.getWidth();
+        int last = fill;
+        if (n == MAX_LINE_LENGTH) {
+            last = chars.get(n - 1, 0);
         }
+        while ((n > 0) && (chars.get(n - 1, 0) == last)) {
+            n--;
+        }
+        if (n == chars.getWidth()) {
+            return;
+        }
+        CellBuffer newChars = new CellBuffer(n, 1);
+        for (int i = 0; i < n; i++) {
+            newChars.set(i, 0, chars.get(i, 0));
+        }
+        chars = newChars;
+        fill = last;
+    }
+
+    /**
+     * Restore full storage to a compacted line before it is changed.
+     */
+    private void expand() {
+        if (chars.getWidth() == MAX_LINE_LENGTH) {
+            return;
+        }
+        CellBuffer newChars = new CellBuffer(MAX_LINE_LENGTH, 1);
+        newChars.fill(fill);
+        for (int i = 0; i < chars.getWidth(); i++) {
+            newChars.set(i, 0, chars.get(i, 0));
+        }
+        chars = newChars;
     }
 
     /**
@@ -160,8 +226,19 @@ public final class DisplayLine {
      * @param newCell the new Cell
      */
     public void insert(final int idx, final Cell newCell) {
-        System.arraycopy(chars, idx, chars, idx + 1, chars.length - idx - 1);
-        chars[idx] = newCell;
+        insert(idx, CellBuffer.pack(newCell));
+    }
+
+    /**
+     * Insert a packed cell at the specified position.
+     *
+     * @param idx the character index
+     * @param packed the new packed cell
+     */
+    public void insert(final int idx, final int packed) {
+        expand();
+        chars.move(0, idx, idx + 1, MAX_LINE_LENGTH - idx - 1);
+        chars.set(idx, 0, packed);
     }
 
     /**
@@ -171,7 +248,19 @@ public final class DisplayLine {
      * @param newCell the new Cell
      */
     public void replace(final int idx, final Cell newCell) {
-        chars[idx].setTo(newCell);
+        expand();
+        chars.set(idx, 0, CellBuffer.pack(newCell));
+    }
+
+    /**
+     * Replace character at the specified position with a packed cell.
+     *
+     * @param idx the character index
+     * @param packed the new packed cell
+     */
+    public void replace(final int idx, final int packed) {
+        expand();
+        chars.set(idx, 0, packed);
     }
 
     /**
@@ -180,7 +269,8 @@ public final class DisplayLine {
      * @param idx the character index
      */
     public void setBlank(final int idx) {
-        chars[idx].reset();
+        expand();
+        chars.set(idx, 0, CellBuffer.BLANK);
     }
 
     /**
@@ -191,7 +281,8 @@ public final class DisplayLine {
      * @param ch the new char
      */
     public void setChar(final int idx, final char ch) {
-        chars[idx].setChar(ch);
+        expand();
+        chars.setChar(idx, 0, ch);
     }
 
     /**
@@ -202,7 +293,8 @@ public final class DisplayLine {
      * @param attr the new attributes
      */
     public void setAttr(final int idx, final CellAttributes attr) {
-        chars[idx].setAttr(attr);
+        expand();
+        chars.setAttr(idx, 0, attr);
     }
 
     /**
@@ -213,8 +305,9 @@ public final class DisplayLine {
      * @param newCell the new Cell
      */
     public void delete(final int idx, final Cell newCell) {
-        System.arraycopy(chars, idx + 1, chars, idx, chars.length - idx - 1);
-        chars[chars.length - 1] = newCell;
+        expand();
+        chars.move(0, idx + 1, idx, MAX_LINE_LENGTH - idx - 1);
+        chars.set(MAX_LINE_LENGTH - 1, 0, CellBuffer.pack(newCell));
     }
 
 }
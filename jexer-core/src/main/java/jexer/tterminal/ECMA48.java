@@ -85,6 +85,7 @@ import static jexer.TKeypress.kbUp;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
@@ -92,12 +93,14 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
 
 import jexer.TKeypress;
+import jexer.backend.ThreadFactories;
 import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 import jexer.bits.Color;
 import jexer.event.TMouseEvent;
 
@@ -257,7 +260,7 @@ public class ECMA48 implements Runnable {
      * @param str string to send
      */
     private void writeRemote(final String str) {
-        if (stopReaderThread) {
+        if (!isReading()) {
             // Reader hit EOF, bail out now.
             close();
             return;
@@ -305,45 +308,49 @@ public class ECMA48 implements Runnable {
      */
     public final void close() {
 
-        // Synchronize so we don't stomp on the reader thread.
-        synchronized (this) {
+        // Tell the reader thread to stop looking at input.
+        readerThread.interrupt();
 
-            // Close the input stream
-            switch (type) {
-            case VT100:
-            case VT102:
-            case VT220:
-                if (inputStream != null) {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        // SQUASH
-                    }
-                    inputStream = null;
-                }
-                break;
-            case XTERM:
-                if (input != null) {
-                    try {
-                        input.close();
-                    } catch (IOException e) {
-                        // SQUASH
-                    }
-                    input = null;
-                    inputStream = null;
-                }
-                break;
+        // Close the InputStream, not the Reader: the reader thread is
+        // blocked in Reader.read(), which holds the Reader's lock, so
+        // Reader.close() would wait until the remote side sends another
+        // byte.  Closing the stream underneath makes the read fail
+        // instead.  This is done outside our own lock for the same reason.
+        InputStream stream = inputStream;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // SQUASH
             }
+        }
 
-            // Tell the reader thread to stop looking at input.
-            if (stopReaderThread == false) {
-                stopReaderThread = true;
+        // Wait for the reader thread, but not forever: not every stream
+        // wakes up a blocked read() when it is closed.  close() is also
+        // called by the reader thread itself on EOF.
+        if (Thread.currentThread() != readerThread) {
+            try {
+                readerThread.join(CLOSE_TIMEOUT);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+
+        synchronized (this) {
+            inputStream = null;
+            if ((input != null)
+                && ((Thread.currentThread() == readerThread)
+                    || !readerThread.isAlive())
+            ) {
                 try {
-                    readerThread.join();
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                    input.close();
+                } catch (IOException e) {
+                    // SQUASH
                 }
             }
+            // If the reader thread is still stuck in read(), it is
+            // abandoned.  It sees input == null when the read returns.
+            input = null;
 
             // Close the output stream.
             switch (type) {
@@ -377,14 +384,21 @@ public class ECMA48 implements Runnable {
     }
 
     /**
-     * When true, the reader thread is expected to exit.
+     * The reader thread.  It blocks in read(); close() interrupts it and
+     * closes the input to make it exit.
      */
-    private volatile boolean stopReaderThread = false;
+    private Thread readerThread = null;
 
     /**
-     * The reader thread.
+     * Milliseconds close() waits for the reader thread to exit.
      */
-    private Thread readerThread = null;
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    /**
+     * Set by the reader thread when it has stopped reading, either at EOF or
+     * because close() was called.
+     */
+    private volatile boolean readerDone = false;
 
     /**
      * See if the reader thread is still running.
@@ -393,7 +407,31 @@ public class ECMA48 implements Runnable {
      * side
      */
     public final boolean isReading() {
-        return (!stopReaderThread);
+        return (!readerDone);
+    }
+
+    /**
+     * The listener told about new output, or null.
+     */
+    private volatile DisplayListener displayListener = null;
+
+    /**
+     * Set the listener to tell when new output has been consumed.
+     *
+     * @param listener the listener, or null
+     */
+    public final void setDisplayListener(final DisplayListener listener) {
+        displayListener = listener;
+    }
+
+    /**
+     * Tell the display listener that something changed.
+     */
+    private void fireDisplayChanged() {
+        DisplayListener listener = displayListener;
+        if (listener != null) {
+            listener.displayChanged();
+        }
     }
 
     /**
@@ -411,10 +449,37 @@ public class ECMA48 implements Runnable {
         return new DisplayLine(currentState.attr);
     }
 
+    /**
+     * Default maximum number of lines in the scrollback buffer.
+     */
+    public static final int DEFAULT_SCROLLBACK_MAX = 10000;
+
     /**
      * The scrollback buffer characters + attributes.
      */
-    private volatile List<DisplayLine> scrollback;
+    private volatile ScrollbackBuffer scrollback;
+
+    /**
+     * Get the maximum number of lines in the scrollback buffer.
+     *
+     * @return the maximum number of lines
+     */
+    public final int getScrollbackMax() {
+        return scrollback.getCapacity();
+    }
+
+    /**
+     * Set the maximum number of lines in the scrollback buffer.  Lines
+     * beyond the maximum are discarded, oldest first.
+     *
+     * @param scrollbackMax the maximum number of lines.  0 means keep no
+     * scrollback.
+     */
+    public final void setScrollbackMax(final int scrollbackMax) {
+        synchronized (this) {
+            scrollback.setCapacity(scrollbackMax);
+        }
+    }
 
     /**
      * Get the scrollback buffer.
@@ -425,6 +490,34 @@ public class ECMA48 implements Runnable {
         return scrollback;
     }
 
+    /**
+     * Get the number of lines in the scrollback buffer and the display
+     * together.
+     *
+     * @return the number of lines
+     */
+    public final int getLineCount() {
+        return scrollback.size() + display.size();
+    }
+
+    /**
+     * Get a line from the scrollback buffer followed by the display, by
+     * index.  Index 0 is the oldest scrollback line, and index
+     * getLineCount() - 1 is the bottom line of the display.  A viewport
+     * onto the terminal can draw its rows with this directly rather than
+     * copying the buffers.  Callers should synchronize on this emulator.
+     *
+     * @param index the line index
+     * @return the line
+     */
+    public final DisplayLine getLine(final int index) {
+        int scrollbackSize = scrollback.size();
+        if (index < scrollbackSize) {
+            return scrollback.get(index);
+        }
+        return display.get(index - scrollbackSize);
+    }
+
     /**
      * The raw display buffer characters + attributes.
      */
@@ -443,7 +536,7 @@ public class ECMA48 implements Runnable {
      * The terminal's input.  For type == XTERM, this is an InputStreamReader
      * with UTF-8 encoding.
      */
-    private Reader input;
+    private volatile Reader input;
 
     /**
      * The terminal's raw InputStream.  This is used for type != XTERM.
@@ -964,13 +1057,35 @@ public class ECMA48 implements Runnable {
     public ECMA48(final DeviceType type, final InputStream inputStream,
         final OutputStream outputStream) throws UnsupportedEncodingException {
 
+        this(type, inputStream, outputStream, ThreadFactories.getDefault());
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param type one of the DeviceType constants to select VT100, VT102,
+     * VT220, or XTERM
+     * @param inputStream an InputStream connected to the remote side.  For
+     * type == XTERM, inputStream is converted to a Reader with UTF-8
+     * encoding.
+     * @param outputStream an OutputStream connected to the remote user.  For
+     * type == XTERM, outputStream is converted to a Writer with UTF-8
+     * encoding.
+     * @param threadFactory creates the input reader thread
+     * @throws UnsupportedEncodingException if an exception is thrown when
+     * creating the InputStreamReader
+     */
+    public ECMA48(final DeviceType type, final InputStream inputStream,
+        final OutputStream outputStream, final ThreadFactory threadFactory)
+        throws UnsupportedEncodingException {
+
         assert (inputStream != null);
         assert (outputStream != null);
 
         csiParams         = new ArrayList<Integer>();
         tabStops          = new ArrayList<Integer>();
-        scrollback        = new LinkedList<DisplayLine>();
-        display           = new LinkedList<DisplayLine>();
+        scrollback        = new ScrollbackBuffer(DEFAULT_SCROLLBACK_MAX);
+        display           = new ArrayList<DisplayLine>();
 
         this.type         = type;
         this.inputStream  = inputStream;
@@ -988,8 +1103,10 @@ public class ECMA48 implements Runnable {
             display.add(new DisplayLine(currentState.attr));
         }
 
-        // Spin up the input reader
-        readerThread = new Thread(this);
+        // Spin up the input reader.  It is a daemon so that a reader that
+        // close() had to abandon does not keep the JVM alive.
+        readerThread = threadFactory.newThread(this);
+        readerThread.setDaemon(true);
         readerThread.start();
     }
 
@@ -1081,6 +1198,17 @@ public class ECMA48 implements Runnable {
      * @param ch character to display
      */
     private void printCharacter(final char ch) {
+        printCharacter(ch, CellBuffer.packAttr(currentState.attr));
+    }
+
+    /**
+     * Prints one character to the display buffer.
+     *
+     * @param ch character to display
+     * @param attr the current drawing attributes, packed by
+     * CellBuffer.packAttr()
+     */
+    private void printCharacter(final char ch, final int attr) {
         int rightMargin = this.rightMargin;
 
         // Check if we have double-width, and if so chop at 40/66 instead of
@@ -1129,9 +1257,7 @@ public class ECMA48 implements Runnable {
         }
 
         // "Print" the character
-        Cell newCell = new Cell(ch);
-        CellAttributes newCellAttributes = (CellAttributes) newCell;
-        newCellAttributes.setTo(currentState.attr);
+        int newCell = attr | ch;
         DisplayLine line = display.get(currentState.cursorY);
         // Insert mode special case
         if (insertMode == true) {
@@ -2225,7 +2351,7 @@ public class ECMA48 implements Runnable {
             display.size());
         List<DisplayLine> displayMiddle = display.subList(regionBottom + 1
             - remaining, regionBottom + 1);
-        display = new LinkedList<DisplayLine>(displayTop);
+        display = new ArrayList<DisplayLine>(displayTop);
         display.addAll(displayMiddle);
         for (int i = 0; i < n; i++) {
             DisplayLine line = new DisplayLine(currentState.attr);
@@ -2266,7 +2392,7 @@ public class ECMA48 implements Runnable {
             display.size());
         List<DisplayLine> displayMiddle = display.subList(regionTop,
             regionTop + remaining);
-        display = new LinkedList<DisplayLine>(displayTop);
+        display = new ArrayList<DisplayLine>(displayTop);
         for (int i = 0; i < n; i++) {
             DisplayLine line = new DisplayLine(currentState.attr);
             line.setReverseColor(reverseVideo);
@@ -3953,7 +4079,8 @@ public class ECMA48 implements Runnable {
         for (int i = start; i <= end; i++) {
             DisplayLine line = display.get(currentState.cursorY);
             if ((!honorProtected)
-                || ((honorProtected) && (!line.charAt(i).isProtect()))) {
+                || ((honorProtected)
+                    && (!CellBuffer.isProtect(line.packedAt(i))))) {
 
                 switch (type) {
                 case VT100:
@@ -4107,6 +4234,61 @@ public class ECMA48 implements Runnable {
         }
     }
 
+    /**
+     * Check if a character would be printed if it arrived in the GROUND
+     * state.
+     *
+     * @param ch character from the remote side
+     * @return true if consume() would print it
+     */
+    private boolean isPrintable(final char ch) {
+        char c = ch;
+        if ((type == DeviceType.VT100) || (type == DeviceType.VT102)) {
+            c = (char) (c & 0x7F);
+        }
+        return (((c >= 0x20) && (c < 0x7F)) || (c >= 0xA0));
+    }
+
+    /**
+     * Run a buffer of input characters through the ECMA48 state machine.
+     * Runs of printable characters in the GROUND state skip the state
+     * machine: the drawing attributes are packed once per run and the
+     * characters go straight into the display lines.  The result is the
+     * same as calling consume() on each character.
+     *
+     * @param buffer characters from the remote side
+     * @param length number of characters in buffer
+     */
+    private void consume(final char [] buffer, final int length) {
+        int i = 0;
+        while (i < length) {
+            if ((scanState != ScanState.GROUND)
+                || (printerControllerMode == true)
+                || !isPrintable(buffer[i])
+            ) {
+                consume(buffer[i]);
+                i++;
+                continue;
+            }
+
+            int attr = CellBuffer.packAttr(currentState.attr);
+            for (; (i < length) && isPrintable(buffer[i]); i++) {
+                char ch = buffer[i];
+                if ((type == DeviceType.VT100)
+                    || (type == DeviceType.VT102)
+                ) {
+                    ch = (char) (ch & 0x7F);
+                }
+
+                // Hang onto this character
+                repCh = mapCharacter(ch);
+
+                // Print this character
+                printCharacter(repCh, attr);
+            }
+        }
+    }
+
     /**
      * Run this input character through the ECMA48 state machine.
      *
@@ -6053,7 +6235,8 @@ public class ECMA48 implements Runnable {
     }
 
     /**
-     * Read function runs on a separate thread.
+     * Read function runs on a separate thread.  It blocks in read() until
+     * input arrives, and exits on EOF or when close() interrupts it.
      */
     public final void run() {
         boolean utf8 = false;
@@ -6063,70 +6246,60 @@ public class ECMA48 implements Runnable {
             utf8 = true;
         }
 
-        // available() will often return > 1, so we need to read in chunks to
-        // stay caught up.
-        char [] readBufferUTF8 = null;
+        // Read in large chunks so that consume() can print long runs at
+        // once.
+        char [] readBufferUTF8 = new char[4096];
         byte [] readBuffer = null;
-        if (utf8) {
-            readBufferUTF8 = new char[128];
-        } else {
-            readBuffer = new byte[128];
+        if (!utf8) {
+            readBuffer = new byte[readBufferUTF8.length];
         }
 
-        while (!done && !stopReaderThread) {
+        while (!done && !Thread.currentThread().isInterrupted()) {
             try {
-                int n = inputStream.available();
-                // System.err.printf("available() %d\n", n); System.err.flush();
+                int rc = -1;
                 if (utf8) {
-                    if (readBufferUTF8.length < n) {
-                        // The buffer wasn't big enough, make it huger
-                        int newSizeHalf = Math.max(readBufferUTF8.length, n);
-
-                        readBufferUTF8 = new char[newSizeHalf * 2];
+                    Reader reader = input;
+                    if (reader != null) {
+                        rc = reader.read(readBufferUTF8, 0,
+                            readBufferUTF8.length);
                     }
                 } else {
-                    if (readBuffer.length < n) {
-                        // The buffer wasn't big enough, make it huger
-                        int newSizeHalf = Math.max(readBuffer.length, n);
-                        readBuffer = new byte[newSizeHalf * 2];
+                    InputStream stream = inputStream;
+                    if (stream != null) {
+                        rc = stream.read(readBuffer, 0, readBuffer.length);
                     }
                 }
-
-                int rc = -1;
-                if (utf8) {
-                    rc = input.read(readBufferUTF8, 0,
-                        readBufferUTF8.length);
-                } else {
-                    rc = inputStream.read(readBuffer, 0,
-                        readBuffer.length);
-                }
                 // System.err.printf("read() %d\n", rc); System.err.flush();
                 if (rc == -1) {
                     // This is EOF
                     done = true;
                 } else {
-                    for (int i = 0; i < rc; i++) {
-                        int ch = 0;
-                        if (utf8) {
-                            ch = readBufferUTF8[i];
-                        } else {
-                            ch = readBuffer[i];
-                        }
-                        // Don't step on UI events
-                        synchronized (this) {
-                            consume((char)ch);
+                    if (!utf8) {
+                        for (int i = 0; i < rc; i++) {
+                            readBufferUTF8[i] = (char) readBuffer[i];
                         }
                     }
+                    // Don't step on UI events
+                    synchronized (this) {
+                        consume(readBufferUTF8, rc);
+                    }
+                    fireDisplayChanged();
                 }
                 // System.err.println("end while loop"); System.err.flush();
+            } catch (InterruptedIOException e) {
+                // close() interrupted the read
+                done = true;
             } catch (IOException e) {
-                e.printStackTrace();
+                if (!Thread.currentThread().isInterrupted()) {
+                    e.printStackTrace();
+                }
                 done = true;
             }
-        } // while ((done == false) && (stopReaderThread == false))
+        } // while (!done && !Thread.currentThread().isInterrupted())
 
         // Let the rest of the world know that I am done.
-        stopReaderThread = true;
+        readerDone = true;
+        fireDisplayChanged();
 
         // System.err.println("*** run() exiting..."); System.err.flush();
     }
@@ -0,0 +1,208 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.tterminal;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * ScrollbackBuffer holds the lines that have scrolled off the top of the
+ * display.  It is a ring buffer with a fixed capacity: adding a line to a
+ * full buffer discards the oldest line.  Appending, discarding, and
+ * get(index) are all O(1).
+ *
+ * <p>Lines are compacted as they are added (see DisplayLine.compact()),
+ * unless that is turned off with setCompact(false).
+ */
+public final class ScrollbackBuffer extends AbstractList<DisplayLine>
+                                    implements RandomAccess {
+
+    /**
+     * The lines.  The oldest line is at lines[head].
+     */
+    private DisplayLine [] lines;
+
+    /**
+     * Index of the oldest line.
+     */
+    private int head = 0;
+
+    /**
+     * Number of lines in the buffer.
+     */
+    private int size = 0;
+
+    /**
+     * If true, compact lines as they are added.
+     */
+    private boolean compact = true;
+
+    /**
+     * Public constructor.
+     *
+     * @param capacity maximum number of lines to keep.  0 means keep no
+     * scrollback.
+     */
+    public ScrollbackBuffer(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: "
+                + capacity);
+        }
+        lines = new DisplayLine[capacity];
+    }
+
+    /**
+     * Get the maximum number of lines.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return lines.length;
+    }
+
+    /**
+     * Change the maximum number of lines.  If the buffer holds more lines
+     * than the new capacity, the oldest lines are discarded.
+     *
+     * @param capacity maximum number of lines to keep.  0 means keep no
+     * scrollback.
+     */
+    public void setCapacity(final int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: "
+                + capacity);
+        }
+        if (capacity == lines.length) {
+            return;
+        }
+        int newSize = Math.min(size, capacity);
+        DisplayLine [] newLines = new DisplayLine[capacity];
+        for (int i = 0; i < newSize; i++) {
+            newLines[i] = get(size - newSize + i);
+        }
+        lines = newLines;
+        head = 0;
+        size = newSize;
+        modCount++;
+    }
+
+    /**
+     * Get the compact flag.
+     *
+     * @return if true, lines are compacted as they are added
+     */
+    public boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Set the compact flag.
+     *
+     * @param compact if true, lines are compacted as they are added
+     */
+    public void setCompact(final boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Get the number of lines.
+     *
+     * @return the number of lines
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a line.
+     *
+     * @param index 0 is the oldest line
+     * @return the line
+     */
+    @Override
+    public DisplayLine get(final int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                + ", Size: " + size);
+        }
+        int i = head + index;
+        if (i >= lines.length) {
+            i -= lines.length;
+        }
+        return lines[i];
+    }
+
+    /**
+     * Add a line to the end, discarding the oldest line if the buffer is
+     * full.
+     *
+     * @param line the line
+     * @return true
+     */
+    @Override
+    public boolean add(final DisplayLine line) {
+        modCount++;
+        if (lines.length == 0) {
+            return true;
+        }
+        if (compact) {
+            line.compact();
+        }
+        int tail = head + size;
+        if (tail >= lines.length) {
+            tail -= lines.length;
+        }
+        lines[tail] = line;
+        if (size == lines.length) {
+            // Full: the new line took the oldest line's slot.
+            head++;
+            if (head == lines.length) {
+                head = 0;
+            }
+        } else {
+            size++;
+        }
+        return true;
+    }
+
+    /**
+     * Remove all lines.
+     */
+    @Override
+    public void clear() {
+        modCount++;
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jexer.backend.AbstractTerminal;
+import jexer.backend.Backend;
+import jexer.bits.CellBuffer;
+import jexer.event.TCommandEvent;
+import jexer.event.TInputEvent;
+import jexer.io.Screen;
+
+/**
+ * Tests for drawing windows in retained mode.
+ */
+public class TApplicationTest {
+
+    /**
+     * A terminal whose events are posted by the test.
+     */
+    private static class TestTerminal extends AbstractTerminal {
+
+        /**
+         * Queue an event as if it came from the user.
+         *
+         * @param event the event
+         */
+        public void post(final TInputEvent event) {
+            eventQueue.add(event);
+        }
+
+    }
+
+    /**
+     * An 80x25 Screen whose flush just copies logical to physical.
+     */
+    private static class TestScreen extends Screen {
+
+        /**
+         * Public constructor.
+         */
+        public TestScreen() {
+            setDimensions(80, 25);
+        }
+
+        /**
+         * Bring physical up to date and forget the damage.
+         */
+        @Override
+        public void flushPhysical() {
+            physical.copyFrom(logical);
+            clearDamage();
+            dirty = false;
+            reallyCleared = false;
+        }
+
+    }
+
+    /**
+     * A Backend with no real terminal behind it.
+     */
+    private static class TestBackend extends Backend<TestTerminal> {
+
+        /**
+         * Public constructor.
+         */
+        public TestBackend() {
+            terminal = new TestTerminal();
+            screen = new TestScreen();
+        }
+
+        /**
+         * Queue an event as if it came from the user.
+         *
+         * @param event the event
+         */
+        public void post(final TInputEvent event) {
+            terminal.post(event);
+        }
+
+        @Override
+        public void flushScreen() {
+            screen.flushPhysical();
+        }
+
+        @Override
+        public void getEvents(final List<TInputEvent> queue) {
+            terminal.getEvents(queue);
+        }
+
+        @Override
+        public boolean hasEvents() {
+            return terminal.hasEvents();
+        }
+
+        @Override
+        public void shutdown() {
+            // Nothing to release
+        }
+
+    }
+
+    /**
+     * A window that counts how often it is drawn.
+     */
+    private static class CountingWindow extends TWindow {
+
+        /**
+         * The number of draw() calls.
+         */
+        private int draws = 0;
+
+        /**
+         * Public constructor.
+         *
+         * @param application TApplication that manages this window
+         * @param title window title
+         * @param x column relative to parent
+         * @param y row relative to parent
+         * @param width width of window
+         * @param height height of window
+         */
+        public CountingWindow(final TApplication application,
+            final String title, final int x, final int y, final int width,
+            final int height) {
+
+            super(application, title, x, y, width, height);
+        }
+
+        @Override
+        public void draw() {
+            draws++;
+            super.draw();
+        }
+
+    }
+
+    /**
+     * The backend under test.
+     */
+    private TestBackend backend;
+
+    /**
+     * The application under test.
+     */
+    private TApplication application;
+
+    /**
+     * Make a retained-mode application on a fake backend.
+     */
+    @Before
+    public void setUp() {
+        backend = new TestBackend();
+        application = new TApplication(backend);
+        application.setRetainedMode(true);
+    }
+
+    /**
+     * Draw a single frame and stop.
+     */
+    private void drawOneFrame() {
+        backend.post(new TCommandEvent(TCommand.cmAbort));
+        application.run();
+    }
+
+    /**
+     * Get the characters of part of a row on the screen.
+     *
+     * @param x column of the first character
+     * @param y row
+     * @param n the number of characters
+     * @return the characters
+     */
+    private String text(final int x, final int y, final int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(CellBuffer.getChar(backend.getScreen().getPackedXY(x + i,
+                        y)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A window completely covered by a window above it is not drawn, and
+     * the screen shows the window on top.
+     */
+    @Test
+    public void testCoveredWindow() {
+        CountingWindow below = new CountingWindow(application, "below",
+            10, 5, 20, 8);
+        CountingWindow above = new CountingWindow(application, "above",
+            0, 1, 60, 20);
+        drawOneFrame();
+
+        assertEquals(0, below.draws);
+        assertEquals(1, above.draws);
+        assertEquals(" above ", text(26, above.getY(), 7));
+    }
+
+    /**
+     * A window that shows around the edge of the window above it is drawn
+     * and composited under it.
+     */
+    @Test
+    public void testPartlyCoveredWindow() {
+        CountingWindow below = new CountingWindow(application, "below",
+            2, 2, 30, 10);
+        CountingWindow above = new CountingWindow(application, "above",
+            10, 5, 40, 15);
+        drawOneFrame();
+
+        assertEquals(1, below.draws);
+        assertEquals(1, above.draws);
+        assertEquals(" below ", text(13, below.getY(), 7));
+        assertEquals(" above ", text(26, above.getY(), 7));
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for the TTimerQueue min-heap.
+ */
+public class TTimerQueueTest {
+
+    /**
+     * Far enough in the future that every timer in these tests is due.
+     */
+    private static final long LATER = System.nanoTime() + 1000000000000000L;
+
+    /**
+     * Make a one-shot timer.
+     *
+     * @param millis milliseconds from now
+     * @return the timer
+     */
+    private static TTimer timer(final long millis) {
+        return new TTimer(millis, false, null);
+    }
+
+    /**
+     * Check that a list of timers is in tick order.
+     *
+     * @param timers the timers
+     */
+    private static void assertOrdered(final List<TTimer> timers) {
+        for (int i = 1; i < timers.size(); i++) {
+            assertTrue(timers.get(i - 1).getNextTick()
+                - timers.get(i).getNextTick() <= 0);
+        }
+    }
+
+    /**
+     * Timers come out earliest first no matter what order they went in,
+     * and only the due ones come out.
+     */
+    @Test
+    public void testOrder() {
+        TTimerQueue queue = new TTimerQueue();
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            queue.add(timer(1000000 + random.nextInt(1000000)));
+        }
+        assertEquals(100, queue.size());
+
+        List<TTimer> due = new ArrayList<TTimer>();
+        queue.pollDue(System.nanoTime(), due);
+        assertEquals(0, due.size());
+
+        long next = queue.nextTick();
+        queue.pollDue(LATER, due);
+        assertEquals(100, due.size());
+        assertEquals(0, queue.size());
+        assertEquals(next, due.get(0).getNextTick());
+        assertOrdered(due);
+        assertEquals(Long.MAX_VALUE, queue.nextTick());
+        for (TTimer timer : due) {
+            assertEquals(-1, timer.heapIndex);
+        }
+    }
+
+    /**
+     * Removing timers from anywhere in the heap keeps the rest in order,
+     * including removing the root and the last leaf.
+     */
+    @Test
+    public void testRemove() {
+        TTimerQueue queue = new TTimerQueue();
+        List<TTimer> timers = new ArrayList<TTimer>();
+        Random random = new Random(2);
+        for (int i = 0; i < 50; i++) {
+            TTimer timer = timer(1000000 + random.nextInt(1000000));
+            timers.add(timer);
+            queue.add(timer);
+        }
+
+        TTimer first = timers.get(0);
+        for (TTimer timer : timers) {
+            if (timer.getNextTick() - first.getNextTick() < 0) {
+                first = timer;
+            }
+        }
+        assertTrue(queue.remove(first));
+        assertFalse(queue.remove(first));
+
+        List<TTimer> removed = new ArrayList<TTimer>();
+        removed.add(first);
+        for (int i = 0; i < timers.size(); i += 3) {
+            TTimer timer = timers.get(i);
+            if (timer != first) {
+                assertTrue(queue.remove(timer));
+                removed.add(timer);
+            }
+        }
+        assertEquals(50 - removed.size(), queue.size());
+
+        List<TTimer> due = new ArrayList<TTimer>();
+        queue.pollDue(LATER, due);
+        assertEquals(50 - removed.size(), due.size());
+        assertOrdered(due);
+        for (TTimer timer : removed) {
+            assertFalse(due.contains(timer));
+        }
+    }
+
+    /**
+     * A timer that is removed and rescheduled with a new tick moves to its
+     * new place.
+     */
+    @Test
+    public void testReschedule() {
+        TTimerQueue queue = new TTimerQueue();
+        TTimer late = timer(5000000);
+        TTimer early = timer(1000000);
+        queue.add(late);
+        queue.add(early);
+        assertEquals(early.getNextTick(), queue.nextTick());
+
+        assertTrue(queue.remove(early));
+        TTimer earlier = timer(10);
+        queue.add(earlier);
+        queue.add(early);
+        assertEquals(earlier.getNextTick(), queue.nextTick());
+
+        List<TTimer> due = new ArrayList<TTimer>();
+        queue.pollDue(LATER, due);
+        assertEquals(3, due.size());
+        assertSame(earlier, due.get(0));
+        assertSame(early, due.get(1));
+        assertSame(late, due.get(2));
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for FrameGovernor, which paces the flushes of a session.
+ */
+public class FrameGovernorTest {
+
+    /**
+     * One millisecond in nanoseconds.
+     */
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The first frame goes out at once, even with a frame cap.
+     */
+    @Test
+    public void testFirstFrame() {
+        FrameGovernor governor = new FrameGovernor(10);
+        assertEquals(0, governor.getDelay(12345 * MS, 0));
+    }
+
+    /**
+     * With a frame cap, the next flush waits for the frame interval,
+     * counted from the start of the last flush.
+     */
+    @Test
+    public void testFrameCap() {
+        FrameGovernor governor = new FrameGovernor(10);
+        long start = 1000 * MS;
+        governor.frameFlushed(start, start + MS);
+        assertEquals(100 * MS, governor.getDelay(start, 0));
+        assertEquals(60 * MS, governor.getDelay(start + 40 * MS, 0));
+        assertEquals(0, governor.getDelay(start + 100 * MS, 0));
+        assertEquals(0, governor.getDelay(start + 500 * MS, 0));
+
+        // No cap: a fast flush lets the next one go out almost at once.
+        governor.setMaxFramesPerSecond(0);
+        assertEquals(MS, governor.getDelay(start + MS, 0));
+        assertEquals(0, governor.getDelay(start + 2 * MS, 0));
+    }
+
+    /**
+     * A slow flush holds the next one back for twice its duration, even
+     * when that is longer than the frame interval.
+     */
+    @Test
+    public void testSlowFlush() {
+        FrameGovernor governor = new FrameGovernor(10);
+        long start = 1000 * MS;
+        governor.frameFlushed(start, start + 80 * MS);
+        assertEquals(80 * MS, governor.getDelay(start + 80 * MS, 0));
+        assertEquals(0, governor.getDelay(start + 160 * MS, 0));
+
+        // The backoff follows the last flush, not the slowest.
+        start += 160 * MS;
+        governor.frameFlushed(start, start + MS);
+        assertEquals(100 * MS, governor.getDelay(start, 0));
+    }
+
+    /**
+     * While output is pending, flushes are held and polled for, whatever
+     * the timing of the last flush.
+     */
+    @Test
+    public void testPendingOutput() {
+        FrameGovernor governor = new FrameGovernor(0);
+        assertEquals(5 * MS, governor.getDelay(0, 1));
+
+        governor.setMaxFramesPerSecond(10);
+        assertEquals(100 * MS, governor.getDelay(0, 1));
+        governor.frameFlushed(0, MS);
+        assertEquals(100 * MS, governor.getDelay(500 * MS, 4096));
+        assertEquals(0, governor.getDelay(500 * MS, 0));
+
+        assertEquals(0, governor.getDeferredFrames());
+        governor.frameDeferred();
+        governor.frameDeferred();
+        assertEquals(2, governor.getDeferredFrames());
+    }
+
+    /**
+     * A negative frame rate is rejected.
+     */
+    @Test
+    public void testInvalidRate() {
+        try {
+            new FrameGovernor(-1);
+            fail("negative frame rate accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jexer.event.TInputEvent;
+import jexer.event.TMouseEvent;
+import jexer.event.TResizeEvent;
+
+/**
+ * Tests for the InputEventQueue MPSC queue and its coalescing.
+ */
+public class InputEventQueueTest {
+
+    /**
+     * Make a mouse event.
+     *
+     * @param type the event type
+     * @param x column
+     * @param mouse1 if true, the left button is down
+     * @return the event
+     */
+    private static TMouseEvent mouse(final TMouseEvent.Type type,
+        final int x, final boolean mouse1) {
+
+        return new TMouseEvent(type, x, 0, x, 0, mouse1, false, false,
+            false, false);
+    }
+
+    /**
+     * Make a screen resize event.
+     *
+     * @param width new width
+     * @return the event
+     */
+    private static TResizeEvent resize(final int width) {
+        return new TResizeEvent(TResizeEvent.Type.SCREEN, width, 25);
+    }
+
+    /**
+     * Events from several producer threads all arrive, and each producer's
+     * events arrive in the order it added them.
+     *
+     * @throws InterruptedException if interrupted
+     */
+    @Test
+    public void testProducerOrdering() throws InterruptedException {
+        final InputEventQueue queue = new InputEventQueue();
+        final int producers = 4;
+        final int perProducer = 5000;
+        Thread [] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int row = p;
+            threads[p] = new Thread(new Runnable() {
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.add(new TMouseEvent(TMouseEvent.Type.MOUSE_DOWN,
+                                i, row, i, row, true, false, false, false,
+                                false));
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        List<TInputEvent> events = new ArrayList<TInputEvent>();
+        int [] next = new int[producers];
+        long deadline = System.nanoTime() + 10000000000L;
+        while ((events.size() < producers * perProducer)
+            && (System.nanoTime() < deadline)
+        ) {
+            queue.await(1000000L);
+            queue.drainTo(events);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        queue.drainTo(events);
+
+        assertEquals(producers * perProducer, events.size());
+        for (TInputEvent event : events) {
+            TMouseEvent mouse = (TMouseEvent) event;
+            assertEquals(next[mouse.getY()], mouse.getX());
+            next[mouse.getY()]++;
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    /**
+     * A wakeup() before await() is not lost.
+     */
+    @Test
+    public void testEarlyWakeup() {
+        InputEventQueue queue = new InputEventQueue();
+        queue.wakeup();
+        long start = System.nanoTime();
+        queue.await(5000000000L);
+        assertTrue(System.nanoTime() - start < 1000000000L);
+    }
+
+    /**
+     * Runs of motion events with the same buttons, and runs of resizes,
+     * collapse to their last event.  Anything else in between ends a run.
+     */
+    @Test
+    public void testCoalesce() {
+        InputEventQueue queue = new InputEventQueue();
+        TMouseEvent move1 = mouse(TMouseEvent.Type.MOUSE_MOTION, 1, false);
+        TMouseEvent move2 = mouse(TMouseEvent.Type.MOUSE_MOTION, 2, false);
+        TMouseEvent drag3 = mouse(TMouseEvent.Type.MOUSE_MOTION, 3, true);
+        TMouseEvent drag4 = mouse(TMouseEvent.Type.MOUSE_MOTION, 4, true);
+        TMouseEvent up5 = mouse(TMouseEvent.Type.MOUSE_UP, 5, false);
+        TMouseEvent move6 = mouse(TMouseEvent.Type.MOUSE_MOTION, 6, false);
+        TResizeEvent size1 = resize(81);
+        TResizeEvent size2 = resize(82);
+        TResizeEvent size3 = resize(83);
+
+        List<TInputEvent> events = new ArrayList<TInputEvent>();
+        events.add(move1);
+        events.add(move2);
+        events.add(drag3);
+        events.add(drag4);
+        events.add(up5);
+        events.add(move6);
+        events.add(size1);
+        events.add(size2);
+        events.add(size3);
+        queue.coalesce(events);
+
+        assertEquals(5, events.size());
+        assertSame(move2, events.get(0));
+        assertSame(drag4, events.get(1));
+        assertSame(up5, events.get(2));
+        assertSame(move6, events.get(3));
+        assertSame(size3, events.get(4));
+        assertEquals(2, queue.getDroppedMotionEvents());
+        assertEquals(2, queue.getDroppedResizeEvents());
+
+        // coalesceInto() does the same one event at a time.
+        List<TInputEvent> pending = new ArrayList<TInputEvent>();
+        queue.coalesceInto(pending, move1);
+        queue.coalesceInto(pending, move2);
+        queue.coalesceInto(pending, up5);
+        queue.coalesceInto(pending, move6);
+        assertEquals(3, pending.size());
+        assertSame(move2, pending.get(0));
+        assertEquals(3, queue.getDroppedMotionEvents());
+    }
+
+}
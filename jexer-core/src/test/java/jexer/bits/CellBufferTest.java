@@ -0,0 +1,293 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.bits;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests for the CellBuffer packed cell layout and row comparisons.
+ */
+public class CellBufferTest {
+
+    /**
+     * Make a set of attributes.
+     *
+     * @param fore foreground color
+     * @param back background color
+     * @return the attributes, with no bold/blink/reverse/underline/protect
+     */
+    private static CellAttributes attr(final Color fore, final Color back) {
+        CellAttributes attr = new CellAttributes();
+        attr.setForeColor(fore);
+        attr.setBackColor(back);
+        return attr;
+    }
+
+    /**
+     * Every field lands in the bits the class javadoc documents.
+     */
+    @Test
+    public void testPackedLayout() {
+        CellAttributes attr = attr(Color.RED, Color.BLUE);
+        attr.setBold(true);
+        attr.setUnderline(true);
+        int packed = CellBuffer.pack('\u2500', attr);
+
+        assertEquals(0x2500, packed & 0xFFFF);
+        assertEquals(1, (packed >>> 16) & 0x7);
+        assertEquals(4, (packed >>> 19) & 0x7);
+        assertEquals(1 << 22, packed & (1 << 22));
+        assertEquals(0, packed & (1 << 23));
+        assertEquals(0, packed & (1 << 24));
+        assertEquals(1 << 25, packed & (1 << 25));
+        assertEquals(0, packed & (1 << 26));
+        assertEquals(0, packed >>> 27);
+
+        assertEquals('\u2500', CellBuffer.getChar(packed));
+        assertSame(Color.RED, CellBuffer.getForeColor(packed));
+        assertSame(Color.BLUE, CellBuffer.getBackColor(packed));
+        assertTrue(CellBuffer.isBold(packed));
+        assertFalse(CellBuffer.isBlink(packed));
+        assertFalse(CellBuffer.isReverse(packed));
+        assertTrue(CellBuffer.isUnderline(packed));
+        assertFalse(CellBuffer.isProtect(packed));
+    }
+
+    /**
+     * Unpacking restores every attribute, and the character of a Cell.
+     */
+    @Test
+    public void testUnpackRoundTrip() {
+        CellAttributes attr = attr(Color.YELLOW, Color.MAGENTA);
+        attr.setBlink(true);
+        attr.setReverse(true);
+        attr.setProtect(true);
+        int packed = CellBuffer.pack('x', attr);
+
+        Cell cell = new Cell();
+        CellBuffer.unpack(packed, cell);
+        assertEquals('x', cell.getChar());
+        assertSame(Color.YELLOW, cell.getForeColor());
+        assertSame(Color.MAGENTA, cell.getBackColor());
+        assertFalse(cell.isBold());
+        assertTrue(cell.isBlink());
+        assertTrue(cell.isReverse());
+        assertFalse(cell.isUnderline());
+        assertTrue(cell.isProtect());
+        assertEquals(packed, CellBuffer.pack(cell));
+    }
+
+    /**
+     * BLANK is a default Cell.
+     */
+    @Test
+    public void testBlank() {
+        assertEquals(CellBuffer.BLANK, CellBuffer.pack(new Cell()));
+        assertTrue(CellBuffer.isBlank(CellBuffer.BLANK));
+        assertFalse(CellBuffer.isBlank(CellBuffer.BLANK | (1 << 22)));
+    }
+
+    /**
+     * Protect is not part of the SGR mask.
+     */
+    @Test
+    public void testSgrMask() {
+        CellAttributes attr = attr(Color.WHITE, Color.BLACK);
+        attr.setProtect(true);
+        int packed = CellBuffer.pack(' ', attr);
+        assertTrue(packed != CellBuffer.BLANK);
+        assertEquals(CellBuffer.BLANK & CellBuffer.SGR_MASK,
+            packed & CellBuffer.SGR_MASK);
+    }
+
+    /**
+     * resolveReverse() swaps the colors and clears the reverse bit.
+     */
+    @Test
+    public void testResolveReverse() {
+        CellAttributes attr = attr(Color.GREEN, Color.CYAN);
+        attr.setReverse(true);
+        int packed = CellBuffer.pack('q', attr);
+
+        int shown = CellBuffer.resolveReverse(packed, true);
+        assertFalse(CellBuffer.isReverse(shown));
+        assertSame(Color.CYAN, CellBuffer.getForeColor(shown));
+        assertSame(Color.GREEN, CellBuffer.getBackColor(shown));
+        assertEquals('q', CellBuffer.getChar(shown));
+
+        int plain = CellBuffer.resolveReverse(packed, false);
+        assertFalse(CellBuffer.isReverse(plain));
+        assertSame(Color.GREEN, CellBuffer.getForeColor(plain));
+    }
+
+    /**
+     * mismatch() finds the first differing cell of a span, and only looks
+     * inside the span.
+     */
+    @Test
+    public void testMismatch() {
+        CellBuffer a = new CellBuffer(10, 3);
+        CellBuffer b = new CellBuffer(10, 3);
+        int red = CellBuffer.pack('r', attr(Color.RED, Color.BLACK));
+        b.set(2, 1, red);
+        b.set(7, 1, red);
+
+        assertEquals(-1, a.mismatch(b, 0, 0, 10));
+        assertEquals(2, a.mismatch(b, 1, 0, 10));
+        assertEquals(7, a.mismatch(b, 1, 3, 10));
+        assertEquals(-1, a.mismatch(b, 1, 3, 7));
+        assertEquals(2, a.mismatch(b, 1, 2, 3));
+    }
+
+    /**
+     * mismatchRight() finds the last differing cell of a span, and only
+     * looks inside the span.
+     */
+    @Test
+    public void testMismatchRight() {
+        CellBuffer a = new CellBuffer(10, 3);
+        CellBuffer b = new CellBuffer(10, 3);
+        int red = CellBuffer.pack('r', attr(Color.RED, Color.BLACK));
+        b.set(2, 1, red);
+        b.set(7, 1, red);
+
+        assertEquals(-1, a.mismatchRight(b, 2, 0, 10));
+        assertEquals(7, a.mismatchRight(b, 1, 0, 10));
+        assertEquals(2, a.mismatchRight(b, 1, 0, 7));
+        assertEquals(-1, a.mismatchRight(b, 1, 3, 7));
+    }
+
+    /**
+     * rowEquals() compares different rows, and copyRow() makes them equal.
+     */
+    @Test
+    public void testRowEqualsAndCopyRow() {
+        CellBuffer a = new CellBuffer(6, 4);
+        CellBuffer b = new CellBuffer(6, 4);
+        CellAttributes attr = attr(Color.WHITE, Color.BLUE);
+        for (int x = 0; x < 6; x++) {
+            a.set(x, 0, (char) ('a' + x), attr);
+        }
+
+        assertFalse(b.rowEquals(3, a, 0, 0, 6));
+        assertTrue(b.rowEquals(3, a, 0, 0, 0));
+        b.copyRow(a, 0, 3, 2, 5);
+        assertTrue(b.rowEquals(3, a, 0, 2, 5));
+        assertFalse(b.rowEquals(3, a, 0, 0, 6));
+        assertEquals(CellBuffer.BLANK, b.get(1, 3));
+        assertEquals('c', b.getChar(2, 3));
+
+        b.copyRow(a, 0, 3, 0, 6);
+        assertTrue(b.rowEquals(3, a, 0, 0, 6));
+        assertEquals(-1, b.mismatch(b, 3, 0, 6));
+    }
+
+    /**
+     * move() shifts cells within a row, including overlapping ranges.
+     */
+    @Test
+    public void testMove() {
+        CellBuffer a = new CellBuffer(5, 1);
+        CellAttributes attr = attr(Color.WHITE, Color.BLACK);
+        for (int x = 0; x < 5; x++) {
+            a.set(x, 0, (char) ('0' + x), attr);
+        }
+        a.move(0, 0, 1, 4);
+        assertEquals("00123", row(a, 0));
+        a.move(0, 2, 0, 3);
+        assertEquals("12323", row(a, 0));
+    }
+
+    /**
+     * Row hashes are only kept when asked for, follow every kind of write,
+     * and survive copies from buffers without hashes.
+     */
+    @Test
+    public void testRowHash() {
+        CellBuffer plain = new CellBuffer(5, 2);
+        assertFalse(plain.isRowHashed());
+        try {
+            plain.getRowHash(0);
+            fail("getRowHash() on a buffer without hashes");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        CellBuffer a = new CellBuffer(5, 2, true);
+        CellBuffer b = new CellBuffer(5, 2, true);
+        assertTrue(a.isRowHashed());
+        assertEquals(a.getRowHash(0), b.getRowHash(1));
+
+        CellAttributes attr = attr(Color.WHITE, Color.BLACK);
+        for (int x = 0; x < 5; x++) {
+            a.set(x, 0, (char) ('0' + x), attr);
+            plain.set(x, 1, (char) ('0' + x), attr);
+        }
+        assertTrue(a.getRowHash(0) != a.getRowHash(1));
+
+        // Moving cells and putting them back restores the hash
+        long hash = a.getRowHash(0);
+        a.move(0, 0, 1, 4);
+        assertTrue(a.getRowHash(0) != hash);
+        a.set(0, 0, '0', attr);
+        for (int x = 1; x < 5; x++) {
+            a.set(x, 0, (char) ('0' + x), attr);
+        }
+        assertEquals(hash, a.getRowHash(0));
+
+        // Copies from a hashed or a plain buffer bring the hash along
+        b.copyRow(a, 0, 1, 0, 5);
+        assertEquals(hash, b.getRowHash(1));
+        b.copyFrom(plain);
+        assertEquals(hash, b.getRowHash(1));
+        assertEquals(a.getRowHash(1), b.getRowHash(0));
+    }
+
+    /**
+     * Get the characters of a row.
+     *
+     * @param buffer the buffer
+     * @param y row coordinate
+     * @return the characters
+     */
+    private static String row(final CellBuffer buffer, final int y) {
+        StringBuilder sb = new StringBuilder();
+        for (int x = 0; x < buffer.getWidth(); x++) {
+            sb.append(buffer.getChar(x, y));
+        }
+        return sb.toString();
+    }
+
+}
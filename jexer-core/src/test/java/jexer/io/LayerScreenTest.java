@@ -0,0 +1,122 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
+import jexer.bits.Color;
+
+/**
+ * Tests for LayerScreen, the retained cell layer of a window.
+ */
+public class LayerScreenTest {
+
+    /**
+     * Make attributes with the given colors.
+     *
+     * @param fore foreground color
+     * @param back background color
+     * @return the attributes
+     */
+    private static CellAttributes attr(final Color fore, final Color back) {
+        CellAttributes attr = new CellAttributes();
+        attr.setForeColor(fore);
+        attr.setBackColor(back);
+        return attr;
+    }
+
+    /**
+     * An erased layer is transparent everywhere, and compositing it leaves
+     * the screen alone.
+     */
+    @Test
+    public void testErase() {
+        LayerScreen layer = new LayerScreen(10, 4);
+        layer.erase();
+        int below = CellBuffer.pack('x', attr(Color.RED, Color.BLUE));
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 10; x++) {
+                assertEquals(below, LayerScreen.composite(below,
+                        layer.getLayerXY(x, y)));
+            }
+        }
+
+        layer.putCharXY(3, 2, 'a', attr(Color.WHITE, Color.BLACK));
+        assertEquals(0, layer.getLayerXY(3, 2) & LayerScreen.TRANSPARENT);
+        layer.erase();
+        assertEquals(LayerScreen.TRANSPARENT, layer.getLayerXY(3, 2));
+    }
+
+    /**
+     * A cell drawn with a character and attributes replaces the cell
+     * below.
+     */
+    @Test
+    public void testOpaque() {
+        int below = CellBuffer.pack('x', attr(Color.RED, Color.BLUE));
+        int layer = CellBuffer.pack('a', attr(Color.WHITE, Color.BLACK));
+        assertEquals(layer, LayerScreen.composite(below, layer));
+    }
+
+    /**
+     * A character drawn on a transparent cell keeps the attributes below.
+     */
+    @Test
+    public void testCharOnly() {
+        CellAttributes belowAttr = attr(Color.RED, Color.BLUE);
+        int below = CellBuffer.pack('x', belowAttr);
+        int layer = LayerScreen.TRANSPARENT | 'a';
+        int shown = LayerScreen.composite(below, layer);
+        assertEquals(CellBuffer.pack('a', belowAttr), shown);
+        assertEquals(0, shown & LayerScreen.TRANSPARENT);
+    }
+
+    /**
+     * Attributes drawn without a character, such as a shadow, keep the
+     * character below.
+     */
+    @Test
+    public void testAttrOnly() {
+        int below = CellBuffer.pack('x', attr(Color.RED, Color.BLUE));
+        CellAttributes shadow = attr(Color.BLACK, Color.BLACK);
+        LayerScreen layer = new LayerScreen(4, 1);
+        layer.erase();
+        layer.putAttrXY(1, 0, shadow);
+        int shown = LayerScreen.composite(below, layer.getLayerXY(1, 0));
+        assertEquals('x', CellBuffer.getChar(shown));
+        assertEquals(CellBuffer.pack('x', shadow), shown);
+        assertEquals(below, LayerScreen.composite(below,
+                layer.getLayerXY(0, 0)));
+    }
+
+}
@@ -0,0 +1,304 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jexer.bits.CellAttributes;
+import jexer.bits.Color;
+
+/**
+ * Tests for the damage tracking and scroll detection in Screen.
+ */
+public class ScreenTest {
+
+    /**
+     * A Screen whose flush just copies logical to physical.
+     */
+    private static class TestScreen extends Screen {
+
+        /**
+         * Bring physical up to date and forget the damage.
+         */
+        @Override
+        public void flushPhysical() {
+            physical.copyFrom(logical);
+            clearDamage();
+            dirty = false;
+            reallyCleared = false;
+        }
+
+    }
+
+    /**
+     * The screen under test.
+     */
+    private TestScreen screen;
+
+    /**
+     * Make a fresh 80x24 screen that has been flushed once.
+     */
+    @Before
+    public void setUp() {
+        screen = new TestScreen();
+        screen.flushPhysical();
+    }
+
+    /**
+     * Count the damaged rows.
+     *
+     * @return the number of rows
+     */
+    private int damagedRows() {
+        int n = 0;
+        for (int y = screen.nextDamagedRow(0); y >= 0;
+             y = screen.nextDamagedRow(y + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Count the changed rows.
+     *
+     * @return the number of rows
+     */
+    private int changedRows() {
+        int n = 0;
+        for (int y = screen.nextChangedRow(0); y >= 0;
+             y = screen.nextChangedRow(y + 1)) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Write "line N" on rows top through bottom - 1, with N being the row
+     * plus an offset.
+     *
+     * @param top first row
+     * @param bottom row after the last
+     * @param offset added to the row number
+     */
+    private void putLines(final int top, final int bottom, final int offset) {
+        for (int y = top; y < bottom; y++) {
+            screen.putStringXY(0, y, "line " + (y + offset));
+        }
+    }
+
+    /**
+     * A new or resized screen is damaged everywhere.
+     */
+    @Test
+    public void testNewScreen() {
+        TestScreen fresh = new TestScreen();
+        assertTrue(fresh.isDirty());
+        for (int y = 0; y < fresh.getHeight(); y++) {
+            assertTrue(fresh.isRowDamaged(y));
+            assertEquals(0, fresh.getDamageLeft(y));
+            assertEquals(fresh.getWidth(), fresh.getDamageRight(y));
+        }
+
+        screen.setDimensions(40, 10);
+        assertEquals(10, damagedRows());
+    }
+
+    /**
+     * Each damaged row covers the span from its left-most to its
+     * right-most changed cell, and rows nothing was written to are left
+     * alone.
+     */
+    @Test
+    public void testDamageSpan() {
+        assertFalse(screen.isDirty());
+        assertEquals(-1, screen.nextDamagedRow(0));
+
+        screen.putCharXY(10, 2, 'x');
+        screen.putCharXY(3, 2, 'y');
+        screen.putCharXY(5, 7, 'z');
+        assertTrue(screen.isDirty());
+        assertEquals(2, screen.nextDamagedRow(0));
+        assertEquals(7, screen.nextDamagedRow(3));
+        assertEquals(-1, screen.nextDamagedRow(8));
+        assertEquals(3, screen.getDamageLeft(2));
+        assertEquals(11, screen.getDamageRight(2));
+        assertEquals(5, screen.getDamageLeft(7));
+        assertEquals(6, screen.getDamageRight(7));
+        assertEquals(screen.getWidth(), screen.getDamageLeft(0));
+        assertEquals(0, screen.getDamageRight(0));
+
+        screen.flushPhysical();
+        assertFalse(screen.isDirty());
+        assertEquals(0, damagedRows());
+    }
+
+    /**
+     * Writing what a cell already holds is not damage, so redrawing an
+     * unchanged screen leaves nothing to flush.
+     */
+    @Test
+    public void testRedrawSame() {
+        screen.putAll(' ', new CellAttributes());
+        assertFalse(screen.isDirty());
+        assertEquals(0, damagedRows());
+
+        CellAttributes attr = new CellAttributes();
+        attr.setForeColor(Color.YELLOW);
+        screen.putStringXY(4, 6, "same text", attr);
+        screen.flushPhysical();
+        screen.putStringXY(4, 6, "same text", attr);
+        screen.putAttrXY(4, 6, attr);
+        assertFalse(screen.isDirty());
+        assertEquals(0, damagedRows());
+    }
+
+    /**
+     * A cell changed and then changed back is damaged, but its row no
+     * longer differs from physical.
+     */
+    @Test
+    public void testChangeBack() {
+        screen.putCharXY(4, 4, 'x');
+        screen.putCharXY(5, 4, 'y');
+        assertTrue(screen.isRowChanged(4));
+        screen.putCharXY(4, 4, ' ');
+        assertTrue(screen.isRowChanged(4));
+        screen.putCharXY(5, 4, ' ');
+        assertTrue(screen.isRowDamaged(4));
+        assertFalse(screen.isRowChanged(4));
+        assertEquals(-1, screen.nextChangedRow(0));
+    }
+
+    /**
+     * reset() damages only the cells that were not blank already.
+     */
+    @Test
+    public void testReset() {
+        screen.putStringXY(0, 5, "hello");
+        screen.flushPhysical();
+        screen.reset();
+        assertEquals(1, damagedRows());
+        assertEquals(5, screen.nextChangedRow(0));
+        assertEquals(0, screen.getDamageLeft(5));
+        assertEquals(5, screen.getDamageRight(5));
+
+        screen.flushPhysical();
+        screen.reset();
+        assertFalse(screen.isDirty());
+        assertEquals(0, damagedRows());
+    }
+
+    /**
+     * clearPhysical() damages every row, but only the rows with something
+     * on the logical screen need to be drawn.
+     */
+    @Test
+    public void testClearPhysical() {
+        screen.putStringXY(0, 3, "abc");
+        screen.putStringXY(70, 20, "xyz");
+        screen.flushPhysical();
+        screen.clearPhysical();
+        assertTrue(screen.isDirty());
+        assertEquals(screen.getHeight(), damagedRows());
+        assertEquals(2, changedRows());
+        assertEquals(3, screen.nextChangedRow(0));
+        assertEquals(20, screen.nextChangedRow(4));
+    }
+
+    /**
+     * Text that moved up finds a block with a positive shift, and after
+     * moving physical the same way only the new row is left to draw.
+     */
+    @Test
+    public void testScrollUp() {
+        putLines(2, 11, 0);
+        screen.flushPhysical();
+        putLines(2, 10, 1);
+        screen.putStringXY(0, 10, "new    ");
+
+        ScrollRegion scroll = screen.findScroll();
+        assertEquals(0, scroll.getLeft());
+        assertEquals(7, scroll.getRight());
+        assertEquals(2, scroll.getTop());
+        assertEquals(11, scroll.getBottom());
+        assertEquals(1, scroll.getShift());
+
+        screen.scrollPhysical(scroll);
+        assertEquals(10, screen.nextChangedRow(0));
+        assertEquals(1, changedRows());
+    }
+
+    /**
+     * Text that moved down finds a block with a negative shift.
+     */
+    @Test
+    public void testScrollDown() {
+        putLines(2, 11, 0);
+        screen.flushPhysical();
+        putLines(3, 11, -1);
+        screen.putStringXY(0, 2, "new    ");
+
+        ScrollRegion scroll = screen.findScroll();
+        assertEquals(2, scroll.getTop());
+        assertEquals(11, scroll.getBottom());
+        assertEquals(-1, scroll.getShift());
+
+        screen.scrollPhysical(scroll);
+        assertEquals(2, screen.nextChangedRow(0));
+        assertEquals(1, changedRows());
+    }
+
+    /**
+     * No block is found when fewer than two rows changed, or when the
+     * changed rows did not move.
+     */
+    @Test
+    public void testNoScroll() {
+        putLines(2, 11, 0);
+        screen.flushPhysical();
+        screen.putStringXY(0, 5, "other");
+        assertNull(screen.findScroll());
+
+        screen.putStringXY(0, 8, "thing");
+        assertNull(screen.findScroll());
+
+        // One row moved is not worth a scroll.
+        screen.flushPhysical();
+        screen.putStringXY(0, 5, "line 6");
+        screen.putStringXY(0, 9, "xyzzy");
+        assertNull(screen.findScroll());
+    }
+
+}
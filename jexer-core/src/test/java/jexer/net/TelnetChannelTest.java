@@ -0,0 +1,457 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for the TelnetChannel protocol decoder, with the input split
+ * across reads at every possible point, and for the cap on its output
+ * buffer.
+ */
+public class TelnetChannelTest {
+
+    /**
+     * IAC.
+     */
+    private static final int IAC = 255;
+
+    /**
+     * Subnegotiation begin.
+     */
+    private static final int SB = 250;
+
+    /**
+     * Subnegotiation end.
+     */
+    private static final int SE = 240;
+
+    /**
+     * DO.
+     */
+    private static final int DO = 253;
+
+    /**
+     * Make a byte array from ints.
+     *
+     * @param values the byte values, 0 to 255
+     * @return the bytes
+     */
+    private static byte [] bytes(final int... values) {
+        byte [] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Feed bytes to a channel in pieces.
+     *
+     * @param channel the channel
+     * @param data the bytes from the socket
+     * @param splits offsets at which to start a new read
+     * @return the decoded bytes
+     */
+    private static byte [] feed(final TelnetChannel channel,
+        final byte [] data, final int... splits) {
+
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int start = 0;
+        for (int i = 0; i <= splits.length; i++) {
+            int end = (i < splits.length ? splits[i] : data.length);
+            ByteBuffer in = ByteBuffer.wrap(data, start, end - start);
+            byte [] buf = new byte[in.remaining() + 1];
+            int n = channel.readReady(in, buf);
+            decoded.write(buf, 0, n);
+            start = end;
+        }
+        return decoded.toByteArray();
+    }
+
+    /**
+     * Feed bytes to a new channel split at one point, for every point.
+     *
+     * @param data the bytes from the socket
+     * @param expected the decoded bytes
+     * @return the channel of the last split
+     */
+    private static TelnetChannel feedAllSplits(final byte [] data,
+        final byte [] expected) {
+
+        TelnetChannel channel = null;
+        for (int split = 0; split <= data.length; split++) {
+            channel = new TelnetChannel(null, null);
+            byte [] decoded = feed(channel, data, split);
+            assertEquals("split at " + split, new String(bytes8(expected)),
+                new String(bytes8(decoded)));
+        }
+        return channel;
+    }
+
+    /**
+     * Make a comparable string out of bytes.
+     *
+     * @param data the bytes
+     * @return the bytes as chars
+     */
+    private static char [] bytes8(final byte [] data) {
+        char [] result = new char[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = (char) (data[i] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * A NAWS subnegotiation between data bytes sets the window size, no
+     * matter where the reads split it.
+     */
+    @Test
+    public void testNaws() {
+        byte [] data = bytes('a', 'b', IAC, SB, 31, 0, 120, 0, 40, IAC, SE,
+            'c', 'd');
+        for (int split = 0; split <= data.length; split++) {
+            TelnetChannel channel = new TelnetChannel(null, null);
+            assertEquals("abcd", new String(bytes8(feed(channel, data,
+                            split))));
+            assertEquals(120, channel.getWindowWidth());
+            assertEquals(40, channel.getWindowHeight());
+            assertTrue(channel.checkResized());
+            assertFalse(channel.checkResized());
+        }
+
+        // Byte at a time
+        TelnetChannel channel = new TelnetChannel(null, null);
+        int [] splits = new int[data.length - 1];
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = i + 1;
+        }
+        assertEquals("abcd", new String(bytes8(feed(channel, data,
+                        splits))));
+        assertEquals(120, channel.getWindowWidth());
+    }
+
+    /**
+     * A doubled IAC inside a subnegotiation is one argument byte.
+     */
+    @Test
+    public void testNawsDoubledIac() {
+        byte [] data = bytes(IAC, SB, 31, 0, IAC, IAC, 0, 30, IAC, SE);
+        TelnetChannel channel = feedAllSplits(data, bytes());
+        assertEquals(255, channel.getWindowWidth());
+        assertEquals(30, channel.getWindowHeight());
+    }
+
+    /**
+     * Terminal type and environment subnegotiations are parsed.
+     */
+    @Test
+    public void testTerminalTypeAndEnvironment() {
+        byte [] data = bytes(IAC, SB, 24, 0, 'x', 't', 'e', 'r', 'm',
+            IAC, SE,
+            IAC, SB, 39, 0, 0, 'U', 'S', 'E', 'R', 1, 'b', 'o', 'b',
+            0, 'L', 'A', 'N', 'G', 1, 'f', 'r', IAC, SE,
+            'z');
+        TelnetChannel channel = feedAllSplits(data, bytes('z'));
+        assertEquals("xterm", channel.getTerminalType());
+        assertEquals("bob", channel.getUsername());
+        assertEquals("fr", channel.getLanguage());
+    }
+
+    /**
+     * In data, IAC IAC is one 255 byte, CR NUL is CR, and CR LF is CR LF.
+     * Option commands that need no reply are swallowed.
+     */
+    @Test
+    public void testData() {
+        byte [] data = bytes('a', IAC, IAC, 'b', 13, 0, 'c', 13, 10,
+            IAC, 252, 24, IAC, 241, 'd');
+        feedAllSplits(data, bytes('a', IAC, 'b', 13, 'c', 13, 10, 'd'));
+    }
+
+    /**
+     * Output is encoded for NVT ASCII mode: a bare CR becomes CR NUL and
+     * IAC is doubled.
+     *
+     * @throws IOException if the write fails
+     */
+    @Test
+    public void testEncode() throws IOException {
+        TelnetChannel channel = new TelnetChannel(null, null);
+        channel.write(bytes('a', 13, 'b', 13, 10, IAC), 0, 6);
+        // a, CR NUL, b, CR LF, IAC IAC
+        assertEquals(8, channel.getPendingOutput());
+    }
+
+    /**
+     * Make a server on the loopback interface that is not running, for
+     * channels that need one to queue themselves on.
+     *
+     * @return the server
+     * @throws IOException if the server cannot be opened
+     */
+    private static TelnetChannelServer idleServer() throws IOException {
+        return new TelnetChannelServer(new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0), null);
+    }
+
+    /**
+     * Close a server made by idleServer().
+     *
+     * @param server the server
+     */
+    private static void closeIdleServer(final TelnetChannelServer server) {
+        // With close() called first, run() only shuts down.
+        server.close();
+        server.run();
+    }
+
+    /**
+     * Fill a channel's output until only two bytes of MAX_OUTPUT are left.
+     * Each byte written reserves room for four, so the pieces shrink as
+     * the buffer fills.
+     *
+     * @param channel the channel
+     * @throws IOException if a write fails
+     */
+    private static void fill(final TelnetChannel channel) throws IOException {
+        int left = TelnetChannel.MAX_OUTPUT - channel.getPendingOutput();
+        while (left > 4) {
+            channel.write(new byte[left / 4], 0, left / 4);
+            left = TelnetChannel.MAX_OUTPUT - channel.getPendingOutput();
+        }
+        // IAC goes out as IAC IAC
+        channel.write(bytes(IAC), 0, 1);
+        assertEquals(TelnetChannel.MAX_OUTPUT - 2,
+            channel.getPendingOutput());
+    }
+
+    /**
+     * Wait for a writer to block on a full channel.
+     *
+     * @param thread the writer thread
+     * @param channel the channel it writes to
+     * @param pending the least output pending when the writer has to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitBlocked(final Thread thread,
+        final TelnetChannel channel,
+        final int pending) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((channel.getPendingOutput() < pending)
+            || ((thread.getState() != Thread.State.TIMED_WAITING)
+                && (thread.getState() != Thread.State.WAITING))
+        ) {
+            assertTrue("thread did not block", thread.isAlive()
+                && (System.currentTimeMillis() < deadline));
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * A negotiation reply that does not fit in MAX_OUTPUT drops the
+     * connection instead of growing the buffer, and the data around it is
+     * still decoded.
+     *
+     * @throws IOException if the server cannot be opened
+     */
+    @Test
+    public void testOutputFullDrops() throws IOException {
+        TelnetChannelServer server = idleServer();
+        try {
+            TelnetChannel channel = new TelnetChannel(server, null);
+            fill(channel);
+
+            // IAC DO <unknown> needs three bytes for IAC WONT <unknown>
+            byte [] decoded = feed(channel, bytes('a', IAC, DO, 99, 'b'));
+            assertEquals("ab", new String(bytes8(decoded)));
+            assertEquals(TelnetChannel.MAX_OUTPUT - 2,
+                channel.getPendingOutput());
+            try {
+                channel.write(bytes('c'), 0, 1);
+                fail("write() after the connection was dropped");
+            } catch (IOException e) {
+                // Expected
+            }
+            try {
+                channel.flush();
+                fail("flush() after the connection was dropped");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            closeIdleServer(server);
+        }
+    }
+
+    /**
+     * A write() that does not fit waits for room without touching the
+     * buffer, and can be interrupted.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testWriteWaitsForRoom() throws Exception {
+        TelnetChannelServer server = idleServer();
+        try {
+            final TelnetChannel channel = new TelnetChannel(server, null);
+            fill(channel);
+
+            final AtomicReference<IOException> error;
+            error = new AtomicReference<IOException>();
+            Thread writer = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        channel.write(bytes('x'), 0, 1);
+                    } catch (IOException e) {
+                        error.set(e);
+                    }
+                }
+            });
+            writer.start();
+            awaitBlocked(writer, channel, TelnetChannel.MAX_OUTPUT - 2);
+            assertEquals(TelnetChannel.MAX_OUTPUT - 2,
+                channel.getPendingOutput());
+
+            writer.interrupt();
+            writer.join(5000);
+            assertFalse(writer.isAlive());
+            assertTrue(error.get() instanceof InterruptedIOException);
+            assertEquals(TelnetChannel.MAX_OUTPUT - 2,
+                channel.getPendingOutput());
+        } finally {
+            closeIdleServer(server);
+        }
+    }
+
+    /**
+     * A writer that outruns a slow client blocks with no more than
+     * MAX_OUTPUT pending, and carries on once the client reads.
+     *
+     * @throws Exception if the test fails
+     */
+    @Test
+    public void testSlowClient() throws Exception {
+        final AtomicReference<TelnetChannel> opened;
+        opened = new AtomicReference<TelnetChannel>();
+        final CountDownLatch openLatch = new CountDownLatch(1);
+        TelnetChannelListener listener = new TelnetChannelListener() {
+            public void channelOpened(final TelnetChannel channel) {
+                opened.set(channel);
+                openLatch.countDown();
+            }
+            public void channelRead(final TelnetChannel channel,
+                final byte [] buffer, final int offset, final int length) {
+                // Ignore input
+            }
+            public void channelResized(final TelnetChannel channel) {
+                // Ignore resizes
+            }
+            public void channelClosed(final TelnetChannel channel) {
+                // Nothing to clean up
+            }
+        };
+        TelnetChannelServer server = new TelnetChannelServer(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            listener);
+        Thread serverThread = new Thread(server);
+        serverThread.start();
+        Socket client = new Socket();
+        try {
+            client.setReceiveBufferSize(4096);
+            client.connect(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), server.getLocalPort()));
+            assertTrue(openLatch.await(5, TimeUnit.SECONDS));
+            final TelnetChannel channel = opened.get();
+
+            // Four times MAX_OUTPUT, more than the socket buffers hold
+            final int total = 4 * TelnetChannel.MAX_OUTPUT;
+            final AtomicReference<IOException> error;
+            error = new AtomicReference<IOException>();
+            Thread writer = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        OutputStream output = channel.getOutputStream();
+                        byte [] chunk = new byte[16384];
+                        for (int i = 0; i < total; i += chunk.length) {
+                            output.write(chunk);
+                            output.flush();
+                        }
+                    } catch (IOException e) {
+                        error.set(e);
+                    }
+                }
+            });
+            writer.start();
+            awaitBlocked(writer, channel, TelnetChannel.MAX_OUTPUT
+                - 4 * 16384);
+            assertTrue(channel.getPendingOutput()
+                <= TelnetChannel.MAX_OUTPUT);
+
+            // Read everything: the telnet options, then the data
+            InputStream input = client.getInputStream();
+            byte [] buf = new byte[65536];
+            long read = 0;
+            client.setSoTimeout(5000);
+            while (read < total) {
+                int n = input.read(buf);
+                assertTrue(n > 0);
+                read += n;
+            }
+            writer.join(5000);
+            assertFalse(writer.isAlive());
+            assertEquals(null, error.get());
+        } finally {
+            client.close();
+            server.close();
+            serverThread.join(5000);
+        }
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.tterminal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import jexer.bits.Cell;
+import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
+import jexer.bits.Color;
+
+/**
+ * Tests for DisplayLine on packed cells, and for compacted lines behaving
+ * like the lines they came from.
+ */
+public class DisplayLineTest {
+
+    /**
+     * Make a set of attributes.
+     *
+     * @param fore foreground color
+     * @param back background color
+     * @return the attributes
+     */
+    private static CellAttributes attr(final Color fore, final Color back) {
+        CellAttributes attr = new CellAttributes();
+        attr.setForeColor(fore);
+        attr.setBackColor(back);
+        return attr;
+    }
+
+    /**
+     * Make a line with some text at the start and blanks after it.
+     *
+     * @param text the text
+     * @return the line
+     */
+    private static DisplayLine line(final String text) {
+        DisplayLine line = new DisplayLine(new CellAttributes());
+        CellAttributes attr = attr(Color.GREEN, Color.BLUE);
+        for (int i = 0; i < text.length(); i++) {
+            line.replace(i, CellBuffer.pack(text.charAt(i), attr));
+        }
+        return line;
+    }
+
+    /**
+     * Check that two lines hold the same cells.
+     *
+     * @param expected the line to compare to
+     * @param actual the line to check
+     */
+    private static void assertSameCells(final DisplayLine expected,
+        final DisplayLine actual) {
+
+        assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); i++) {
+            assertEquals("column " + i, expected.packedAt(i),
+                actual.packedAt(i));
+        }
+    }
+
+    /**
+     * A new line is blank in the drawing attributes, and replace() and
+     * charAt() go through the packed cells.
+     */
+    @Test
+    public void testPackedCells() {
+        CellAttributes attr = attr(Color.YELLOW, Color.RED);
+        DisplayLine line = new DisplayLine(attr);
+        assertEquals(CellBuffer.pack(' ', attr), line.packedAt(0));
+        assertEquals(CellBuffer.pack(' ', attr),
+            line.packedAt(line.length() - 1));
+
+        Cell cell = new Cell();
+        cell.setChar('q');
+        cell.setBold(true);
+        line.replace(3, cell);
+        Cell copy = line.charAt(3);
+        assertEquals('q', copy.getChar());
+        assertEquals(true, copy.isBold());
+
+        // charAt() is a copy
+        copy.setChar('z');
+        assertEquals('q', line.charAt(3).getChar());
+    }
+
+    /**
+     * A compacted line reads back exactly as it did before, including the
+     * columns past the stored text.
+     */
+    @Test
+    public void testCompact() {
+        DisplayLine line = line("hello");
+        DisplayLine original = line("hello");
+        line.compact();
+        assertSameCells(original, line);
+
+        // Compacting again changes nothing
+        line.compact();
+        assertSameCells(original, line);
+
+        // A line that is blank all the way
+        DisplayLine blank = new DisplayLine(new CellAttributes());
+        blank.compact();
+        assertSameCells(new DisplayLine(new CellAttributes()), blank);
+
+        // A line that is full all the way
+        DisplayLine full = new DisplayLine(new CellAttributes());
+        DisplayLine fullOriginal = new DisplayLine(new CellAttributes());
+        for (int i = 0; i < full.length(); i++) {
+            full.setChar(i, (char) ('a' + (i % 26)));
+            fullOriginal.setChar(i, (char) ('a' + (i % 26)));
+        }
+        full.compact();
+        assertSameCells(fullOriginal, full);
+    }
+
+    /**
+     * Changing a compacted line expands it first, so every edit gives the
+     * same result as on a line that was never compacted.
+     */
+    @Test
+    public void testExpand() {
+        CellAttributes attr = attr(Color.CYAN, Color.BLACK);
+        Cell cell = new Cell();
+        cell.setChar('#');
+
+        DisplayLine line = line("scrolled");
+        DisplayLine original = line("scrolled");
+        line.compact();
+        line.setChar(100, 'x');
+        original.setChar(100, 'x');
+        assertSameCells(original, line);
+
+        line = line("scrolled");
+        line.compact();
+        line.setAttr(2, attr);
+        original = line("scrolled");
+        original.setAttr(2, attr);
+        assertSameCells(original, line);
+
+        line = line("scrolled");
+        line.compact();
+        line.setBlank(0);
+        original = line("scrolled");
+        original.setBlank(0);
+        assertSameCells(original, line);
+
+        line = line("scrolled");
+        line.compact();
+        line.insert(1, cell);
+        original = line("scrolled");
+        original.insert(1, cell);
+        assertSameCells(original, line);
+
+        line = line("scrolled");
+        line.compact();
+        line.delete(0, cell);
+        original = line("scrolled");
+        original.delete(0, cell);
+        assertSameCells(original, line);
+        assertEquals('#', line.charAt(line.length() - 1).getChar());
+        assertEquals('c', line.charAt(0).getChar());
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.tterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+import jexer.bits.CellBuffer;
+import jexer.bits.Color;
+
+/**
+ * Tests for the bulk GROUND-state path of the ECMA48 state machine: input
+ * read in large chunks must give the same display as input read one byte
+ * at a time.
+ */
+public class ECMA48Test {
+
+    /**
+     * An InputStream that returns at most a few bytes per read, so that
+     * the emulator sees the input in small chunks.
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        /**
+         * The bytes to return.
+         */
+        private final byte [] data;
+
+        /**
+         * The most bytes returned by one read.
+         */
+        private final int chunk;
+
+        /**
+         * The next byte to return.
+         */
+        private int position = 0;
+
+        /**
+         * Public constructor.
+         *
+         * @param data the bytes to return
+         * @param chunk the most bytes returned by one read
+         */
+        public ChunkedInputStream(final byte [] data, final int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            if (position == data.length) {
+                return -1;
+            }
+            return data[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte [] b, final int off, final int len) {
+            if (position == data.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, chunk), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            // Keep InputStreamReader from reading ahead of the chunk.
+            return 0;
+        }
+
+    }
+
+    /**
+     * Run input through a new emulator until it reaches EOF.
+     *
+     * @param type the device type
+     * @param data the bytes from the remote side
+     * @param chunk the most bytes the emulator gets from one read
+     * @return the emulator
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static ECMA48 run(final ECMA48.DeviceType type,
+        final byte [] data, final int chunk)
+        throws UnsupportedEncodingException, InterruptedException {
+
+        ECMA48 emulator = new ECMA48(type, new ChunkedInputStream(data,
+                chunk), new ByteArrayOutputStream());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emulator.isReading()) {
+            assertTrue("emulator did not reach EOF",
+                System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+        return emulator;
+    }
+
+    /**
+     * Check that two emulators show the same lines and cursor.
+     *
+     * @param expected the emulator to compare to
+     * @param actual the emulator to check
+     */
+    private static void assertSameDisplay(final ECMA48 expected,
+        final ECMA48 actual) {
+
+        synchronized (expected) {
+            synchronized (actual) {
+                assertEquals(expected.getLineCount(), actual.getLineCount());
+                for (int i = 0; i < expected.getLineCount(); i++) {
+                    DisplayLine expectedLine = expected.getLine(i);
+                    DisplayLine actualLine = actual.getLine(i);
+                    for (int x = 0; x < expected.getWidth(); x++) {
+                        assertEquals("line " + i + " column " + x,
+                            expectedLine.packedAt(x), actualLine.packedAt(x));
+                    }
+                }
+                assertEquals(expected.getCursorX(), actual.getCursorX());
+                assertEquals(expected.getCursorY(), actual.getCursorY());
+            }
+        }
+    }
+
+    /**
+     * Make some terminal output that mixes printable runs with control
+     * characters and escape sequences, wraps, and scrolls.
+     *
+     * @return the output
+     */
+    private static String sample() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("plain \033[1;31mbold red\033[0m plain\r\n");
+        sb.append("tab\there\033[5;10Hmoved\033[4;44mblue\033[m");
+        sb.append("\033(0lqqk\033(B\r\n");
+        for (int i = 0; i < 3; i++) {
+            // Longer than a line, so it wraps
+            for (int j = 0; j < 100; j++) {
+                sb.append((char) ('a' + ((i + j) % 26)));
+            }
+            sb.append("\r\n");
+        }
+        for (int i = 0; i < 30; i++) {
+            sb.append("line ").append(i).append("\033[K\r\n");
+        }
+        sb.append("\033[2;3Hover\033[7mwrite\033[27m\033[Adone");
+        return sb.toString();
+    }
+
+    /**
+     * VT102 input read in bulk gives the same display as input read one
+     * byte at a time.
+     *
+     * @throws Exception if the emulator fails
+     */
+    @Test
+    public void testBulkMatchesBytes() throws Exception {
+        byte [] data = sample().getBytes("ISO-8859-1");
+        ECMA48 bytes = run(ECMA48.DeviceType.VT102, data, 1);
+        ECMA48 bulk = run(ECMA48.DeviceType.VT102, data, data.length);
+        assertSameDisplay(bytes, bulk);
+
+        // Split inside runs and escape sequences at odd places
+        ECMA48 split = run(ECMA48.DeviceType.VT102, data, 7);
+        assertSameDisplay(bytes, split);
+    }
+
+    /**
+     * XTERM input read in bulk gives the same display as input read one
+     * byte at a time, including characters outside ASCII.
+     *
+     * @throws Exception if the emulator fails
+     */
+    @Test
+    public void testBulkMatchesBytesUtf8() throws Exception {
+        byte [] data = (sample() + "\r\n\u00e9t\u00e9 \u2500\u2500 na\u00efve")
+            .getBytes("UTF-8");
+        ECMA48 bytes = run(ECMA48.DeviceType.XTERM, data, 1);
+        ECMA48 bulk = run(ECMA48.DeviceType.XTERM, data, data.length);
+        assertSameDisplay(bytes, bulk);
+    }
+
+    /**
+     * A printable run takes the attributes in effect when it starts, and
+     * an escape sequence in the middle of the input changes them for the
+     * next run.
+     *
+     * @throws Exception if the emulator fails
+     */
+    @Test
+    public void testRunAttributes() throws Exception {
+        byte [] data = "abc\033[1;32mdef\033[0mg".getBytes("ISO-8859-1");
+        ECMA48 emulator = run(ECMA48.DeviceType.VT102, data, data.length);
+        synchronized (emulator) {
+            DisplayLine line = emulator.getDisplayBuffer().get(0);
+            assertEquals("abcdefg ", text(line, 8));
+            assertFalse(CellBuffer.isBold(line.packedAt(2)));
+            assertTrue(CellBuffer.isBold(line.packedAt(3)));
+            assertEquals(Color.GREEN, CellBuffer.getForeColor(
+                line.packedAt(5)));
+            assertFalse(CellBuffer.isBold(line.packedAt(6)));
+            assertEquals(7, emulator.getCursorX());
+            assertEquals(0, emulator.getCursorY());
+        }
+    }
+
+    /**
+     * VT100 and VT102 strip the high bit of every byte, in runs too.
+     *
+     * @throws Exception if the emulator fails
+     */
+    @Test
+    public void testSevenBit() throws Exception {
+        byte [] data = { 'a', (byte) 0xC1, (byte) 0xE2, 'd' };
+        ECMA48 emulator = run(ECMA48.DeviceType.VT100, data, data.length);
+        synchronized (emulator) {
+            assertEquals("aAbd", text(emulator.getDisplayBuffer().get(0),
+                    4));
+        }
+    }
+
+    /**
+     * Get the characters at the start of a line.
+     *
+     * @param line the line
+     * @param n the number of characters
+     * @return the characters
+     */
+    private static String text(final DisplayLine line, final int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(CellBuffer.getChar(line.packedAt(i)));
+        }
+        return sb.toString();
+    }
+
+}
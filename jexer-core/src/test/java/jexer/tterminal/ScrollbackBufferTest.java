@@ -0,0 +1,167 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.tterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import jexer.bits.CellAttributes;
+
+/**
+ * Tests for the ScrollbackBuffer ring buffer.
+ */
+public class ScrollbackBufferTest {
+
+    /**
+     * Make some lines.
+     *
+     * @param n number of lines
+     * @return the lines
+     */
+    private static DisplayLine [] lines(final int n) {
+        DisplayLine [] lines = new DisplayLine[n];
+        for (int i = 0; i < n; i++) {
+            lines[i] = new DisplayLine(new CellAttributes());
+        }
+        return lines;
+    }
+
+    /**
+     * Check that a buffer holds exactly some of the lines, oldest first.
+     *
+     * @param buffer the buffer
+     * @param lines all the lines that were added
+     * @param first index in lines of the oldest line that should be kept
+     */
+    private static void assertHolds(final ScrollbackBuffer buffer,
+        final DisplayLine [] lines, final int first) {
+
+        assertEquals(lines.length - first, buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            assertSame(lines[first + i], buffer.get(i));
+        }
+    }
+
+    /**
+     * Adding past capacity discards the oldest lines, across several trips
+     * around the ring.
+     */
+    @Test
+    public void testWraparound() {
+        ScrollbackBuffer buffer = new ScrollbackBuffer(4);
+        buffer.setCompact(false);
+        DisplayLine [] lines = lines(11);
+        for (int i = 0; i < lines.length; i++) {
+            buffer.add(lines[i]);
+            int first = Math.max(0, i + 1 - 4);
+            DisplayLine [] added = new DisplayLine[i + 1];
+            System.arraycopy(lines, 0, added, 0, i + 1);
+            assertHolds(buffer, added, first);
+        }
+        try {
+            buffer.get(4);
+            fail("get() past the end did not throw");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Shrinking a wrapped buffer keeps the newest lines in order, and
+     * growing it keeps them all.
+     */
+    @Test
+    public void testSetCapacity() {
+        ScrollbackBuffer buffer = new ScrollbackBuffer(5);
+        buffer.setCompact(false);
+        DisplayLine [] lines = lines(8);
+        for (DisplayLine line : lines) {
+            buffer.add(line);
+        }
+        buffer.setCapacity(3);
+        assertHolds(buffer, lines, 5);
+
+        buffer.setCapacity(6);
+        assertHolds(buffer, lines, 5);
+        DisplayLine [] more = lines(3);
+        for (DisplayLine line : more) {
+            buffer.add(line);
+        }
+        assertEquals(6, buffer.size());
+        assertSame(lines[5], buffer.get(0));
+        assertSame(more[2], buffer.get(5));
+    }
+
+    /**
+     * A zero capacity buffer keeps nothing, and clear() empties a buffer.
+     */
+    @Test
+    public void testEmpty() {
+        ScrollbackBuffer buffer = new ScrollbackBuffer(0);
+        buffer.add(new DisplayLine(new CellAttributes()));
+        assertEquals(0, buffer.size());
+
+        buffer = new ScrollbackBuffer(2);
+        DisplayLine [] lines = lines(3);
+        for (DisplayLine line : lines) {
+            buffer.add(line);
+        }
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        buffer.add(lines[0]);
+        assertSame(lines[0], buffer.get(0));
+    }
+
+    /**
+     * Lines are compacted as they are added, and read back the same, even
+     * a line that goes through the buffer twice.
+     */
+    @Test
+    public void testCompactOnAdd() {
+        ScrollbackBuffer buffer = new ScrollbackBuffer(2);
+        assertTrue(buffer.isCompact());
+        DisplayLine line = new DisplayLine(new CellAttributes());
+        DisplayLine original = new DisplayLine(new CellAttributes());
+        for (int i = 0; i < 4; i++) {
+            line.setChar(i, 'x');
+            original.setChar(i, 'x');
+        }
+        buffer.add(line);
+        buffer.clear();
+        buffer.add(line);
+        for (int i = 0; i < original.length(); i++) {
+            assertEquals(original.packedAt(i), buffer.get(0).packedAt(i));
+        }
+    }
+
+}
@@ -83,6 +83,34 @@ public abstract class Backend {
      */
     public abstract void getEvents(List<TInputEvent> queue);
 
+    /**
+     * Subclasses must provide an implementation that checks for pending
+     * events without removing them.
+     *
+     * @return if true, getEvents() has something to return
+     */
+    public abstract boolean hasEvents();
+
+    /**
+     * Subclasses must provide an implementation that returns the queue
+     * their input events are added to, so that the application can consume
+     * them straight from it.
+     *
+     * @return the queue input events are added to
+     */
+    public abstract InputEventQueue getEventQueue();
+
+    /**
+     * Get the number of bytes already flushed that the remote side has not
+     * taken yet.  Subclasses with a network or otherwise buffered output
+     * override this; the default is 0.
+     *
+     * @return the number of bytes
+     */
+    public int getPendingOutput() {
+        return 0;
+    }
+
     /**
      * Subclasses must provide an implementation that closes sockets,
      * restores console, etc.
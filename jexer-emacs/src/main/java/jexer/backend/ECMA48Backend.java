@@ -38,6 +38,7 @@ import java.util.List;
 import jexer.event.TInputEvent;
 import jexer.io.ECMA48Screen;
 import jexer.io.ECMA48Terminal;
+import jexer.net.TelnetChannel;
 
 /**
  * This class uses an xterm/ANSI X3.64/ECMA-48 type terminal to provide a
@@ -87,8 +88,8 @@ public final class ECMA48Backend extends Backend {
      *
      * @param listener the object this backend needs to wake up when new
      * input comes in
-     * @param input the InputStream underlying 'reader'.  Its available()
-     * method is used to determine if reader.read() will block or not.
+     * @param input the InputStream underlying 'reader'.  This is used to
+     * find the SessionInfo of a telnet connection.
      * @param reader a Reader connected to the remote user.
      * @param writer a PrintWriter connected to the remote user.
      * @param setRawMode if true, set System.in into raw mode with stty.
@@ -120,8 +121,8 @@ public final class ECMA48Backend extends Backend {
      *
      * @param listener the object this backend needs to wake up when new
      * input comes in
-     * @param input the InputStream underlying 'reader'.  Its available()
-     * method is used to determine if reader.read() will block or not.
+     * @param input the InputStream underlying 'reader'.  This is used to
+     * find the SessionInfo of a telnet connection.
      * @param reader a Reader connected to the remote user.
      * @param writer a PrintWriter connected to the remote user.
      * @throws IllegalArgumentException if input, reader, or writer are null.
@@ -132,6 +133,59 @@ public final class ECMA48Backend extends Backend {
         this(listener, input, reader, writer, false);
     }
 
+    /**
+     * Public constructor for a connection of a TelnetChannelServer.  No
+     * thread reads the connection: the TelnetChannelListener passes what
+     * arrives in channelRead() to addInput().  The channel provides the
+     * window size and takes the output.
+     *
+     * @param listener the object this backend needs to wake up when new
+     * input comes in
+     * @param channel the connection to the remote user
+     * @throws UnsupportedEncodingException if an exception is thrown when
+     * creating the OutputStreamWriter
+     */
+    public ECMA48Backend(final Object listener,
+        final TelnetChannel channel) throws UnsupportedEncodingException {
+
+        terminal = new ECMA48Terminal(listener, channel,
+            channel.getOutputStream());
+
+        // Keep the terminal's sessionInfo so that TApplication can see it
+        sessionInfo = terminal.getSessionInfo();
+
+        // Create a screen
+        screen = new ECMA48Screen(terminal);
+
+        // Clear the screen
+        terminal.getOutput().write(terminal.clearAll());
+        terminal.flush();
+    }
+
+    /**
+     * Process input from the remote user.  This is for a backend built on a
+     * TelnetChannel; it does not block, so it can be called from
+     * TelnetChannelListener.channelRead().
+     *
+     * @param buffer UTF-8 bytes from the remote user
+     * @param offset the start offset in buffer
+     * @param length the number of bytes
+     */
+    public void addInput(final byte [] buffer, final int offset,
+        final int length) {
+
+        terminal.addInput(buffer, offset, length);
+    }
+
+    /**
+     * Report that the remote user's window size changed.  This is for a
+     * backend built on a TelnetChannel, and can be called from
+     * TelnetChannelListener.channelResized().
+     */
+    public void windowResized() {
+        terminal.windowResized();
+    }
+
     /**
      * Sync the logical screen to the physical device.
      */
@@ -152,6 +206,47 @@ public final class ECMA48Backend extends Backend {
         }
     }
 
+    /**
+     * Check for pending keyboard, mouse, and screen resize events.
+     *
+     * @return if true, getEvents() has something to return
+     */
+    @Override
+    public boolean hasEvents() {
+        return terminal.hasEvents();
+    }
+
+    /**
+     * Get the terminal's event queue.
+     *
+     * @return the queue input events are added to
+     */
+    @Override
+    public InputEventQueue getEventQueue() {
+        return terminal.getEventQueue();
+    }
+
+    /**
+     * Set the asynchronous output flag.  See
+     * ECMA48Terminal.setAsyncOutput().
+     *
+     * @param asyncOutput if true, frames are written by a writer thread
+     */
+    public void setAsyncOutput(final boolean asyncOutput) {
+        terminal.setAsyncOutput(asyncOutput);
+    }
+
+    /**
+     * Get the number of bytes already flushed that the remote side has not
+     * taken yet.
+     *
+     * @return the number of bytes
+     */
+    @Override
+    public int getPendingOutput() {
+        return terminal.getPendingOutput();
+    }
+
     /**
      * Close the I/O, restore the console, etc.
      */
@@ -0,0 +1,631 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import java.io.PrintWriter;
+
+import jexer.bits.CellBuffer;
+
+/**
+ * ECMA48Encoder collects the output for one screen update in a reusable
+ * buffer.  It tracks what the terminal's SGR attributes and cursor
+ * position are as the update is written, so that it can emit only the SGR
+ * parameters that actually change and pick the shortest cursor movement.
+ * Numbers are converted to ASCII by hand, so a repaint does not allocate
+ * anything once the buffer has grown to the size of a frame.
+ */
+final class ECMA48Encoder {
+
+    /**
+     * Initial buffer size, enough for a typical 80x25 full repaint.
+     */
+    private static final int INITIAL_SIZE = 8192;
+
+    /**
+     * The pending output.
+     */
+    private char [] buffer = new char[INITIAL_SIZE];
+
+    /**
+     * Number of chars in buffer.
+     */
+    private int length = 0;
+
+    /**
+     * Screen width, used to know when the cursor stops advancing.
+     */
+    private int width = 0;
+
+    /**
+     * If true, the terminal supports REP (repeat character) and ECH (erase
+     * character).
+     */
+    private boolean runLength = true;
+
+    /**
+     * The SGR attributes the terminal currently has, as the SGR_MASK part
+     * of a CellBuffer packed cell, or -1 if unknown.
+     */
+    private int sgr = -1;
+
+    /**
+     * The terminal's cursor column, or -1 if unknown.
+     */
+    private int cursorX = -1;
+
+    /**
+     * The terminal's cursor row, or -1 if unknown.
+     */
+    private int cursorY = -1;
+
+    /**
+     * Count the decimal digits in a non-negative number.
+     *
+     * @param value the number
+     * @return number of digits
+     */
+    private static int digits(final int value) {
+        int n = 1;
+        for (int i = value; i >= 10; i /= 10) {
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Compute the length of a CSI sequence with one count parameter, such
+     * as CUF or REP.  A count of 1 is the default and is omitted.
+     *
+     * @param n number of cells to move, greater than 0
+     * @return length of the sequence
+     */
+    private static int countedLength(final int n) {
+        return (n == 1 ? 3 : 3 + digits(n));
+    }
+
+    /**
+     * Count the UTF-8 bytes needed to send a character.
+     *
+     * @param ch the character
+     * @return 1, 2, or 3
+     */
+    private static int utf8Length(final char ch) {
+        if (ch < 0x80) {
+            return 1;
+        }
+        if (ch < 0x800) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Make room for n more chars.
+     *
+     * @param n number of chars about to be appended
+     */
+    private void ensureCapacity(final int n) {
+        if (length + n > buffer.length) {
+            char [] newBuffer = new char[Math.max(buffer.length * 2,
+                    length + n)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Discard the pending output and forget the terminal state.  Called at
+     * the beginning of every frame.
+     *
+     * @param width the screen width
+     */
+    public void reset(final int width) {
+        this.width = width;
+        length = 0;
+        sgr = -1;
+        cursorX = -1;
+        cursorY = -1;
+    }
+
+    /**
+     * Get the run-length capability flag.
+     *
+     * @return if true, REP and ECH may be emitted
+     */
+    public boolean isRunLength() {
+        return runLength;
+    }
+
+    /**
+     * Set the run-length capability flag.
+     *
+     * @param runLength if true, REP and ECH may be emitted
+     */
+    public void setRunLength(final boolean runLength) {
+        this.runLength = runLength;
+    }
+
+    /**
+     * Get the number of pending chars.
+     *
+     * @return number of chars that writeTo() will write
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Get the terminal's current SGR attributes.
+     *
+     * @return the SGR_MASK part of a packed cell, or -1 if unknown
+     */
+    public int getSgr() {
+        return sgr;
+    }
+
+    /**
+     * Get the terminal's cursor column.
+     *
+     * @return the column, or -1 if unknown
+     */
+    public int getCursorX() {
+        return cursorX;
+    }
+
+    /**
+     * Get the terminal's cursor row.
+     *
+     * @return the row, or -1 if unknown
+     */
+    public int getCursorY() {
+        return cursorY;
+    }
+
+    /**
+     * Write the pending output and then discard it.
+     *
+     * @param writer the PrintWriter to write to
+     */
+    public void writeTo(final PrintWriter writer) {
+        writer.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Hand the pending output to a writer thread, and empty the buffer.
+     *
+     * @param writer the writer thread
+     */
+    public void writeTo(final ECMA48Writer writer) {
+        writer.submit(buffer, length);
+        length = 0;
+    }
+
+    /**
+     * Make a String of the pending output.  This is for debugging only.
+     *
+     * @return the pending output
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Append one char of a control sequence.
+     *
+     * @param ch the char
+     */
+    private void append(final char ch) {
+        ensureCapacity(1);
+        buffer[length++] = ch;
+    }
+
+    /**
+     * Append a String that does not move the cursor, e.g. the value
+     * returned by ECMA48Terminal.cursor().
+     *
+     * @param str the String
+     */
+    public void append(final String str) {
+        int n = str.length();
+        ensureCapacity(n);
+        str.getChars(0, n, buffer, length);
+        length += n;
+    }
+
+    /**
+     * Append a non-negative decimal number.
+     *
+     * @param value the number
+     */
+    private void appendInt(final int value) {
+        assert (value >= 0);
+        int n = digits(value);
+        ensureCapacity(n);
+        int i = value;
+        for (int j = length + n - 1; j >= length; j--) {
+            buffer[j] = (char) ('0' + (i % 10));
+            i /= 10;
+        }
+        length += n;
+    }
+
+    /**
+     * Append a CSI sequence with one count parameter, such as a relative
+     * cursor movement.
+     *
+     * @param n the count, greater than 0
+     * @param finalChar 'A' (CUU), 'B' (CUD), 'C' (CUF), 'D' (CUB), 'b'
+     * (REP), 'X' (ECH), 'L' (IL), or 'M' (DL)
+     */
+    private void appendCounted(final int n, final char finalChar) {
+        append('\033');
+        append('[');
+        if (n != 1) {
+            appendInt(n);
+        }
+        append(finalChar);
+    }
+
+    /**
+     * Print a character at the cursor position, advancing the cursor.
+     *
+     * @param ch the character
+     */
+    public void print(final char ch) {
+        append(ch);
+        if (cursorX >= 0) {
+            cursorX++;
+            if (cursorX >= width) {
+                // The terminal is now in its "pending wrap" state, which is
+                // not consistent across terminals.
+                cursorX = -1;
+                cursorY = -1;
+            }
+        }
+    }
+
+    /**
+     * Print a character n times starting at the cursor position, advancing
+     * the cursor.  If REP is supported and shorter, the character is
+     * printed once and then repeated with REP.
+     *
+     * @param ch the character
+     * @param n number of times to print it, greater than 0
+     */
+    public void printRun(final char ch, final int n) {
+        assert (n > 0);
+        print(ch);
+        int repeat = n - 1;
+        if (repeat == 0) {
+            return;
+        }
+        if (runLength
+            && (countedLength(repeat) < repeat * utf8Length(ch))
+        ) {
+            appendCounted(repeat, 'b');
+            if (cursorX >= 0) {
+                cursorX += repeat;
+                if (cursorX >= width) {
+                    cursorX = -1;
+                    cursorY = -1;
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < repeat; i++) {
+            print(ch);
+        }
+    }
+
+    /**
+     * Erase n blank cells starting at the cursor position with ECH, if ECH
+     * is supported and shorter than printing the blanks.  ECH does not move
+     * the cursor, so this is only useful when the cursor is going to be
+     * moved afterwards anyway.
+     *
+     * @param n number of cells to erase, greater than 0
+     * @return true if the cells were erased, false if nothing was emitted
+     */
+    public boolean eraseRun(final int n) {
+        assert (n > 0);
+        if (!runLength) {
+            return false;
+        }
+        int printed = 1;
+        if (n > 1) {
+            printed += Math.min(n - 1, countedLength(n - 1));
+        }
+        if (countedLength(n) >= printed) {
+            return false;
+        }
+        // A back-color-erase terminal erases with the current background.
+        sgr(CellBuffer.BLANK);
+        appendCounted(n, 'X');
+        return true;
+    }
+
+    /**
+     * Select the SGR attributes of a cell.  Only the parameters that differ
+     * from the terminal's current state are emitted; attributes are reset
+     * with "0" only when one of bold/reverse/blink/underline has to be
+     * turned off.
+     *
+     * @param packed a CellBuffer packed cell
+     */
+    public void sgr(final int packed) {
+        int target = packed & CellBuffer.SGR_MASK;
+        if (target == sgr) {
+            return;
+        }
+
+        boolean reset = (sgr == -1)
+            || (CellBuffer.isBold(sgr) && !CellBuffer.isBold(target))
+            || (CellBuffer.isReverse(sgr) && !CellBuffer.isReverse(target))
+            || (CellBuffer.isBlink(sgr) && !CellBuffer.isBlink(target))
+            || (CellBuffer.isUnderline(sgr)
+                && !CellBuffer.isUnderline(target));
+
+        append('\033');
+        append('[');
+        if (reset) {
+            // Same parameter order as ECMA48Terminal.color(): bold,
+            // reverse, blink, underline, then both colors.
+            append('0');
+            append(';');
+            if (CellBuffer.isBold(target)) {
+                append('1');
+                append(';');
+            }
+            if (CellBuffer.isReverse(target)) {
+                append('7');
+                append(';');
+            }
+            if (CellBuffer.isBlink(target)) {
+                append('5');
+                append(';');
+            }
+            if (CellBuffer.isUnderline(target)) {
+                append('4');
+                append(';');
+            }
+            append('3');
+            append((char) ('0'
+                    + CellBuffer.getForeColor(target).getValue()));
+            append(';');
+            append('4');
+            append((char) ('0'
+                    + CellBuffer.getBackColor(target).getValue()));
+        } else {
+            boolean first = true;
+            if (CellBuffer.isBold(target) && !CellBuffer.isBold(sgr)) {
+                append('1');
+                first = false;
+            }
+            if (CellBuffer.isReverse(target) && !CellBuffer.isReverse(sgr)) {
+                if (!first) {
+                    append(';');
+                }
+                append('7');
+                first = false;
+            }
+            if (CellBuffer.isBlink(target) && !CellBuffer.isBlink(sgr)) {
+                if (!first) {
+                    append(';');
+                }
+                append('5');
+                first = false;
+            }
+            if (CellBuffer.isUnderline(target)
+                && !CellBuffer.isUnderline(sgr)
+            ) {
+                if (!first) {
+                    append(';');
+                }
+                append('4');
+                first = false;
+            }
+            if (CellBuffer.getForeColor(target)
+                != CellBuffer.getForeColor(sgr)
+            ) {
+                if (!first) {
+                    append(';');
+                }
+                append('3');
+                append((char) ('0'
+                        + CellBuffer.getForeColor(target).getValue()));
+                first = false;
+            }
+            if (CellBuffer.getBackColor(target)
+                != CellBuffer.getBackColor(sgr)
+            ) {
+                if (!first) {
+                    append(';');
+                }
+                append('4');
+                append((char) ('0'
+                        + CellBuffer.getBackColor(target).getValue()));
+            }
+        }
+        append('m');
+        sgr = target;
+    }
+
+    /**
+     * Append a sequence to clear the entire screen.  This leaves the
+     * terminal at white-on-black so that a back-color-erase terminal
+     * clears to black.
+     */
+    public void clearAll() {
+        sgr(CellBuffer.BLANK);
+        append('\033');
+        append('[');
+        append('2');
+        append('J');
+    }
+
+    /**
+     * Append a sequence to clear the line from the cursor (inclusive) to
+     * the end of the screen.  This leaves the terminal at white-on-black so
+     * that a back-color-erase terminal clears to black.
+     */
+    public void clearRemainingLine() {
+        sgr(CellBuffer.BLANK);
+        append('\033');
+        append('[');
+        append('K');
+    }
+
+    /**
+     * Append the sequences to scroll rows top through bottom - 1 by shift
+     * rows: DECSTBM to set the scrolling margins, DL or IL at the top
+     * margin, and DECSTBM again to reset the margins.  Rows scrolled in are
+     * blank white-on-black, and the cursor ends up at (0, 0).
+     *
+     * @param top top row (inclusive)
+     * @param bottom bottom row (exclusive)
+     * @param shift number of rows to scroll up, or negative to scroll down
+     */
+    public void scrollRows(final int top, final int bottom, final int shift) {
+        sgr(CellBuffer.BLANK);
+
+        // DECSTBM homes the cursor
+        append('\033');
+        append('[');
+        appendInt(top + 1);
+        append(';');
+        appendInt(bottom);
+        append('r');
+        cursorX = 0;
+        cursorY = 0;
+
+        gotoXY(0, top);
+        if (shift > 0) {
+            appendCounted(shift, 'M');
+        } else {
+            appendCounted(-shift, 'L');
+        }
+
+        append('\033');
+        append('[');
+        append('r');
+        cursorX = 0;
+        cursorY = 0;
+    }
+
+    /**
+     * Move the cursor to (x, y) with the shortest of an absolute CUP, a
+     * relative CUU/CUD/CUF/CUB, or CR and LFs.
+     *
+     * @param x column coordinate.  0 is the left-most column.
+     * @param y row coordinate.  0 is the top-most row.
+     */
+    public void gotoXY(final int x, final int y) {
+        if ((x == cursorX) && (y == cursorY)) {
+            return;
+        }
+
+        // CUP, with default parameters omitted
+        int best = 3 + digits(y + 1) + (x == 0 ? 0 : 1 + digits(x + 1));
+        int method = 0;
+
+        if (cursorY >= 0) {
+            assert (cursorX >= 0);
+
+            // CUU/CUD and then CR/CUF/CUB
+            int vertical = 0;
+            if (y != cursorY) {
+                vertical = countedLength(Math.abs(y - cursorY));
+            }
+            int horizontal = 0;
+            if (x == 0) {
+                horizontal = (cursorX == 0 ? 0 : 1);
+            } else if (x != cursorX) {
+                horizontal = countedLength(Math.abs(x - cursorX));
+            }
+            if (vertical + horizontal < best) {
+                best = vertical + horizontal;
+                method = 1;
+            }
+
+            // CR, LFs, and then CUF
+            if (y > cursorY) {
+                int crlf = 1 + (y - cursorY) + (x == 0 ? 0 : countedLength(x));
+                if (crlf < best) {
+                    method = 2;
+                }
+            }
+        }
+
+        switch (method) {
+        case 0:
+            append('\033');
+            append('[');
+            appendInt(y + 1);
+            if (x != 0) {
+                append(';');
+                appendInt(x + 1);
+            }
+            append('H');
+            break;
+        case 1:
+            if (y < cursorY) {
+                appendCounted(cursorY - y, 'A');
+            } else if (y > cursorY) {
+                appendCounted(y - cursorY, 'B');
+            }
+            if (x == 0) {
+                if (cursorX != 0) {
+                    append('\r');
+                }
+            } else if (x > cursorX) {
+                appendCounted(x - cursorX, 'C');
+            } else if (x < cursorX) {
+                appendCounted(cursorX - x, 'D');
+            }
+            break;
+        case 2:
+            append('\r');
+            for (int i = cursorY; i < y; i++) {
+                append('\n');
+            }
+            if (x != 0) {
+                appendCounted(x, 'C');
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Invalid method: " + method);
+        }
+
+        cursorX = x;
+        cursorY = y;
+    }
+
+}
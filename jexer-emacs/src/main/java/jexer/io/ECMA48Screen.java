@@ -28,8 +28,7 @@
  */
 package jexer.io;
 
-import jexer.bits.Cell;
-import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 
 /**
  * This Screen implementation draws to an xterm/ANSI X3.64/ECMA-48 type
@@ -47,6 +46,22 @@ public final class ECMA48Screen extends Screen {
      */
     private ECMA48Terminal terminal;
 
+    /**
+     * The output buffer, reused by every flushPhysical() call.
+     */
+    private ECMA48Encoder encoder = new ECMA48Encoder();
+
+    /**
+     * Roughly the number of bytes scrollRows() spends on the scroll itself.
+     */
+    private static final int SCROLL_COST = 16;
+
+    /**
+     * If true, blocks of rows that scrolled are scrolled on the terminal
+     * instead of being sent again.
+     */
+    private boolean scrollRegions = true;
+
     /**
      * Public constructor.
      *
@@ -57,27 +72,135 @@ public final class ECMA48Screen extends Screen {
 
         this.terminal = terminal;
 
+        // REP and ECH are used unless the terminal is known not to support
+        // them.
+        String runLength = System.getProperty("jexer.ECMA48.runLength",
+            "true").toLowerCase();
+        encoder.setRunLength(!runLength.equals("false"));
+
+        // Scrolling is used unless the terminal is known not to support
+        // DECSTBM with IL and DL.
+        String scroll = System.getProperty("jexer.ECMA48.scrollRegions",
+            "true").toLowerCase();
+        scrollRegions = !scroll.equals("false");
+
         // Query the screen size
         setDimensions(terminal.getSessionInfo().getWindowWidth(),
             terminal.getSessionInfo().getWindowHeight());
     }
 
+    /**
+     * Get the run-length output capability.
+     *
+     * @return if true, runs of identical cells are sent with REP (repeat
+     * character) and ECH (erase character)
+     */
+    public boolean isRunLength() {
+        return encoder.isRunLength();
+    }
+
+    /**
+     * Set the run-length output capability.  This defaults to the value of
+     * the jexer.ECMA48.runLength property, or true if it is not set.
+     *
+     * @param runLength if true, runs of identical cells are sent with REP
+     * (repeat character) and ECH (erase character).  Set to false for
+     * terminals that do not support them.
+     */
+    public void setRunLength(final boolean runLength) {
+        encoder.setRunLength(runLength);
+    }
+
+    /**
+     * Get the scroll region capability.
+     *
+     * @return if true, blocks of rows that scrolled are scrolled on the
+     * terminal with DECSTBM and IL/DL
+     */
+    public boolean isScrollRegions() {
+        return scrollRegions;
+    }
+
+    /**
+     * Set the scroll region capability.  This defaults to the value of the
+     * jexer.ECMA48.scrollRegions property, or true if it is not set.
+     *
+     * @param scrollRegions if true, blocks of rows that scrolled are
+     * scrolled on the terminal with DECSTBM (set scrolling region) and
+     * IL/DL (insert/delete line).  Set to false for terminals that do not
+     * support them.
+     */
+    public void setScrollRegions(final boolean scrollRegions) {
+        this.scrollRegions = scrollRegions;
+    }
+
+    /**
+     * If a block of rows scrolled, and scrolling it on the terminal costs
+     * less than sending it again, scroll it there and in physical.  The
+     * terminal scrolls whole rows, so everything on those rows is compared,
+     * and the rows are marked damaged so that flushLine() fixes whatever is
+     * still different.
+     */
+    private void scrollRows() {
+        ScrollRegion scroll = findScroll();
+        if (scroll == null) {
+            return;
+        }
+        int top = scroll.getTop();
+        int bottom = scroll.getBottom();
+        int shift = scroll.getShift();
+
+        // Count the cells that differ now, and the cells that would still
+        // differ after the scroll.
+        int before = 0;
+        int after = 0;
+        for (int y = top; y < bottom; y++) {
+            int srcY = y + shift;
+            boolean moved = (srcY >= top) && (srcY < bottom);
+            for (int x = 0; x < width; x++) {
+                int lPacked = logical.get(x, y);
+                if (lPacked != physical.get(x, y)) {
+                    before++;
+                }
+                int pPacked = (moved ? physical.get(x, srcY) : CellBuffer.BLANK);
+                if (lPacked != pPacked) {
+                    after++;
+                }
+            }
+        }
+        if (after + SCROLL_COST >= before) {
+            return;
+        }
+
+        if (debugToStderr) {
+            System.err.printf("scrollRows(): %s\n", scroll);
+        }
+
+        encoder.scrollRows(top, bottom, shift);
+        scrollPhysical(new ScrollRegion(0, width, top, bottom, shift));
+        if (shift > 0) {
+            for (int y = bottom - shift; y < bottom; y++) {
+                physical.fill(y, 0, width, CellBuffer.BLANK);
+            }
+        } else {
+            for (int y = top; y < top - shift; y++) {
+                physical.fill(y, 0, width, CellBuffer.BLANK);
+            }
+        }
+        damageRows(top, bottom);
+    }
+
     /**
      * Perform a somewhat-optimal rendering of a line.
      *
      * @param y row coordinate.  0 is the top-most row.
-     * @param sb StringBuilder to write escape sequences to
-     * @param lastAttr cell attributes from the last call to flushLine
      */
-    private void flushLine(final int y, final StringBuilder sb,
-        CellAttributes lastAttr) {
-
-        int lastX = -1;
+    private void flushLine(final int y) {
         int textEnd = 0;
-        for (int x = 0; x < width; x++) {
-            Cell lCell = logical[x][y];
-            if (!lCell.isBlank()) {
+        for (int x = width - 1; x >= 0; x--) {
+            if (!CellBuffer.isBlank(logical.get(x, y))) {
                 textEnd = x;
+                break;
             }
         }
         // Push textEnd to first column beyond the text area
@@ -86,182 +209,164 @@ public final class ECMA48Screen extends Screen {
         // DEBUG
         // reallyCleared = true;
 
-        for (int x = 0; x < width; x++) {
-            Cell lCell = logical[x][y];
-            Cell pCell = physical[x][y];
+        // Only the damaged span can differ from the physical screen.
+        int damageLeft = getDamageLeft(y);
+        int damageRight = getDamageRight(y);
+
+        for (int x = damageLeft; x < damageRight; x++) {
+            int lPacked = logical.get(x, y);
 
-            if (!lCell.equals(pCell) || reallyCleared) {
+            if ((lPacked != physical.get(x, y)) || reallyCleared) {
 
                 if (debugToStderr) {
                     System.err.printf("\n--\n");
                     System.err.printf(" Y: %d X: %d\n", y, x);
-                    System.err.printf("   lCell: %s\n", lCell);
-                    System.err.printf("   pCell: %s\n", pCell);
+                    System.err.printf("   lCell: %08x\n", lPacked);
+                    System.err.printf("   pCell: %08x\n", physical.get(x, y));
                     System.err.printf("    ====    \n");
                 }
 
-                if (lastAttr == null) {
-                    lastAttr = new CellAttributes();
-                    sb.append(terminal.normal());
-                }
-
                 // Place the cell
-                if ((lastX != (x - 1)) || (lastX == -1)) {
-                    // Advancing at least one cell, or the first gotoXY
-                    sb.append(terminal.gotoXY(x, y));
+                if (!reprintGap(x, y)) {
+                    encoder.gotoXY(x, y);
                 }
 
-                assert (lastAttr != null);
-
                 if ((x == textEnd) && (textEnd < width - 1)) {
-                    assert (lCell.isBlank());
+                    assert (CellBuffer.isBlank(lPacked));
 
                     for (int i = x; i < width; i++) {
-                        assert (logical[i][y].isBlank());
-                        // Physical is always updatesd
-                        physical[i][y].reset();
+                        assert (CellBuffer.isBlank(logical.get(i, y)));
                     }
+                    // Physical is always updated
+                    physical.fill(y, x, width, CellBuffer.BLANK);
 
                     // Clear remaining line
-                    sb.append(terminal.clearRemainingLine());
-                    lastAttr.reset();
+                    encoder.clearRemainingLine();
                     return;
                 }
 
-                // Now emit only the modified attributes
-                if ((lCell.getForeColor() != lastAttr.getForeColor())
-                    && (lCell.getBackColor() != lastAttr.getBackColor())
-                    && (lCell.isBold() == lastAttr.isBold())
-                    && (lCell.isReverse() == lastAttr.isReverse())
-                    && (lCell.isUnderline() == lastAttr.isUnderline())
-                    && (lCell.isBlink() == lastAttr.isBlink())
-                ) {
-                    // Both colors changed, attributes the same
-                    sb.append(terminal.color(lCell.getForeColor(),
-                            lCell.getBackColor()));
-
-                    if (debugToStderr) {
-                        System.err.printf("1 Change only fore/back colors\n");
-                    }
-                } else if ((lCell.getForeColor() != lastAttr.getForeColor())
-                    && (lCell.getBackColor() != lastAttr.getBackColor())
-                    && (lCell.isBold() != lastAttr.isBold())
-                    && (lCell.isReverse() != lastAttr.isReverse())
-                    && (lCell.isUnderline() != lastAttr.isUnderline())
-                    && (lCell.isBlink() != lastAttr.isBlink())
-                ) {
-                    // Everything is different
-                    sb.append(terminal.color(lCell.getForeColor(),
-                            lCell.getBackColor(),
-                            lCell.isBold(), lCell.isReverse(),
-                            lCell.isBlink(),
-                            lCell.isUnderline()));
-
-                    if (debugToStderr) {
-                        System.err.printf("2 Set all attributes\n");
-                    }
-                } else if ((lCell.getForeColor() != lastAttr.getForeColor())
-                    && (lCell.getBackColor() == lastAttr.getBackColor())
-                    && (lCell.isBold() == lastAttr.isBold())
-                    && (lCell.isReverse() == lastAttr.isReverse())
-                    && (lCell.isUnderline() == lastAttr.isUnderline())
-                    && (lCell.isBlink() == lastAttr.isBlink())
-                ) {
-
-                    // Attributes same, foreColor different
-                    sb.append(terminal.color(lCell.getForeColor(), true));
-
-                    if (debugToStderr) {
-                        System.err.printf("3 Change foreColor\n");
-                    }
-                } else if ((lCell.getForeColor() == lastAttr.getForeColor())
-                    && (lCell.getBackColor() != lastAttr.getBackColor())
-                    && (lCell.isBold() == lastAttr.isBold())
-                    && (lCell.isReverse() == lastAttr.isReverse())
-                    && (lCell.isUnderline() == lastAttr.isUnderline())
-                    && (lCell.isBlink() == lastAttr.isBlink())
-                ) {
-                    // Attributes same, backColor different
-                    sb.append(terminal.color(lCell.getBackColor(), false));
-
-                    if (debugToStderr) {
-                        System.err.printf("4 Change backColor\n");
-                    }
-                } else if ((lCell.getForeColor() == lastAttr.getForeColor())
-                    && (lCell.getBackColor() == lastAttr.getBackColor())
-                    && (lCell.isBold() == lastAttr.isBold())
-                    && (lCell.isReverse() == lastAttr.isReverse())
-                    && (lCell.isUnderline() == lastAttr.isUnderline())
-                    && (lCell.isBlink() == lastAttr.isBlink())
-                ) {
-
-                    // All attributes the same, just print the char
-                    // NOP
-
-                    if (debugToStderr) {
-                        System.err.printf("5 Only emit character\n");
-                    }
-                } else {
-                    // Just reset everything again
-                    sb.append(terminal.color(lCell.getForeColor(),
-                            lCell.getBackColor(),
-                            lCell.isBold(),
-                            lCell.isReverse(),
-                            lCell.isBlink(),
-                            lCell.isUnderline()));
-
-                    if (debugToStderr) {
-                        System.err.printf("6 Change all attributes\n");
+                if (encoder.isRunLength()) {
+                    int n = runLength(x, y);
+
+                    if (CellBuffer.isBlank(lPacked)
+                        && (x + n < width)
+                        && (logical.get(x + n, y) == physical.get(x + n, y))
+                        && !reallyCleared
+                        && encoder.eraseRun(n)
+                    ) {
+                        // The cursor has to move past the blanks anyway,
+                        // so erase them.
+                        physical.fill(y, x, x + n, lPacked);
+                        x += n - 1;
+                        continue;
                     }
+
+                    encoder.sgr(lPacked);
+                    encoder.printRun(CellBuffer.getChar(lPacked), n);
+                    physical.fill(y, x, x + n, lPacked);
+                    x += n - 1;
+                    continue;
                 }
-                // Emit the character
-                sb.append(lCell.getChar());
 
-                // Save the last rendered cell
-                lastX = x;
-                lastAttr.setTo(lCell);
+                // Emit only the modified attributes, then the character
+                encoder.sgr(lPacked);
+                encoder.print(CellBuffer.getChar(lPacked));
 
                 // Physical is always updated
-                physical[x][y].setTo(lCell);
+                physical.set(x, y, lPacked);
+
+            } // if ((lPacked != physical.get(x, y)) || reallyCleared)
 
-            } // if (!lCell.equals(pCell) || (reallyCleared == true))
+        } // for (int x = damageLeft; x < damageRight; x++)
+    }
 
-        } // for (int x = 0; x < width; x++)
+    /**
+     * Find the run of identical cells that starts at (x, y) and needs to be
+     * written.  Unchanged cells inside the run are included because
+     * rewriting them is cheaper than moving the cursor over them, but
+     * unchanged cells at the end of the run are not.
+     *
+     * @param x column coordinate of the first cell
+     * @param y row coordinate
+     * @return number of cells in the run, at least 1
+     */
+    private int runLength(final int x, final int y) {
+        int packed = logical.get(x, y);
+        int end = x + 1;
+        int needed = x + 1;
+        while ((end < width) && (logical.get(end, y) == packed)) {
+            end++;
+            if (reallyCleared || (physical.get(end - 1, y) != packed)) {
+                needed = end;
+            }
+        }
+        return needed - x;
     }
 
     /**
-     * Render the screen to a string that can be emitted to something that
-     * knows how to process ECMA-48/ANSI X3.64 escape sequences.
+     * If the terminal cursor is just a few cells to the left of (x, y) on
+     * the same row, and those cells can be printed again without changing
+     * SGR attributes, print them instead of moving the cursor.  A CUF is at
+     * least three bytes, so this is shorter for one or two ASCII cells.
      *
-     * @return escape sequences string that provides the updates to the
-     * physical screen
+     * @param x column coordinate to move to
+     * @param y row coordinate to move to
+     * @return true if the cursor is now at (x, y)
      */
-    private String flushString() {
+    private boolean reprintGap(final int x, final int y) {
+        int cursorX = encoder.getCursorX();
+        if ((encoder.getCursorY() != y)
+            || (cursorX < 0)
+            || (x - cursorX < 1)
+            || (x - cursorX > 2)
+        ) {
+            return false;
+        }
+        for (int i = cursorX; i < x; i++) {
+            int packed = logical.get(i, y);
+            if (((packed & CellBuffer.SGR_MASK) != encoder.getSgr())
+                || (CellBuffer.getChar(packed) >= 0x80)
+                || (packed != physical.get(i, y))
+            ) {
+                return false;
+            }
+        }
+        for (int i = cursorX; i < x; i++) {
+            encoder.print(CellBuffer.getChar(logical.get(i, y)));
+        }
+        return true;
+    }
+
+    /**
+     * Render the screen to the encoder as ECMA-48/ANSI X3.64 escape
+     * sequences.
+     */
+    private void flushString() {
         if (!dirty) {
             assert (!reallyCleared);
-            return "";
+            return;
         }
 
-        CellAttributes attr = null;
-
-        StringBuilder sb = new StringBuilder();
         if (reallyCleared) {
-            attr = new CellAttributes();
-            sb.append(terminal.clearAll());
+            encoder.clearAll();
+            damageAll();
+        } else if (scrollRegions) {
+            scrollRows();
         }
 
-        for (int y = 0; y < height; y++) {
-            flushLine(y, sb, attr);
+        for (int y = nextDamagedRow(0); y >= 0; y = nextDamagedRow(y + 1)) {
+            if (reallyCleared || isRowChanged(y)) {
+                flushLine(y);
+            }
         }
 
+        clearDamage();
         dirty = false;
         reallyCleared = false;
 
-        String result = sb.toString();
         if (debugToStderr) {
-            System.err.printf("flushString(): %s\n", result);
+            System.err.printf("flushString(): %s\n", encoder);
         }
-        return result;
     }
 
     /**
@@ -269,17 +374,17 @@ public final class ECMA48Screen extends Screen {
      */
     @Override
     public void flushPhysical() {
-        String result = flushString();
+        encoder.reset(width);
+        flushString();
         if ((cursorVisible)
             && (cursorY <= height - 1)
             && (cursorX <= width - 1)
         ) {
-            result += terminal.cursor(true);
-            result += terminal.gotoXY(cursorX, cursorY);
+            encoder.append(terminal.cursor(true));
+            encoder.gotoXY(cursorX, cursorY);
         } else {
-            result += terminal.cursor(false);
+            encoder.append(terminal.cursor(false));
         }
-        terminal.getOutput().write(result);
-        terminal.flush();
+        terminal.writeFrame(encoder);
     }
 }
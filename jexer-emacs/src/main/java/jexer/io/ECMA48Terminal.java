@@ -61,16 +61,27 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 
+import jexer.backend.InputEventQueue;
+import jexer.backend.OutputBacklog;
+import jexer.backend.ThreadFactories;
 import jexer.bits.Color;
 import jexer.event.TInputEvent;
 import jexer.event.TKeypressEvent;
@@ -101,20 +112,122 @@ public final class ECMA48Terminal implements Runnable {
     }
 
     /**
-     * The event queue, filled up by a thread reading on input.
+     * The event queue, filled up by a thread reading on input.  It exists
+     * before that thread starts and is never replaced, so no event can go
+     * to a queue that nobody drains.
      */
-    private List<TInputEvent> eventQueue;
+    private final InputEventQueue eventQueue = new InputEventQueue();
 
     /**
-     * If true, we want the reader thread to exit gracefully.
+     * If true, the application consumes eventQueue directly and waits on
+     * it rather than on the listener.
      */
-    private boolean stopReaderThread;
+    private volatile boolean sharedEventQueue = false;
 
     /**
-     * The reader thread.
+     * Get the event queue, so that the application can consume input
+     * events straight from it.  The queue wakes up its consumer by itself,
+     * so after this the listener is no longer notified.
+     *
+     * @return the queue input events are added to
+     */
+    public InputEventQueue getEventQueue() {
+        sharedEventQueue = true;
+        return eventQueue;
+    }
+
+    /**
+     * The reader thread.  It blocks in read(); shutdown() interrupts it and
+     * closes the input to make it exit.
      */
     private Thread readerThread;
 
+    /**
+     * How long to wait after a bare ESC before reporting it as the Escape
+     * key, in millis.
+     */
+    private static final long ESCDELAY = 100;
+
+    /**
+     * How long shutdown() waits for the reader thread to exit after closing
+     * a remote user's InputStream, and for queued frames to be written, in
+     * millis.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 1000;
+
+    /**
+     * How often to check the window size, in millis.  We try not to spawn
+     * stty more than once per second.
+     */
+    private static final long WINDOW_SIZE_PERIOD = 1000;
+
+    /**
+     * The timer shared by all ECMA48Terminals for the work that has to
+     * happen when no input arrives: the ESCDELAY timeout and the window
+     * size check.  One daemon thread serves every session, so an idle
+     * session does not wake up its reader thread at all.
+     */
+    private static Timer idleTimer = null;
+
+    /**
+     * The periodic window size check for this terminal.
+     */
+    private IdleTask windowSizeTask;
+
+    /**
+     * A task for the shared idle timer.  An exception thrown out of a
+     * TimerTask cancels its Timer for good, taking every other session's
+     * tasks with it, so one is printed and dropped here instead.
+     */
+    private abstract static class IdleTask extends TimerTask {
+
+        /**
+         * Run the task, catching anything it throws.
+         */
+        @Override
+        public final void run() {
+            try {
+                runTask();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * The work to do on the idle timer thread.
+         */
+        protected abstract void runTask();
+    }
+
+    /**
+     * Schedule a task on the shared idle timer, creating the timer if
+     * necessary, or again if its thread has died.
+     *
+     * @param task the task
+     * @param delay millis before the first run
+     * @param period millis between runs, or 0 to run once
+     */
+    private static synchronized void scheduleIdle(final IdleTask task,
+        final long delay, final long period) {
+
+        for (int i = 0; i < 2; i++) {
+            if (idleTimer == null) {
+                idleTimer = new Timer("ECMA48Terminal idle", true);
+            }
+            try {
+                if (period > 0) {
+                    idleTimer.schedule(task, delay, period);
+                } else {
+                    idleTimer.schedule(task, delay);
+                }
+                return;
+            } catch (IllegalStateException e) {
+                // The timer was cancelled, start a new one.
+                idleTimer = null;
+            }
+        }
+    }
+
     /**
      * Parameters being collected.  E.g. if the string is \033[1;3m, then
      * params[0] will be 1 and params[1] will be 3.
@@ -145,12 +258,6 @@ public final class ECMA48Terminal implements Runnable {
      */
     private long escapeTime;
 
-    /**
-     * The time we last checked the window size.  We try not to spawn stty
-     * more than once per second.
-     */
-    private long windowSizeTime;
-
     /**
      * true if mouse1 was down.  Used to report mouse1 on the release event.
      */
@@ -188,13 +295,11 @@ public final class ECMA48Terminal implements Runnable {
      * constructor, then this InputStreamReader will be bound to System.in
      * with UTF-8 encoding.
      */
-    private Reader input;
+    private volatile Reader input;
 
     /**
      * The terminal's raw InputStream.  If an InputStream is not specified in
      * the constructor, then this InputReader will be bound to System.in.
-     * This is used by run() to see if bytes are available() before calling
-     * (Reader)input.read().
      */
     private InputStream inputStream;
 
@@ -205,13 +310,32 @@ public final class ECMA48Terminal implements Runnable {
      */
     private PrintWriter output;
 
+    /**
+     * The OutputStream passed to the constructor, or null if output is
+     * System.out or was passed in as a Writer.
+     */
+    private OutputStream outputStream;
+
+    /**
+     * The OutputStream passed to the constructor, if it reports its
+     * backlog.
+     */
+    private OutputBacklog outputBacklog;
+
+    /**
+     * The writer thread used for asynchronous output, or null if frames are
+     * written on the caller's thread.
+     */
+    private volatile ECMA48Writer writer;
+
     /**
      * The listening object that run() wakes up on new input.
      */
     private Object listener;
 
     /**
-     * Get the output writer.
+     * Get the output writer.  With asynchronous output, anything written
+     * here directly can overtake frames that are still queued.
      *
      * @return the Writer
      */
@@ -225,9 +349,7 @@ public final class ECMA48Terminal implements Runnable {
      * @return if true, getEvents() has something to return to the backend
      */
     public boolean hasEvents() {
-        synchronized (eventQueue) {
-            return (eventQueue.size() > 0);
-        }
+        return !eventQueue.isEmpty();
     }
 
     /**
@@ -318,7 +440,6 @@ public final class ECMA48Terminal implements Runnable {
         mouse1           = false;
         mouse2           = false;
         mouse3           = false;
-        stopReaderThread = false;
         this.listener    = listener;
 
         if (input == null) {
@@ -351,6 +472,10 @@ public final class ECMA48Terminal implements Runnable {
         } else {
             this.output = new PrintWriter(new OutputStreamWriter(output,
                     "UTF-8"));
+            outputStream = output;
+            if (output instanceof OutputBacklog) {
+                outputBacklog = (OutputBacklog) output;
+            }
         }
 
         // Enable mouse reporting and metaSendsEscape
@@ -362,9 +487,8 @@ public final class ECMA48Terminal implements Runnable {
             sessionInfo.getWindowWidth(), sessionInfo.getWindowHeight());
 
         // Spin up the input reader
-        eventQueue = new LinkedList<TInputEvent>();
-        readerThread = new Thread(this);
-        readerThread.start();
+        startThreads();
+        setAsyncOutput(Boolean.getBoolean("jexer.ECMA48.asyncOutput"));
     }
 
     /**
@@ -372,8 +496,8 @@ public final class ECMA48Terminal implements Runnable {
      *
      * @param listener the object this backend needs to wake up when new
      * input comes in
-     * @param input the InputStream underlying 'reader'.  Its available()
-     * method is used to determine if reader.read() will block or not.
+     * @param input the InputStream underlying 'reader'.  This is used to
+     * find the SessionInfo of a telnet connection.
      * @param reader a Reader connected to the remote user.
      * @param writer a PrintWriter connected to the remote user.
      * @param setRawMode if true, set System.in into raw mode with stty.
@@ -398,7 +522,6 @@ public final class ECMA48Terminal implements Runnable {
         mouse1           = false;
         mouse2           = false;
         mouse3           = false;
-        stopReaderThread = false;
         this.listener    = listener;
 
         inputStream = input;
@@ -434,9 +557,8 @@ public final class ECMA48Terminal implements Runnable {
             sessionInfo.getWindowWidth(), sessionInfo.getWindowHeight());
 
         // Spin up the input reader
-        eventQueue = new LinkedList<TInputEvent>();
-        readerThread = new Thread(this);
-        readerThread.start();
+        startThreads();
+        setAsyncOutput(Boolean.getBoolean("jexer.ECMA48.asyncOutput"));
     }
 
     /**
@@ -444,8 +566,8 @@ public final class ECMA48Terminal implements Runnable {
      *
      * @param listener the object this backend needs to wake up when new
      * input comes in
-     * @param input the InputStream underlying 'reader'.  Its available()
-     * method is used to determine if reader.read() will block or not.
+     * @param input the InputStream underlying 'reader'.  This is used to
+     * find the SessionInfo of a telnet connection.
      * @param reader a Reader connected to the remote user.
      * @param writer a PrintWriter connected to the remote user.
      * @throws IllegalArgumentException if input, reader, or writer are null.
@@ -456,6 +578,177 @@ public final class ECMA48Terminal implements Runnable {
         this(listener, input, reader, writer, false);
     }
 
+    /**
+     * Constructor for a terminal that has no reader thread: its input is
+     * pushed in with addInput(), for example from a TelnetChannelListener
+     * on a TelnetChannelServer's selector thread.
+     *
+     * @param listener the object this backend needs to wake up when new
+     * input comes in
+     * @param sessionInfo the window size and environment of the remote
+     * user, for example the TelnetChannel
+     * @param output an OutputStream connected to the remote user, for
+     * example TelnetChannel.getOutputStream().  output is always converted
+     * to a Writer with UTF-8 encoding.
+     * @throws UnsupportedEncodingException if an exception is thrown when
+     * creating the OutputStreamWriter
+     * @throws IllegalArgumentException if sessionInfo or output are null.
+     */
+    public ECMA48Terminal(final Object listener,
+        final SessionInfo sessionInfo,
+        final OutputStream output) throws UnsupportedEncodingException {
+
+        if (sessionInfo == null) {
+            throw new IllegalArgumentException("SessionInfo must be specified");
+        }
+        if (output == null) {
+            throw new IllegalArgumentException("OutputStream must be specified");
+        }
+        reset();
+        mouse1           = false;
+        mouse2           = false;
+        mouse3           = false;
+        this.listener    = listener;
+        this.sessionInfo = sessionInfo;
+
+        inputDecoder = Charset.forName("UTF-8").newDecoder();
+        inputDecoder.onMalformedInput(CodingErrorAction.REPLACE);
+        inputDecoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        this.output = new PrintWriter(new OutputStreamWriter(output,
+                "UTF-8"));
+        outputStream = output;
+        if (output instanceof OutputBacklog) {
+            outputBacklog = (OutputBacklog) output;
+        }
+
+        // Enable mouse reporting and metaSendsEscape
+        this.output.printf("%s%s", mouse(true), xtermMetaSendsEscape(true));
+        this.output.flush();
+
+        // Hang onto the window size
+        windowResize = new TResizeEvent(TResizeEvent.Type.SCREEN,
+            sessionInfo.getWindowWidth(), sessionInfo.getWindowHeight());
+
+        // There is no reader thread and no window size check to start:
+        // input comes in through addInput() and size changes through
+        // windowResized().
+        setAsyncOutput(Boolean.getBoolean("jexer.ECMA48.asyncOutput"));
+    }
+
+    /**
+     * Decodes the UTF-8 passed to addInput(), or null if this terminal
+     * reads its own input.
+     */
+    private CharsetDecoder inputDecoder = null;
+
+    /**
+     * Bytes passed to addInput() that end in the middle of a UTF-8
+     * sequence.  Only used by the thread calling addInput().
+     */
+    private ByteBuffer inputBytes = ByteBuffer.allocate(16);
+
+    /**
+     * Characters decoded by addInput().  Only used by the thread calling
+     * addInput().
+     */
+    private CharBuffer inputChars = CharBuffer.allocate(1024);
+
+    /**
+     * Input events found by addInput().  Only used by the thread calling
+     * addInput().
+     */
+    private List<TInputEvent> inputEvents = new LinkedList<TInputEvent>();
+
+    /**
+     * Process input from the remote user, for a terminal constructed
+     * without a Reader.  This does not block, so it can be called from a
+     * selector thread.  Calls must come from one thread at a time.
+     *
+     * @param buffer UTF-8 bytes from the remote user.  A sequence can be
+     * split across calls.
+     * @param offset the start offset in buffer
+     * @param length the number of bytes
+     * @throws IllegalStateException if this terminal reads its own input
+     */
+    public void addInput(final byte [] buffer, final int offset,
+        final int length) {
+
+        if (inputDecoder == null) {
+            throw new IllegalStateException("This terminal reads its own "
+                + "input");
+        }
+        ByteBuffer in;
+        if (inputBytes.position() == 0) {
+            in = ByteBuffer.wrap(buffer, offset, length);
+        } else {
+            // Finish the sequence left over from the last call
+            if (inputBytes.remaining() < length) {
+                ByteBuffer bigger = ByteBuffer.allocate(inputBytes.position()
+                    + length);
+                inputBytes.flip();
+                bigger.put(inputBytes);
+                inputBytes = bigger;
+            }
+            inputBytes.put(buffer, offset, length);
+            inputBytes.flip();
+            in = inputBytes;
+        }
+        for (;;) {
+            inputChars.clear();
+            boolean more = inputDecoder.decode(in, inputChars,
+                false).isOverflow();
+            inputChars.flip();
+            consume(inputEvents, inputChars.array(), inputChars.limit());
+            if (!more) {
+                break;
+            }
+        }
+        // Keep an incomplete sequence for the next call
+        if (in == inputBytes) {
+            inputBytes.compact();
+        } else {
+            inputBytes.clear();
+            inputBytes.put(in);
+        }
+    }
+
+    /**
+     * Report that the remote user's window size changed, for a terminal
+     * constructed without a Reader.  This queues a resize event right away
+     * if the size in sessionInfo is new; such a terminal does not poll for
+     * it.  This does not block, so it can be called from
+     * TelnetChannelListener.channelResized().
+     */
+    public void windowResized() {
+        List<TInputEvent> events = new LinkedList<TInputEvent>();
+        checkWindowSize(events);
+        queueEvents(events);
+    }
+
+    /**
+     * Start the reader thread and schedule the window size check.  The
+     * reader thread comes from ThreadFactories.getDefault(), so it can be a
+     * virtual thread.
+     */
+    private void startThreads() {
+        readerThread = ThreadFactories.getDefault().newThread(this);
+        // A read() on System.in cannot be interrupted, and not every stream
+        // wakes up a blocked read() when it is closed, so do not let a
+        // reader that shutdown() abandons keep the JVM alive.
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        windowSizeTask = new IdleTask() {
+            protected void runTask() {
+                List<TInputEvent> events = new LinkedList<TInputEvent>();
+                checkWindowSize(events);
+                queueEvents(events);
+            }
+        };
+        scheduleIdle(windowSizeTask, WINDOW_SIZE_PERIOD, WINDOW_SIZE_PERIOD);
+    }
+
     /**
      * Restore terminal to normal state.
      */
@@ -463,37 +756,69 @@ public final class ECMA48Terminal implements Runnable {
 
         // System.err.println("=== shutdown() ==="); System.err.flush();
 
-        // Tell the reader thread to stop looking at input
-        stopReaderThread = true;
+        if (windowSizeTask != null) {
+            windowSizeTask.cancel();
+        }
+
+        // Tell the reader thread to stop looking at input.  It is blocked
+        // in read() while holding the Reader's lock, so closing the Reader
+        // would block until the user types something.  Close the
+        // InputStream underneath instead, which makes the read fail.
+        // System.in is not closed, so in that case give the reader a
+        // moment and move on.
         try {
-            readerThread.join();
+            if (readerThread == null) {
+                // Input is pushed in by addInput()
+            } else if (setRawMode) {
+                readerThread.interrupt();
+                readerThread.join(ESCDELAY);
+            } else {
+                readerThread.interrupt();
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    // SQUASH
+                }
+                readerThread.join(SHUTDOWN_TIMEOUT);
+                if (!readerThread.isAlive()) {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        // SQUASH
+                    }
+                }
+                // A reader that is still stuck in read() is abandoned.  It
+                // sees input == null when the read returns.
+                input = null;
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
 
-        // Disable mouse reporting and show cursor
-        output.printf("%s%s%s", mouse(false), cursor(true), normal());
-        output.flush();
+        // Let queued frames go out first, but do not wait forever on a
+        // stalled connection.  If the writer thread had to be abandoned, it
+        // may still hold the output's lock, so leave the output alone.
+        boolean outputUsable = true;
+        if (writer != null) {
+            outputUsable = writer.shutdown(SHUTDOWN_TIMEOUT);
+            writer = null;
+        }
+
+        if (outputUsable) {
+            // Disable mouse reporting and show cursor
+            output.printf("%s%s%s", mouse(false), cursor(true), normal());
+            output.flush();
+        }
 
         if (setRawMode) {
             sttyCooked();
             setRawMode = false;
             // We don't close System.in/out
         } else {
-            // Shut down the streams, this should wake up the reader thread
-            // and make it exit.
-            try {
-                if (input != null) {
-                    input.close();
-                    input = null;
-                }
-                if (output != null) {
-                    output.close();
-                    output = null;
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (outputUsable) {
+                output.close();
             }
+            output = null;
         }
     }
 
@@ -504,6 +829,68 @@ public final class ECMA48Terminal implements Runnable {
         output.flush();
     }
 
+    /**
+     * Get the asynchronous output flag.
+     *
+     * @return if true, frames are written by a writer thread
+     */
+    public boolean isAsyncOutput() {
+        return (writer != null);
+    }
+
+    /**
+     * Set the asynchronous output flag.  This defaults to the value of the
+     * jexer.ECMA48.asyncOutput property, or false if it is not set.  When
+     * it is turned off, frames already queued are written first.
+     *
+     * @param asyncOutput if true, frames are written by a writer thread
+     * from ThreadFactories.getDefault(), so that a slow connection does not
+     * block the application thread
+     */
+    public void setAsyncOutput(final boolean asyncOutput) {
+        if (asyncOutput && (writer == null)) {
+            writer = new ECMA48Writer(output, outputStream,
+                ThreadFactories.getDefault());
+        } else if (!asyncOutput && (writer != null)) {
+            writer.shutdown(0);
+            writer = null;
+        }
+    }
+
+    /**
+     * Send a frame and empty the encoder.  With asynchronous output this
+     * only queues it.
+     *
+     * @param encoder the encoded frame
+     */
+    void writeFrame(final ECMA48Encoder encoder) {
+        if (writer != null) {
+            encoder.writeTo(writer);
+        } else {
+            encoder.writeTo(output);
+            output.flush();
+        }
+    }
+
+    /**
+     * Get the number of bytes already flushed that the remote side has not
+     * taken yet.  This counts frames queued for the writer thread, plus the
+     * backlog of the OutputStream passed to the constructor if it
+     * implements OutputBacklog.
+     *
+     * @return the number of bytes
+     */
+    public int getPendingOutput() {
+        int pending = 0;
+        if (writer != null) {
+            pending += writer.getPendingOutput();
+        }
+        if (outputBacklog != null) {
+            pending += outputBacklog.getPendingOutput();
+        }
+        return pending;
+    }
+
     /**
      * Reset keyboard/mouse input parser.
      */
@@ -824,30 +1211,40 @@ public final class ECMA48Terminal implements Runnable {
      * @param queue list to append new events to
      */
     public void getEvents(final List<TInputEvent> queue) {
-        synchronized (eventQueue) {
-            if (eventQueue.size() > 0) {
-                synchronized (queue) {
-                    queue.addAll(eventQueue);
-                }
-                eventQueue.clear();
+        eventQueue.drainTo(queue);
+    }
+
+    /**
+     * Add events to the IO queue and wake up the listener.
+     *
+     * @param events new events.  This list is cleared.
+     */
+    private void queueEvents(final List<TInputEvent> events) {
+        if (events.size() == 0) {
+            return;
+        }
+        // Add to the queue for the backend thread to be able to obtain.
+        eventQueue.addAll(events);
+        events.clear();
+        if (!sharedEventQueue && (listener != null)) {
+            synchronized (listener) {
+                listener.notifyAll();
             }
         }
     }
 
     /**
-     * Return any events in the IO queue due to timeout.
+     * Check for a new window size.  This runs on the idle timer.
      *
      * @param queue list to append new events to
      */
-    private void getIdleEvents(final List<TInputEvent> queue) {
-        Date now = new Date();
+    private void checkWindowSize(final List<TInputEvent> queue) {
+        sessionInfo.queryWindowSize();
+        int newWidth = sessionInfo.getWindowWidth();
+        int newHeight = sessionInfo.getWindowHeight();
 
-        // Check for new window size
-        long windowSizeDelay = now.getTime() - windowSizeTime;
-        if (windowSizeDelay > 1000) {
-            sessionInfo.queryWindowSize();
-            int newWidth = sessionInfo.getWindowWidth();
-            int newHeight = sessionInfo.getWindowHeight();
+        // The reader thread uses windowResize to clip mouse events.
+        synchronized (this) {
             if ((newWidth != windowResize.getWidth())
                 || (newHeight != windowResize.getHeight())
             ) {
@@ -857,13 +1254,21 @@ public final class ECMA48Terminal implements Runnable {
                     newWidth, newHeight);
                 queue.add(event);
             }
-            windowSizeTime = now.getTime();
         }
+    }
+
+    /**
+     * Report a bare ESC as the Escape key if nothing followed it within
+     * ESCDELAY.  This runs on the idle timer.
+     *
+     * @param queue list to append new events to
+     */
+    private synchronized void checkEscapeTimeout(
+        final List<TInputEvent> queue) {
 
-        // ESCDELAY type timeout
         if (state == ParseState.ESCAPE) {
-            long escDelay = now.getTime() - escapeTime;
-            if (escDelay > 100) {
+            long escDelay = System.currentTimeMillis() - escapeTime;
+            if (escDelay >= ESCDELAY) {
                 // After 0.1 seconds, assume a true escape character
                 queue.add(controlChar((char)0x1B, false));
                 reset();
@@ -1501,72 +1906,71 @@ public final class ECMA48Terminal implements Runnable {
     }
 
     /**
-     * Read function runs on a separate thread.
+     * Parse input characters and queue the events they make.
+     *
+     * @param events list to collect the new events in.  It is cleared.
+     * @param buffer the characters
+     * @param length the number of characters in buffer
+     */
+    private void consume(final List<TInputEvent> events, final char [] buffer,
+        final int length) {
+
+        boolean escapePending;
+        synchronized (this) {
+            for (int i = 0; i < length; i++) {
+                processChar(events, buffer[i]);
+            }
+            escapePending = (state == ParseState.ESCAPE);
+        }
+        queueEvents(events);
+
+        if (escapePending) {
+            // If nothing else arrives, this was the Escape key.
+            scheduleIdle(new IdleTask() {
+                protected void runTask() {
+                    List<TInputEvent> escape;
+                    escape = new LinkedList<TInputEvent>();
+                    checkEscapeTimeout(escape);
+                    queueEvents(escape);
+                }
+            }, ESCDELAY, 0);
+        }
+    }
+
+    /**
+     * Read function runs on a separate thread.  It blocks in read() until
+     * input arrives, and exits on EOF or when shutdown() interrupts it.
      */
     public void run() {
         boolean done = false;
-        // available() will often return > 1, so we need to read in chunks to
-        // stay caught up.
-        char [] readBuffer = new char[128];
+        char [] readBuffer = new char[1024];
         List<TInputEvent> events = new LinkedList<TInputEvent>();
 
-        while (!done && !stopReaderThread) {
+        while (!done && !Thread.currentThread().isInterrupted()) {
             try {
-                // We assume that if inputStream has bytes available, then
-                // input won't block on read().
-                int n = inputStream.available();
-                if (n > 0) {
-                    if (readBuffer.length < n) {
-                        // The buffer wasn't big enough, make it huger
-                        readBuffer = new char[readBuffer.length * 2];
-                    }
-
-                    int rc = input.read(readBuffer, 0, readBuffer.length);
-                    // System.err.printf("read() %d", rc); System.err.flush();
-                    if (rc == -1) {
-                        // This is EOF
-                        done = true;
-                    } else {
-                        for (int i = 0; i < rc; i++) {
-                            int ch = readBuffer[i];
-                            processChar(events, (char)ch);
-                        }
-                        getIdleEvents(events);
-                        if (events.size() > 0) {
-                            // Add to the queue for the backend thread to
-                            // be able to obtain.
-                            synchronized (eventQueue) {
-                                eventQueue.addAll(events);
-                            }
-                            synchronized (listener) {
-                                listener.notifyAll();
-                            }
-                            events.clear();
-                        }
-                    }
-                } else {
-                    getIdleEvents(events);
-                    if (events.size() > 0) {
-                        synchronized (eventQueue) {
-                            eventQueue.addAll(events);
-                        }
-                        events.clear();
-                        synchronized (listener) {
-                            listener.notifyAll();
-                        }
-                    }
-
-                    // Wait 10 millis for more data
-                    Thread.sleep(10);
+                Reader reader = input;
+                if (reader == null) {
+                    break;
+                }
+                int rc = reader.read(readBuffer, 0, readBuffer.length);
+                // System.err.printf("read() %d", rc); System.err.flush();
+                if (rc == -1) {
+                    // This is EOF
+                    done = true;
+                } else if (!Thread.currentThread().isInterrupted()) {
+                    consume(events, readBuffer, rc);
                 }
                 // System.err.println("end while loop"); System.err.flush();
-            } catch (InterruptedException e) {
-                // SQUASH
+            } catch (InterruptedIOException e) {
+                // shutdown() interrupted the read
+                done = true;
             } catch (IOException e) {
-                e.printStackTrace();
+                if (!Thread.currentThread().isInterrupted()) {
+                    e.printStackTrace();
+                }
                 done = true;
             }
-        } // while ((done == false) && (stopReaderThread == false))
+        } // while (!done && !Thread.currentThread().isInterrupted())
         // System.err.println("*** run() exiting..."); System.err.flush();
     }
 
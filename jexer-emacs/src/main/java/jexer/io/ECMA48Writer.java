@@ -0,0 +1,246 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ECMA48Writer writes encoded frames to a terminal on its own thread, so
+ * that a slow or stalled connection blocks only this thread and not the
+ * application.  Frames are written in the order they were submitted: each
+ * one is a diff against the previous one, so none can be dropped here.
+ * Skipping frames is up to the caller, which can look at
+ * getPendingOutput() before it encodes the next one.
+ */
+final class ECMA48Writer implements Runnable {
+
+    /**
+     * The terminal output.
+     */
+    private final PrintWriter output;
+
+    /**
+     * The stream underneath output, closed by shutdown() to unblock a
+     * stalled write.  May be null.
+     */
+    private final Closeable stream;
+
+    /**
+     * Guards everything below.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when there is something to write or the writer is
+     * stopped.
+     */
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Output submitted but not yet picked up by the writer thread.
+     */
+    private char [] pending = new char[8192];
+
+    /**
+     * Number of chars in pending.
+     */
+    private int pendingLength = 0;
+
+    /**
+     * The buffer the writer thread is writing from.  It is swapped with
+     * pending so neither is reallocated once it is large enough.
+     */
+    private char [] writing = new char[8192];
+
+    /**
+     * Number of chars in writing that have not been written yet.
+     */
+    private int writingLength = 0;
+
+    /**
+     * If true, the writer thread exits once everything is written.
+     */
+    private boolean stopped = false;
+
+    /**
+     * The writer thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Public constructor starts the writer thread.
+     *
+     * @param output the terminal output
+     * @param stream the stream underneath output, or null if it is not
+     * known.  shutdown() closes it if the writer thread is stuck writing.
+     * @param threadFactory creates the writer thread
+     */
+    public ECMA48Writer(final PrintWriter output, final Closeable stream,
+        final ThreadFactory threadFactory) {
+
+        this.output = output;
+        this.stream = stream;
+        thread = threadFactory.newThread(this);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue output to be written and flushed.  This does not block on the
+     * connection.
+     *
+     * @param buffer the output
+     * @param length the number of chars in buffer to write
+     */
+    public void submit(final char [] buffer, final int length) {
+        if (length == 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (pending.length < pendingLength + length) {
+                char [] bigger = new char[Math.max(pending.length * 2,
+                        pendingLength + length)];
+                System.arraycopy(pending, 0, bigger, 0, pendingLength);
+                pending = bigger;
+            }
+            System.arraycopy(buffer, 0, pending, pendingLength, length);
+            pendingLength += length;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of chars submitted that are not written yet.
+     *
+     * @return the number of chars
+     */
+    public int getPendingOutput() {
+        lock.lock();
+        try {
+            return pendingLength + writingLength;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write everything submitted so far, then stop the writer thread.  If
+     * that takes longer than timeout because the connection is stalled,
+     * close the stream underneath the output and abandon the writer thread.
+     * The output must not be used after that: the abandoned thread may
+     * still hold its lock.
+     *
+     * @param timeout millis to wait for the output to be written, or 0 to
+     * wait forever
+     * @return true if everything was written and the output can still be
+     * used
+     */
+    public boolean shutdown(final long timeout) {
+        lock.lock();
+        try {
+            stopped = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        long deadline = System.currentTimeMillis() + timeout;
+        while (thread.isAlive()) {
+            long wait = 0;
+            if (timeout > 0) {
+                wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    break;
+                }
+            }
+            try {
+                thread.join(wait);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (!thread.isAlive()) {
+            return true;
+        }
+
+        // The connection is stalled.  Closing the stream makes the blocked
+        // write fail, after which the thread runs out of output and exits.
+        // If it does not, it is a daemon and is left behind.
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // SQUASH
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write submitted output until shutdown() is called.
+     */
+    public void run() {
+        for (;;) {
+            int length;
+            lock.lock();
+            try {
+                writingLength = 0;
+                while ((pendingLength == 0) && !stopped) {
+                    changed.awaitUninterruptibly();
+                }
+                if (pendingLength == 0) {
+                    return;
+                }
+                char [] swap = writing;
+                writing = pending;
+                pending = swap;
+                writingLength = pendingLength;
+                pendingLength = 0;
+                length = writingLength;
+            } finally {
+                lock.unlock();
+            }
+
+            output.write(writing, 0, length);
+            output.flush();
+        }
+    }
+
+}
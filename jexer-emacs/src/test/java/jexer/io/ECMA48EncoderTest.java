@@ -0,0 +1,285 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
+import jexer.bits.Color;
+
+/**
+ * Tests for the ECMA48Encoder output.
+ */
+public class ECMA48EncoderTest {
+
+    /**
+     * The encoder under test.
+     */
+    private ECMA48Encoder encoder;
+
+    /**
+     * Make a fresh 80-column encoder.
+     */
+    @Before
+    public void setUp() {
+        encoder = new ECMA48Encoder();
+        encoder.setRunLength(true);
+        encoder.reset(80);
+    }
+
+    /**
+     * Pack a cell.
+     *
+     * @param fore foreground color
+     * @param back background color
+     * @param bold if true, bold
+     * @return the packed cell
+     */
+    private static int cell(final Color fore, final Color back,
+        final boolean bold) {
+
+        CellAttributes attr = new CellAttributes();
+        attr.setForeColor(fore);
+        attr.setBackColor(back);
+        attr.setBold(bold);
+        return CellBuffer.pack('x', attr);
+    }
+
+    /**
+     * SGR is sent in full after a reset, and after that only the
+     * parameters that change.  Turning an attribute off needs a full reset.
+     */
+    @Test
+    public void testSgrDelta() {
+        encoder.sgr(cell(Color.WHITE, Color.BLACK, false));
+        assertEquals("\033[0;37;40m", encoder.toString());
+
+        encoder.reset(80);
+        encoder.sgr(cell(Color.WHITE, Color.BLACK, false));
+        encoder.sgr(cell(Color.RED, Color.BLACK, false));
+        encoder.sgr(cell(Color.RED, Color.BLACK, false));
+        encoder.sgr(cell(Color.RED, Color.BLUE, true));
+        encoder.sgr(cell(Color.RED, Color.BLUE, false));
+        assertEquals("\033[0;37;40m"
+            + "\033[31m"
+            + "\033[1;44m"
+            + "\033[0;31;44m", encoder.toString());
+    }
+
+    /**
+     * Protect is not visible, so it does not cause SGR output.
+     */
+    @Test
+    public void testSgrIgnoresProtect() {
+        CellAttributes attr = new CellAttributes();
+        encoder.sgr(CellBuffer.pack('x', attr));
+        attr.setProtect(true);
+        int before = encoder.length();
+        encoder.sgr(CellBuffer.pack('x', attr));
+        assertEquals(before, encoder.length());
+    }
+
+    /**
+     * Long runs use REP, short runs are printed, and nothing uses REP when
+     * run-length output is off.
+     */
+    @Test
+    public void testPrintRun() {
+        encoder.printRun('x', 10);
+        encoder.printRun('y', 3);
+        assertEquals("x\033[9byyy", encoder.toString());
+
+        encoder.reset(80);
+        encoder.printRun('z', 2);
+        assertEquals("zz", encoder.toString());
+
+        encoder.reset(80);
+        encoder.setRunLength(false);
+        encoder.printRun('x', 10);
+        assertEquals("xxxxxxxxxx", encoder.toString());
+    }
+
+    /**
+     * REP advances the tracked cursor, and running off the right edge
+     * makes the cursor position unknown.
+     */
+    @Test
+    public void testRunCursor() {
+        encoder.gotoXY(10, 3);
+        encoder.printRun('x', 20);
+        assertEquals(30, encoder.getCursorX());
+        assertEquals(3, encoder.getCursorY());
+        encoder.printRun('x', 50);
+        assertEquals(-1, encoder.getCursorX());
+        assertEquals(-1, encoder.getCursorY());
+    }
+
+    /**
+     * ECH is used for blank runs only when it is shorter than printing
+     * them with REP, and it selects the blank attributes first.
+     */
+    @Test
+    public void testEraseRun() {
+        // " " is shorter than ESC [ 2 X
+        assertFalse(encoder.eraseRun(2));
+        // " ESC [ 9 b" is as short as ESC [ 1 0 X
+        assertFalse(encoder.eraseRun(10));
+        assertEquals("", encoder.toString());
+
+        assertTrue(encoder.eraseRun(5));
+        assertEquals("\033[0;37;40m\033[5X", encoder.toString());
+
+        encoder.reset(80);
+        encoder.setRunLength(false);
+        assertFalse(encoder.eraseRun(5));
+    }
+
+    /**
+     * From an unknown cursor position gotoXY() sends CUP, leaving out the
+     * column when it is the first.
+     */
+    @Test
+    public void testCup() {
+        encoder.gotoXY(0, 0);
+        assertEquals("\033[1H", encoder.toString());
+
+        encoder.reset(80);
+        encoder.gotoXY(3, 20);
+        assertEquals("\033[21;4H", encoder.toString());
+        assertEquals(3, encoder.getCursorX());
+        assertEquals(20, encoder.getCursorY());
+    }
+
+    /**
+     * The clear sequences select white-on-black first, so that a
+     * back-color-erase terminal clears to black.
+     */
+    @Test
+    public void testClear() {
+        encoder.clearAll();
+        assertEquals("\033[0;37;40m\033[2J", encoder.toString());
+
+        encoder.reset(80);
+        encoder.clearRemainingLine();
+        assertEquals("\033[0;37;40m\033[K", encoder.toString());
+    }
+
+    /**
+     * gotoXY() picks CUP, relative moves, or CR/LF, whichever is shortest,
+     * and emits nothing if the cursor is already there.
+     */
+    @Test
+    public void testGotoXY() {
+        // Unknown position: CUP with the column omitted
+        encoder.gotoXY(0, 0);
+        String home = "\033[1H";
+        assertEquals(home, encoder.toString());
+
+        // Same row, to the right: CUF
+        encoder.gotoXY(5, 0);
+        assertEquals(home + "\033[5C", encoder.toString());
+
+        // Next row, column 0: CR LF
+        encoder.gotoXY(0, 1);
+        assertEquals(home + "\033[5C\r\n", encoder.toString());
+
+        // Already there
+        encoder.gotoXY(0, 1);
+        assertEquals(home + "\033[5C\r\n", encoder.toString());
+
+        // Far away: CUP
+        encoder.gotoXY(3, 20);
+        assertEquals(home + "\033[5C\r\n\033[21;4H", encoder.toString());
+
+        // Up one row, same column: CUU
+        encoder.gotoXY(3, 19);
+        assertEquals(home + "\033[5C\r\n\033[21;4H\033[A",
+            encoder.toString());
+
+        // Left: CUB
+        encoder.gotoXY(1, 19);
+        assertEquals(home + "\033[5C\r\n\033[21;4H\033[A\033[2D",
+            encoder.toString());
+    }
+
+    /**
+     * writeTo() sends everything appended, however long, and empties the
+     * buffer for the next frame.
+     */
+    @Test
+    public void testWriteTo() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("\033[").append(i).append('H');
+        }
+        encoder.append(sb.toString());
+        assertEquals(sb.length(), encoder.length());
+
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        encoder.writeTo(writer);
+        writer.flush();
+        assertEquals(sb.toString(), out.toString());
+        assertEquals(0, encoder.length());
+
+        encoder.append("\033[K");
+        encoder.writeTo(writer);
+        writer.flush();
+        assertEquals(sb.toString() + "\033[K", out.toString());
+    }
+
+    /**
+     * scrollRows() sets the margins, deletes or inserts lines at the top
+     * margin, and resets the margins, leaving the cursor at the origin.
+     */
+    @Test
+    public void testScrollRows() {
+        encoder.scrollRows(2, 10, 1);
+        assertEquals("\033[0;37;40m\033[3;10r\r\n\n\033[M\033[r",
+            encoder.toString());
+        assertEquals(0, encoder.getCursorX());
+        assertEquals(0, encoder.getCursorY());
+
+        encoder.reset(80);
+        encoder.sgr(CellBuffer.BLANK);
+        encoder.scrollRows(0, 24, -3);
+        assertEquals("\033[0;37;40m\033[1;24r\033[3L\033[r",
+            encoder.toString());
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jexer.event.TInputEvent;
+import jexer.event.TKeypressEvent;
+import jexer.session.TSessionInfo;
+
+/**
+ * Tests for ECMA48Terminal.addInput(), the input path of terminals that
+ * are fed by a TelnetChannelServer.
+ */
+public class ECMA48TerminalTest {
+
+    /**
+     * Make a terminal without a reader thread.
+     *
+     * @return the terminal
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     */
+    private static ECMA48Terminal terminal()
+        throws UnsupportedEncodingException {
+
+        return new ECMA48Terminal(new Object(), new TSessionInfo(),
+            new ByteArrayOutputStream());
+    }
+
+    /**
+     * Collect the characters of the keypresses a terminal has queued.
+     *
+     * @param terminal the terminal
+     * @return the characters
+     */
+    private static String typed(final ECMA48Terminal terminal) {
+        List<TInputEvent> events = new LinkedList<TInputEvent>();
+        terminal.getEvents(events);
+        StringBuilder sb = new StringBuilder();
+        for (TInputEvent event : events) {
+            sb.append(((TKeypressEvent) event).getKey().getChar());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * UTF-8 sequences split between two calls at any point are decoded
+     * once they are complete.
+     *
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     */
+    @Test
+    public void testSplitSequence() throws UnsupportedEncodingException {
+        String text = "a\u00e9\u20acb\u2500";
+        byte [] data = text.getBytes("UTF-8");
+        for (int split = 0; split <= data.length; split++) {
+            ECMA48Terminal terminal = terminal();
+            try {
+                terminal.addInput(data, 0, split);
+                terminal.addInput(data, split, data.length - split);
+                assertEquals("split at " + split, text, typed(terminal));
+            } finally {
+                terminal.shutdown();
+            }
+        }
+    }
+
+    /**
+     * UTF-8 passed in one byte at a time, from the middle of a larger
+     * buffer, is decoded as a whole.
+     *
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     */
+    @Test
+    public void testByteAtATime() throws UnsupportedEncodingException {
+        String text = "\u00e9t\u00e9 \u20ac\u20ac";
+        byte [] utf8 = text.getBytes("UTF-8");
+        byte [] data = new byte[utf8.length + 2];
+        System.arraycopy(utf8, 0, data, 1, utf8.length);
+        ECMA48Terminal terminal = terminal();
+        try {
+            for (int i = 1; i <= utf8.length; i++) {
+                terminal.addInput(data, i, 1);
+            }
+            assertEquals(text, typed(terminal));
+        } finally {
+            terminal.shutdown();
+        }
+    }
+
+    /**
+     * Input longer than the decoder's buffer, with a sequence across the
+     * buffer boundary, is decoded in full.
+     *
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     */
+    @Test
+    public void testLongInput() throws UnsupportedEncodingException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1023; i++) {
+            sb.append('x');
+        }
+        for (int i = 0; i < 2000; i++) {
+            sb.append((i % 2 == 0) ? '\u20ac' : 'y');
+        }
+        String text = sb.toString();
+        byte [] data = text.getBytes("UTF-8");
+        ECMA48Terminal terminal = terminal();
+        try {
+            // Split in the middle of a euro sign
+            terminal.addInput(data, 0, 1024);
+            terminal.addInput(data, 1024, data.length - 1024);
+            assertEquals(text, typed(terminal));
+        } finally {
+            terminal.shutdown();
+        }
+    }
+
+    /**
+     * A malformed sequence becomes U+FFFD, and decoding carries on after
+     * it.
+     *
+     * @throws UnsupportedEncodingException if UTF-8 is not supported
+     */
+    @Test
+    public void testMalformed() throws UnsupportedEncodingException {
+        byte [] data = { 'a', (byte) 0xC3, 'b', (byte) 0xFF, 'c' };
+        ECMA48Terminal terminal = terminal();
+        try {
+            terminal.addInput(data, 0, data.length);
+            assertEquals("a\ufffdb\ufffdc", typed(terminal));
+        } finally {
+            terminal.shutdown();
+        }
+    }
+
+}
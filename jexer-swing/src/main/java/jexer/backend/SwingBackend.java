@@ -78,6 +78,16 @@ public final class SwingBackend extends Backend<SwingTerminal> {
         }
     }
 
+    /**
+     * Check for pending keyboard, mouse, and screen resize events.
+     *
+     * @return if true, getEvents() has something to return
+     */
+    @Override
+    public boolean hasEvents() {
+        return terminal.hasEvents();
+    }
+
     /**
      * Close the I/O, restore the console, etc.
      */
@@ -0,0 +1,234 @@
+/*
+ * Jexer - Java Text User Interface
+ *
+ * The MIT License (MIT)
+ *
+ * Copyright (C) 2016 Kevin Lamonte
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a
+ * copy of this software and associated documentation files (the "Software"),
+ * to deal in the Software without restriction, including without limitation
+ * the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ * and/or sell copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ * DEALINGS IN THE SOFTWARE.
+ *
+ * @author Kevin Lamonte [kevin.lamonte@gmail.com]
+ * @version 1
+ */
+package jexer.io;
+
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SwingGlyphCache holds pre-rendered text cells, so that SwingScreen can
+ * blit a cell instead of filling its background and drawing its character
+ * every time.  A cell's look is identified by a key made of its character,
+ * its colors, and its bold and underline flags.  The least recently used
+ * tiles are dropped once the cache is full.
+ */
+final class SwingGlyphCache {
+
+    /**
+     * The tiles in least to most recently used order.
+     */
+    private static final class TileMap
+        extends LinkedHashMap<Integer, BufferedImage> {
+
+        /**
+         * Serializable version.
+         */
+        private static final long serialVersionUID = 1;
+
+        /**
+         * Maximum number of tiles.
+         */
+        private final int maxSize;
+
+        /**
+         * Public constructor.
+         *
+         * @param maxSize maximum number of tiles
+         */
+        public TileMap(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * Drop the least recently used tile when the map is full.
+         *
+         * @param eldest the least recently used tile
+         * @return true if eldest should be removed
+         */
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<Integer, BufferedImage> eldest) {
+
+            return (size() > maxSize);
+        }
+    }
+
+    /**
+     * Shift of the foreground color in a key.
+     */
+    private static final int FORE_SHIFT = 16;
+
+    /**
+     * Shift of the background color in a key.
+     */
+    private static final int BACK_SHIFT = 19;
+
+    /**
+     * Bold flag in a key.
+     */
+    private static final int BOLD = 1 << 22;
+
+    /**
+     * Underline flag in a key.
+     */
+    private static final int UNDERLINE = 1 << 23;
+
+    /**
+     * The tiles.
+     */
+    private final TileMap tiles;
+
+    /**
+     * Public constructor.
+     *
+     * @param maxSize maximum number of tiles to keep
+     */
+    public SwingGlyphCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size: "
+                + maxSize);
+        }
+        tiles = new TileMap(maxSize);
+    }
+
+    /**
+     * Make the key for a cell.
+     *
+     * @param ch the character
+     * @param foreColor the foreground color value, 0 (black) through 7
+     * (white)
+     * @param backColor the background color value, 0 (black) through 7
+     * (white)
+     * @param bold if true, the foreground color is the bold one
+     * @param underline if true, the cell is underlined
+     * @return the key
+     */
+    public static int key(final char ch, final int foreColor,
+        final int backColor, final boolean bold, final boolean underline) {
+
+        int key = ch | (foreColor << FORE_SHIFT) | (backColor << BACK_SHIFT);
+        if (bold) {
+            key |= BOLD;
+        }
+        if (underline) {
+            key |= UNDERLINE;
+        }
+        return key;
+    }
+
+    /**
+     * Get the character of a key.
+     *
+     * @param key the key
+     * @return the character
+     */
+    public static char getChar(final int key) {
+        return (char) (key & 0xFFFF);
+    }
+
+    /**
+     * Get the foreground color value of a key.
+     *
+     * @param key the key
+     * @return 0 (black) through 7 (white)
+     */
+    public static int getForeColor(final int key) {
+        return (key >>> FORE_SHIFT) & 0x07;
+    }
+
+    /**
+     * Get the background color value of a key.
+     *
+     * @param key the key
+     * @return 0 (black) through 7 (white)
+     */
+    public static int getBackColor(final int key) {
+        return (key >>> BACK_SHIFT) & 0x07;
+    }
+
+    /**
+     * Get the bold flag of a key.
+     *
+     * @param key the key
+     * @return bold value
+     */
+    public static boolean isBold(final int key) {
+        return ((key & BOLD) != 0);
+    }
+
+    /**
+     * Get the underline flag of a key.
+     *
+     * @param key the key
+     * @return underline value
+     */
+    public static boolean isUnderline(final int key) {
+        return ((key & UNDERLINE) != 0);
+    }
+
+    /**
+     * Get a tile.
+     *
+     * @param key the key from key()
+     * @return the tile, or null if it is not in the cache
+     */
+    public BufferedImage get(final int key) {
+        return tiles.get(key);
+    }
+
+    /**
+     * Add a tile, dropping the least recently used one if the cache is
+     * full.
+     *
+     * @param key the key from key()
+     * @param tile the rendered cell
+     */
+    public void put(final int key, final BufferedImage tile) {
+        tiles.put(key, tile);
+    }
+
+    /**
+     * Get the number of tiles in the cache.
+     *
+     * @return the number of tiles
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Drop all tiles, for example after the font changed.
+     */
+    public void clear() {
+        tiles.clear();
+    }
+
+}
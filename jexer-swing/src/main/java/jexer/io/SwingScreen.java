@@ -33,21 +33,26 @@ import java.awt.Cursor;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Image;
 import java.awt.Insets;
 import java.awt.Point;
-import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.io.InputStream;
-import java.util.Date;
+import java.util.BitSet;
 
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import jexer.bits.Cell;
 import jexer.bits.CellAttributes;
+import jexer.bits.CellBuffer;
 import jexer.session.SwingSessionInfo;
 
 /**
@@ -199,16 +204,40 @@ public final class SwingScreen extends Screen {
         private long blinkMillis = 500;
 
         /**
-         * If true, the cursor should be visible right now based on the blink
-         * time.
+         * If true, the cursor and blinking text are in their visible phase.
+         * Flipped by the blink timer.
          */
         private boolean cursorBlinkVisible = true;
 
         /**
-         * The time that the blink last flipped from visible to invisible or
-         * from invisible to visible.
+         * Pre-rendered cells.  The size defaults to the
+         * jexer.Swing.glyphCacheSize property, or 4096 tiles.
          */
-        private long lastBlinkTime = 0;
+        private SwingGlyphCache glyphCache = new SwingGlyphCache(
+            Integer.getInteger("jexer.Swing.glyphCacheSize", 4096));
+
+        /**
+         * The character drawn by getGlyph(), reused by every call.
+         */
+        private char [] glyphChars = new char[1];
+
+        /**
+         * The cells as last drawn, kept between frames so that a flush only
+         * draws the cells that changed and presents them with one blit.  A
+         * VolatileImage when possible, otherwise a BufferedImage.
+         */
+        private Image backBuffer;
+
+        /**
+         * The characters of one row, reused by every paintRow() call.
+         */
+        private char [] runChars = new char[0];
+
+        /**
+         * If true, the font's ASCII advance matches the cell width, so runs
+         * of ASCII text can be drawn with one drawChars() call.
+         */
+        private boolean textRuns = false;
 
         /**
          * Convert a CellAttributes foreground color to an Swing Color.
@@ -258,30 +287,65 @@ public final class SwingScreen extends Screen {
         }
 
         /**
-         * Convert a CellAttributes background color to an Swing Color.
+         * Convert a color value to a Swing Color.
          *
-         * @param attr the text attributes
+         * @param value 0 (black) through 7 (white)
+         * @param bold if true, return the bold color
          * @return the Swing Color
          */
-        private Color attrToBackgroundColor(final CellAttributes attr) {
-            if (attr.getBackColor().equals(jexer.bits.Color.BLACK)) {
-                return MYBLACK;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.RED)) {
-                return MYRED;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.BLUE)) {
-                return MYBLUE;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.GREEN)) {
-                return MYGREEN;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.YELLOW)) {
-                return MYYELLOW;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.CYAN)) {
-                return MYCYAN;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.MAGENTA)) {
-                return MYMAGENTA;
-            } else if (attr.getBackColor().equals(jexer.bits.Color.WHITE)) {
-                return MYWHITE;
+        private Color valueToColor(final int value, final boolean bold) {
+            switch (value) {
+            case 0:
+                return (bold ? MYBOLD_BLACK : MYBLACK);
+            case 1:
+                return (bold ? MYBOLD_RED : MYRED);
+            case 2:
+                return (bold ? MYBOLD_GREEN : MYGREEN);
+            case 3:
+                return (bold ? MYBOLD_YELLOW : MYYELLOW);
+            case 4:
+                return (bold ? MYBOLD_BLUE : MYBLUE);
+            case 5:
+                return (bold ? MYBOLD_MAGENTA : MYMAGENTA);
+            case 6:
+                return (bold ? MYBOLD_CYAN : MYCYAN);
+            case 7:
+                return (bold ? MYBOLD_WHITE : MYWHITE);
+            default:
+                throw new IllegalArgumentException("Invalid color: " + value);
             }
-            throw new IllegalArgumentException("Invalid color: " + attr.getBackColor().getValue());
+        }
+
+        /**
+         * Get the tile for a cell from the glyph cache, rendering it on a
+         * miss.
+         *
+         * @param key the key from SwingGlyphCache.key()
+         * @return the rendered cell
+         */
+        private BufferedImage getGlyph(final int key) {
+            BufferedImage tile = glyphCache.get(key);
+            if (tile != null) {
+                return tile;
+            }
+            tile = new BufferedImage(textWidth, textHeight,
+                BufferedImage.TYPE_INT_RGB);
+            Graphics gr = tile.getGraphics();
+            gr.setFont(getFont());
+            gr.setColor(valueToColor(SwingGlyphCache.getBackColor(key),
+                    false));
+            gr.fillRect(0, 0, textWidth, textHeight);
+            gr.setColor(valueToColor(SwingGlyphCache.getForeColor(key),
+                    SwingGlyphCache.isBold(key)));
+            glyphChars[0] = SwingGlyphCache.getChar(key);
+            gr.drawChars(glyphChars, 0, 1, textAdjustX,
+                textHeight - maxDescent + textAdjustY);
+            if (SwingGlyphCache.isUnderline(key)) {
+                gr.fillRect(0, textHeight - 2, textWidth, 2);
+            }
+            gr.dispose();
+            glyphCache.put(key, tile);
+            return tile;
         }
 
         /**
@@ -364,6 +428,19 @@ public final class SwingScreen extends Screen {
                 textAdjustY = -1;
                 textAdjustX = 0;
             }
+
+            // Text runs line up with the cells only if the characters are
+            // as wide as a cell.
+            textRuns = true;
+            for (char ch = ' '; ch < 0x7F; ch++) {
+                if (fm.charWidth(ch) != textWidth) {
+                    textRuns = false;
+                    break;
+                }
+            }
+
+            // Tiles are the size of a text cell.
+            glyphCache.clear();
         }
 
         /**
@@ -393,7 +470,7 @@ public final class SwingScreen extends Screen {
         }
 
         /**
-         * Paint redraws the whole screen.
+         * Paint copies the back buffer to the screen.
          *
          * @param gr the Swing Graphics context
          */
@@ -407,137 +484,314 @@ public final class SwingScreen extends Screen {
                 return;
             }
 
-            // See if it is time to flip the blink time.
-            long nowTime = (new Date()).getTime();
-            if (nowTime > blinkMillis + lastBlinkTime) {
-                lastBlinkTime = nowTime;
-                cursorBlinkVisible = !cursorBlinkVisible;
-            }
-
-            int xCellMin = 0;
-            int xCellMax = screen.width;
-            int yCellMin = 0;
-            int yCellMax = screen.height;
-
-            Rectangle bounds = gr.getClipBounds();
-            if (bounds != null) {
-                // Only update what is in the bounds
-                xCellMin = screen.textColumn(bounds.x);
-                xCellMax = screen.textColumn(bounds.x + bounds.width);
-                if (xCellMax > screen.width) {
-                    xCellMax = screen.width;
-                }
-                if (xCellMin >= xCellMax) {
-                    xCellMin = xCellMax - 2;
-                }
-                if (xCellMin < 0) {
-                    xCellMin = 0;
+            // Prevent updates to the screen's data from the TApplication
+            // threads.
+            synchronized (screen) {
+                if ((backBuffer == null) || backBufferLost()) {
+                    reallyCleared = true;
+                    paintSpans(null, null);
                 }
-                yCellMin = screen.textRow(bounds.y);
-                yCellMax = screen.textRow(bounds.y + bounds.height);
-                if (yCellMax > screen.height) {
-                    yCellMax = screen.height;
+                present(gr);
+            } // synchronized (screen)
+        }
+
+        /**
+         * Make sure the back buffer exists, is the size of the screen, and
+         * is usable.  Must be called with the screen locked.
+         *
+         * @return true if the back buffer is new or lost its contents, so
+         * every cell has to be drawn again
+         */
+        private boolean validateBackBuffer() {
+            int width = screen.width * textWidth;
+            int height = screen.height * textHeight;
+            if ((backBuffer != null)
+                && ((backBuffer.getWidth(null) != width)
+                    || (backBuffer.getHeight(null) != height))
+            ) {
+                backBuffer = null;
+            }
+            if (backBuffer instanceof VolatileImage) {
+                int status = ((VolatileImage) backBuffer).validate(
+                    getGraphicsConfiguration());
+                if (status == VolatileImage.IMAGE_OK) {
+                    return false;
                 }
-                if (yCellMin >= yCellMax) {
-                    yCellMin = yCellMax - 2;
+                if (status == VolatileImage.IMAGE_RESTORED) {
+                    return true;
                 }
-                if (yCellMin < 0) {
-                    yCellMin = 0;
+                // IMAGE_INCOMPATIBLE: the frame moved to another device.
+                backBuffer = null;
+            }
+            if (backBuffer == null) {
+                backBuffer = createVolatileImage(width, height);
+                if (backBuffer == null) {
+                    // Not displayable yet, or no acceleration.
+                    backBuffer = new BufferedImage(width, height,
+                        BufferedImage.TYPE_INT_RGB);
                 }
-            } else {
-                // We need a total repaint
-                reallyCleared = true;
+                return true;
             }
+            return false;
+        }
 
-            // Prevent updates to the screen's data from the TApplication
-            // threads.
-            synchronized (screen) {
+        /**
+         * See if the back buffer lost its contents since it was drawn.
+         *
+         * @return true if the back buffer has to be drawn again
+         */
+        private boolean backBufferLost() {
+            return ((backBuffer instanceof VolatileImage)
+                && ((VolatileImage) backBuffer).contentsLost());
+        }
 
-                /*
-                System.err.printf("bounds %s X %d %d Y %d %d\n",
-                    bounds, xCellMin, xCellMax, yCellMin, yCellMax);
-                 */
-                Cell lCellColor = new Cell();
+        /**
+         * Move a block of rows in the back buffer, as found by
+         * Screen.findScroll().  Must be called with the screen locked.
+         *
+         * @param scroll the block to move
+         */
+        private void scrollBackBuffer(final ScrollRegion scroll) {
+            int shift = scroll.getShift();
+            int srcTop = scroll.getTop() + Math.max(shift, 0);
+            int rows = scroll.getBottom() - scroll.getTop() - Math.abs(shift);
+            Graphics gr = backBuffer.getGraphics();
+            gr.copyArea(scroll.getLeft() * textWidth, srcTop * textHeight,
+                (scroll.getRight() - scroll.getLeft()) * textWidth,
+                rows * textHeight, 0, -shift * textHeight);
+            gr.dispose();
+        }
 
-                for (int y = yCellMin; y < yCellMax; y++) {
-                    for (int x = xCellMin; x < xCellMax; x++) {
+        /**
+         * Draw cells into the back buffer: the damaged spans found by
+         * flushPhysical(), or everything if reallyCleared is set.  Must be
+         * called with the screen locked.
+         *
+         * @param spanLeft for each row, the first column to paint, or -1 to
+         * skip the row
+         * @param spanRight for each row, one past the last column to paint
+         */
+        private void paintSpans(final int [] spanLeft,
+            final int [] spanRight) {
 
-                        int xPixel = x * textWidth + left;
-                        int yPixel = y * textHeight + top;
+            do {
+                if (validateBackBuffer()) {
+                    reallyCleared = true;
+                }
+                Graphics gr = backBuffer.getGraphics();
+                for (int y = 0; y < screen.height; y++) {
+                    if (reallyCleared) {
+                        paintRow(gr, y, 0, screen.width);
+                    } else if (spanLeft[y] >= 0) {
+                        paintRow(gr, y, spanLeft[y], spanRight[y]);
+                    }
+                }
+                gr.dispose();
 
-                        Cell lCell = screen.logical[x][y];
-                        Cell pCell = screen.physical[x][y];
+                dirty = false;
+                reallyCleared = false;
 
-                        if (!lCell.equals(pCell)
-                            || lCell.isBlink()
-                            || reallyCleared) {
+                // If the contents were lost while drawing, validate will
+                // restore the buffer and everything is drawn again.
+            } while (backBufferLost());
+        }
 
-                            lCellColor.setTo(lCell);
+        /**
+         * Copy the back buffer to the screen with one blit, then draw the
+         * cursor over it.  Must be called with the screen locked.
+         *
+         * @param gr the Swing Graphics context
+         */
+        private void present(final Graphics gr) {
+            gr.drawImage(backBuffer, left, top, null);
+            paintCursor(gr);
+        }
 
-                            // Check for reverse
-                            if (lCell.isReverse()) {
-                                lCellColor.setForeColor(lCell.getBackColor());
-                                lCellColor.setBackColor(lCell.getForeColor());
-                            }
+        /**
+         * Show the back buffer on the screen, through the BufferStrategy if
+         * there is one.  Must be called with the screen locked.
+         */
+        private void present() {
+            if (bufferStrategy == null) {
+                repaint();
+                return;
+            }
+            do {
+                do {
+                    Graphics gr = bufferStrategy.getDrawGraphics();
+                    present(gr);
+                    gr.dispose();
+                } while (bufferStrategy.contentsRestored());
+                bufferStrategy.show();
+                // sync() doesn't seem to help the tearing for me.
+                // Toolkit.getDefaultToolkit().sync();
+            } while (bufferStrategy.contentsLost());
+        }
 
-                            // Draw the background rectangle, then the
-                            // foreground character.
-                            gr.setColor(attrToBackgroundColor(lCellColor));
-                            gr.fillRect(xPixel, yPixel, textWidth, textHeight);
-
-                            // Handle blink and underline
-                            if (!lCell.isBlink()
-                                || (lCell.isBlink() && cursorBlinkVisible)
-                            ) {
-                                gr.setColor(attrToForegroundColor(lCellColor));
-                                char [] chars = new char[1];
-                                chars[0] = lCell.getChar();
-                                gr.drawChars(chars, 0, 1, xPixel + textAdjustX,
-                                    yPixel + textHeight - maxDescent
-                                    + textAdjustY);
-
-                                if (lCell.isUnderline()) {
-                                    gr.fillRect(xPixel, yPixel + textHeight - 2,
-                                        textWidth, 2);
-                                }
-                            }
+        /**
+         * Flip the blink phase.  Must be called with the screen locked.
+         */
+        private void flipBlink() {
+            cursorBlinkVisible = !cursorBlinkVisible;
+        }
+
+        /**
+         * Get the glyph cache key for what a cell looks like right now.
+         *
+         * @param packed the packed cell
+         * @return the key
+         */
+        private int cellKey(final int packed) {
+            // Reverse swaps the colors.  A blinking cell in its off phase
+            // shows only its background.
+            int visible = CellBuffer.resolveReverse(packed,
+                CellBuffer.isReverse(packed));
+            boolean glyphVisible = !CellBuffer.isBlink(packed)
+                || cursorBlinkVisible;
+            return SwingGlyphCache.key(
+                (glyphVisible ? CellBuffer.getChar(packed) : ' '),
+                CellBuffer.getForeColor(visible).getValue(),
+                CellBuffer.getBackColor(visible).getValue(),
+                CellBuffer.isBold(packed),
+                glyphVisible && CellBuffer.isUnderline(packed));
+        }
+
+        /**
+         * See if a character can be part of a text run drawn with one
+         * drawChars() call.  That needs the font's advance to match the
+         * cell width, which is only checked for ASCII.
+         *
+         * @param ch the character
+         * @return true if ch can be in a run
+         */
+        private boolean isRunChar(final char ch) {
+            return (ch == ' ') || (textRuns && (ch > ' ') && (ch < 0x7F));
+        }
+
+        /**
+         * Paint the cells of one row that differ from the physical screen,
+         * or all of them if reallyCleared is set.  Runs of cells with the
+         * same attributes get one fillRect() for the background and one
+         * drawChars() for the text; single cells are blitted from the glyph
+         * cache.  Coordinates are relative to the back buffer.  Must be
+         * called with the screen locked.
+         *
+         * @param gr the Swing Graphics context
+         * @param y row coordinate
+         * @param xMin first column to look at
+         * @param xMax one past the last column to look at
+         */
+        private void paintRow(final Graphics gr, final int y, final int xMin,
+            final int xMax) {
 
-                            // Physical is always updated
-                            physical[x][y].setTo(lCell);
+            if (runChars.length < screen.width) {
+                runChars = new char[screen.width];
+            }
+            int yPixel = y * textHeight;
+            int x = xMin;
+            while (x < xMax) {
+                int lPacked = screen.logical.get(x, y);
+                if ((lPacked == screen.physical.get(x, y))
+                    && !CellBuffer.isBlink(lPacked)
+                    && !reallyCleared
+                ) {
+                    x++;
+                    continue;
+                }
+                int key = cellKey(lPacked);
+                int attrKey = key & ~0xFFFF;
+                char ch = SwingGlyphCache.getChar(key);
+                runChars[x] = ch;
+                boolean text = (ch != ' ');
+                int end = x + 1;
+                if (isRunChar(ch)) {
+                    while (end < xMax) {
+                        int packed = screen.logical.get(end, y);
+                        if ((packed == screen.physical.get(end, y))
+                            && !CellBuffer.isBlink(packed)
+                            && !reallyCleared
+                        ) {
+                            break;
                         }
+                        int nextKey = cellKey(packed);
+                        char nextCh = SwingGlyphCache.getChar(nextKey);
+                        if (((nextKey & ~0xFFFF) != attrKey)
+                            || !isRunChar(nextCh)
+                        ) {
+                            break;
+                        }
+                        runChars[end] = nextCh;
+                        if (nextCh != ' ') {
+                            text = true;
+                        }
+                        end++;
                     }
                 }
 
-                // Draw the cursor if it is visible
-                if (cursorVisible
-                    && (cursorY <= screen.height - 1)
-                    && (cursorX <= screen.width - 1)
-                    && cursorBlinkVisible
-                ) {
-                    int xPixel = cursorX * textWidth + left;
-                    int yPixel = cursorY * textHeight + top;
-                    Cell lCell = screen.logical[cursorX][cursorY];
-                    gr.setColor(attrToForegroundColor(lCell));
-                    switch (cursorStyle) {
-                    default:
-                        // Fall through...
-                    case UNDERLINE:
+                int xPixel = x * textWidth;
+                if (end - x == 1) {
+                    gr.drawImage(getGlyph(key), xPixel, yPixel, null);
+                } else {
+                    int runWidth = (end - x) * textWidth;
+                    gr.setColor(valueToColor(
+                        SwingGlyphCache.getBackColor(key), false));
+                    gr.fillRect(xPixel, yPixel, runWidth, textHeight);
+                    gr.setColor(valueToColor(
+                        SwingGlyphCache.getForeColor(key),
+                        SwingGlyphCache.isBold(key)));
+                    if (text) {
+                        gr.setFont(getFont());
+                        gr.drawChars(runChars, x, end - x,
+                            xPixel + textAdjustX,
+                            yPixel + textHeight - maxDescent + textAdjustY);
+                    }
+                    if (SwingGlyphCache.isUnderline(key)) {
                         gr.fillRect(xPixel, yPixel + textHeight - 2,
-                            textWidth, 2);
-                        break;
-                    case BLOCK:
-                        gr.fillRect(xPixel, yPixel, textWidth, textHeight);
-                        break;
-                    case OUTLINE:
-                        gr.drawRect(xPixel, yPixel, textWidth - 1,
-                            textHeight - 1);
-                        break;
+                            runWidth, 2);
                     }
                 }
 
-                dirty = false;
-                reallyCleared = false;
-            } // synchronized (screen)
+                // Physical is always updated
+                for (int i = x; i < end; i++) {
+                    physical.set(i, y, screen.logical.get(i, y));
+                }
+                x = end;
+            }
+        }
+
+        /**
+         * Draw the cursor if it is visible.  Must be called with the screen
+         * locked.
+         *
+         * @param gr the Swing Graphics context
+         */
+        private void paintCursor(final Graphics gr) {
+            if (cursorVisible
+                && (cursorY <= screen.height - 1)
+                && (cursorX <= screen.width - 1)
+                && cursorBlinkVisible
+            ) {
+                int xPixel = cursorX * textWidth + left;
+                int yPixel = cursorY * textHeight + top;
+                Cell lCell = new Cell();
+                screen.logical.getCell(cursorX, cursorY, lCell);
+                gr.setColor(attrToForegroundColor(lCell));
+                switch (cursorStyle) {
+                default:
+                    // Fall through...
+                case UNDERLINE:
+                    gr.fillRect(xPixel, yPixel + textHeight - 2,
+                        textWidth, 2);
+                    break;
+                case BLOCK:
+                    gr.fillRect(xPixel, yPixel, textWidth, textHeight);
+                    break;
+                case OUTLINE:
+                    gr.drawRect(xPixel, yPixel, textWidth - 1,
+                        textHeight - 1);
+                    break;
+                }
+            }
         }
 
     } // class SwingFrame
@@ -547,13 +801,66 @@ public final class SwingScreen extends Screen {
      */
     SwingFrame frame;
 
+    /**
+     * Flips the cursor and blinking text.  Runs on the Swing thread.
+     */
+    private Timer blinkTimer;
+
     /**
      * Restore terminal to normal state.
      */
     public void shutdown() {
+        if (blinkTimer != null) {
+            blinkTimer.stop();
+        }
         frame.dispose();
     }
 
+    /**
+     * Repaint the cursor and any blinking text for the next blink phase.
+     * This holds the screen lock throughout, as TApplication does around
+     * drawAll(), so it cannot run in the middle of a frame.
+     */
+    private void blink() {
+        synchronized (this) {
+            frame.flipBlink();
+            if (cursorVisible) {
+                // The cursor is drawn over the back buffer, so showing it
+                // again is enough.
+                cursorChanged = true;
+                dirty = true;
+            }
+            if (!blinkRows.isEmpty()) {
+                // flushPhysical() repaints rows with blinking text.
+                dirty = true;
+            }
+            flushPhysical();
+        }
+    }
+
+    /**
+     * If true, the cursor moved, appeared, disappeared, or blinked since
+     * the last flushPhysical(), so the screen has to be shown again even if
+     * no cell changed.
+     */
+    private boolean cursorChanged = false;
+
+    /**
+     * Rows that contained blinking text on the last flush.  These are
+     * re-examined on every flush even if they were not damaged.
+     */
+    private BitSet blinkRows = new BitSet();
+
+    /**
+     * For each row, the first column flushPhysical() found damaged, or -1.
+     */
+    private int [] spanLeft = new int[0];
+
+    /**
+     * For each row, one past the last column flushPhysical() found damaged.
+     */
+    private int [] spanRight = new int[0];
+
     /**
      * Public constructor.
      */
@@ -572,6 +879,16 @@ public final class SwingScreen extends Screen {
 
                     SwingScreen.this.frame.resizeToScreen();
                     SwingScreen.this.frame.setVisible(true);
+
+                    // The application only redraws when something changes,
+                    // so blink the cursor and text from here.
+                    blinkTimer = new Timer((int) frame.blinkMillis,
+                        new ActionListener() {
+                            public void actionPerformed(final ActionEvent e) {
+                                blink();
+                            }
+                        });
+                    blinkTimer.start();
                 }
             });
         } catch (Exception e) {
@@ -594,7 +911,10 @@ public final class SwingScreen extends Screen {
     }
 
     /**
-     * Push the logical screen to the physical device.
+     * Push the logical screen to the physical device.  Changed cells are
+     * drawn into the frame's back buffer, blocks of rows that scrolled are
+     * moved there with copyArea(), and the back buffer is then shown with
+     * one blit.
      */
     @Override
     public void flushPhysical() {
@@ -604,91 +924,92 @@ public final class SwingScreen extends Screen {
             reallyCleared, dirty);
          */
 
-        // If reallyCleared is set, we have to draw everything.
-        if ((frame.bufferStrategy != null) && (reallyCleared == true)) {
-            // Triple-buffering: we have to redraw everything on this thread.
-            Graphics gr = frame.bufferStrategy.getDrawGraphics();
-            frame.paint(gr);
-            gr.dispose();
-            frame.bufferStrategy.show();
-            // sync() doesn't seem to help the tearing for me.
-            // Toolkit.getDefaultToolkit().sync();
-            return;
-        } else if ((frame.bufferStrategy == null) && (reallyCleared == true)) {
-            // Repaint everything on the Swing thread.
-            frame.repaint();
-            return;
-        }
+        synchronized (this) {
+            if (frame.validateBackBuffer()) {
+                reallyCleared = true;
+            }
 
-        // Do nothing if nothing happened.
-        if (!dirty) {
-            return;
-        }
+            // Do nothing if nothing happened.
+            if (!dirty && !reallyCleared) {
+                return;
+            }
 
-        // Request a repaint, let the frame's repaint/update methods do the
-        // right thing.
+            if (reallyCleared) {
+                // Draw everything.
+                frame.paintSpans(null, null);
+                clearDamage();
+                cursorChanged = false;
+                frame.present();
+                return;
+            }
 
-        // Find the minimum-size damaged region.
-        int xMin = frame.getWidth();
-        int xMax = 0;
-        int yMin = frame.getHeight();
-        int yMax = 0;
+            // Move the pixels of anything that scrolled, so that only the
+            // rows that are still different are drawn.
+            ScrollRegion scroll = findScroll();
+            if (scroll != null) {
+                frame.scrollBackBuffer(scroll);
+                scrollPhysical(scroll);
+            }
 
-        synchronized (this) {
+            // Find the damaged span of each row.
+            boolean damaged = (scroll != null);
+            if (spanLeft.length != height) {
+                spanLeft = new int[height];
+                spanRight = new int[height];
+            }
             for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    Cell lCell = logical[x][y];
-                    Cell pCell = physical[x][y];
-
-                    int xPixel = x * frame.textWidth + frame.left;
-                    int yPixel = y * frame.textHeight + frame.top;
-
-                    if (!lCell.equals(pCell)
-                        || ((x == cursorX)
-                            && (y == cursorY)
-                            && cursorVisible)
-                        || lCell.isBlink()
+                // Only look at the damaged span and rows that had blinking
+                // text the last time through.  Rows whose hash matches
+                // physical are skipped without a scan.  The cursor is drawn
+                // over the back buffer, so its cell needs nothing here.
+                boolean scanAll = blinkRows.get(y);
+                if (!scanAll && !isRowChanged(y)) {
+                    spanLeft[y] = -1;
+                    continue;
+                }
+                int xStart = getDamageLeft(y);
+                int xEnd = getDamageRight(y);
+                if (scanAll) {
+                    xStart = 0;
+                    xEnd = width;
+                }
+                boolean blink = false;
+                spanLeft[y] = -1;
+
+                for (int x = xStart; x < xEnd; x++) {
+                    int lPacked = logical.get(x, y);
+                    if (CellBuffer.isBlink(lPacked)) {
+                        blink = true;
+                    }
+
+                    if ((lPacked != physical.get(x, y))
+                        || CellBuffer.isBlink(lPacked)
                     ) {
-                        if (xPixel < xMin) {
-                            xMin = xPixel;
-                        }
-                        if (xPixel + frame.textWidth > xMax) {
-                            xMax = xPixel + frame.textWidth;
-                        }
-                        if (yPixel < yMin) {
-                            yMin = yPixel;
-                        }
-                        if (yPixel + frame.textHeight > yMax) {
-                            yMax = yPixel + frame.textHeight;
+                        if (spanLeft[y] < 0) {
+                            spanLeft[y] = x;
                         }
+                        spanRight[y] = x + 1;
+                        damaged = true;
                     }
                 }
+                if (blink) {
+                    blinkRows.set(y);
+                } else if (scanAll) {
+                    blinkRows.clear(y);
+                }
             }
-        }
-        if (xMin + frame.textWidth >= xMax) {
-            xMax += frame.textWidth;
-        }
-        if (yMin + frame.textHeight >= yMax) {
-            yMax += frame.textHeight;
-        }
+            clearDamage();
 
-        // Repaint the desired area
-        /*
-        System.err.printf("REPAINT X %d %d Y %d %d\n", xMin, xMax,
-            yMin, yMax);
-         */
-        if (frame.bufferStrategy != null) {
-            Graphics gr = frame.bufferStrategy.getDrawGraphics();
-            Rectangle bounds = new Rectangle(xMin, yMin, xMax - xMin,
-                yMax - yMin);
-            gr.setClip(bounds);
-            frame.paint(gr);
-            gr.dispose();
-            frame.bufferStrategy.show();
-            // sync() doesn't seem to help the tearing for me.
-            // Toolkit.getDefaultToolkit().sync();
-        } else {
-            frame.repaint(xMin, yMin, xMax - xMin, yMax - yMin);
+            if (damaged) {
+                frame.paintSpans(spanLeft, spanRight);
+            } else {
+                dirty = false;
+                if (!cursorChanged) {
+                    return;
+                }
+            }
+            cursorChanged = false;
+            frame.present();
         }
     }
 
@@ -701,28 +1022,12 @@ public final class SwingScreen extends Screen {
      */
     @Override
     public void putCursor(final boolean visible, final int x, final int y) {
-
-        if ((visible == cursorVisible) && ((x == cursorX) && (y == cursorY))) {
-            // See if it is time to flip the blink time.
-            long nowTime = (new Date()).getTime();
-            if (nowTime < frame.blinkMillis + frame.lastBlinkTime) {
-                // Nothing has changed, so don't do anything.
-                return;
-            }
+        if ((visible != cursorVisible) || (x != cursorX) || (y != cursorY)) {
+            // Show the screen again to move the cursor, even if no cell
+            // changed.
+            cursorChanged = true;
+            dirty = true;
         }
-
-        if (cursorVisible
-            && (cursorY <= height - 1)
-            && (cursorX <= width - 1)
-        ) {
-            // Make the current cursor position dirty
-            if (physical[cursorX][cursorY].getChar() == 'Q') {
-                physical[cursorX][cursorY].setChar('X');
-            } else {
-                physical[cursorX][cursorY].setChar('Q');
-            }
-        }
-
         super.putCursor(visible, x, y);
     }
 
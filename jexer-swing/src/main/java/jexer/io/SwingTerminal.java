@@ -47,13 +47,10 @@ import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
-import java.util.LinkedList;
-import java.util.List;
 
 import jexer.TKeypress;
 import jexer.backend.AbstractTerminal;
 import jexer.event.TCommandEvent;
-import jexer.event.TInputEvent;
 import jexer.event.TKeypressEvent;
 import jexer.event.TMouseEvent;
 import jexer.event.TResizeEvent;
@@ -86,11 +83,6 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         return sessionInfo;
     }
 
-    /**
-     * The event queue, filled up by a thread reading on input.
-     */
-    private List<TInputEvent> eventQueue;
-
     /**
      * The last reported mouse X position.
      */
@@ -116,17 +108,6 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
      */
     private boolean mouse3 = false;
 
-    /**
-     * Check if there are events in the queue.
-     *
-     * @return if true, getEvents() has something to return to the backend
-     */
-    public boolean hasEvents() {
-        synchronized (eventQueue) {
-            return (eventQueue.size() > 0);
-        }
-    }
-    
     /**
      * Constructor sets up state for getEvent().
      *
@@ -140,7 +121,6 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         mouse2           = false;
         mouse3           = false;
         sessionInfo      = screen.getSessionInfo();
-        eventQueue       = new LinkedList<TInputEvent>();
 
         screen.frame.addKeyListener(this);
         screen.frame.addWindowListener(this);
@@ -150,22 +130,6 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         screen.frame.addMouseWheelListener(this);
     }
 
-    /**
-     * Return any events in the IO queue.
-     *
-     * @param queue list to append new events to
-     */
-    public void getEvents(final List<TInputEvent> queue) {
-        synchronized (eventQueue) {
-            if (eventQueue.size() > 0) {
-                synchronized (queue) {
-                    queue.addAll(eventQueue);
-                }
-                eventQueue.clear();
-            }
-        }
-    }
-
     /**
      * Pass Swing keystrokes into the event queue.
      *
@@ -380,12 +344,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         }
 
         // Save it and we are done.
-        synchronized (eventQueue) {
-            eventQueue.add(new TKeypressEvent(keypress));
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(new TKeypressEvent(keypress));
     }
 
     /**
@@ -398,6 +357,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         synchronized (screen) {
             screen.clearPhysical();
         }
+        eventQueue.wakeup();
     }
 
     /**
@@ -416,12 +376,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
      */
     public void windowClosing(final WindowEvent event) {
         // Drop a cmAbort and walk away
-        synchronized (eventQueue) {
-            eventQueue.add(new TCommandEvent(cmAbort));
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(new TCommandEvent(cmAbort));
     }
 
     /**
@@ -495,14 +450,9 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
     public void componentResized(final ComponentEvent event) {
         // Drop a new TResizeEvent into the queue
         sessionInfo.queryWindowSize();
-        synchronized (eventQueue) {
-            TResizeEvent windowResize = new TResizeEvent(TResizeEvent.Type.SCREEN,
-                sessionInfo.getWindowWidth(), sessionInfo.getWindowHeight());
-            eventQueue.add(windowResize);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        TResizeEvent windowResize = new TResizeEvent(TResizeEvent.Type.SCREEN,
+            sessionInfo.getWindowWidth(), sessionInfo.getWindowHeight());
+        eventQueue.add(windowResize);
     }
 
     /**
@@ -533,12 +483,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         TMouseEvent mouseEvent = new TMouseEvent(TMouseEvent.Type.MOUSE_MOTION,
             x, y, x, y, mouse1, mouse2, mouse3, false, false);
 
-        synchronized (eventQueue) {
-            eventQueue.add(mouseEvent);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(mouseEvent);
     }
 
     /**
@@ -559,12 +504,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         TMouseEvent mouseEvent = new TMouseEvent(TMouseEvent.Type.MOUSE_MOTION,
             x, y, x, y, mouse1, mouse2, mouse3, false, false);
 
-        synchronized (eventQueue) {
-            eventQueue.add(mouseEvent);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(mouseEvent);
     }
 
     /**
@@ -622,12 +562,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         TMouseEvent mouseEvent = new TMouseEvent(TMouseEvent.Type.MOUSE_DOWN,
             x, y, x, y, mouse1, mouse2, mouse3, false, false);
 
-        synchronized (eventQueue) {
-            eventQueue.add(mouseEvent);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(mouseEvent);
     }
 
     /**
@@ -667,12 +602,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         TMouseEvent mouseEvent = new TMouseEvent(TMouseEvent.Type.MOUSE_UP,
             x, y, x, y, eventMouse1, eventMouse2, eventMouse3, false, false);
 
-        synchronized (eventQueue) {
-            eventQueue.add(mouseEvent);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(mouseEvent);
     }
 
     /**
@@ -711,12 +641,7 @@ public final class SwingTerminal extends AbstractTerminal implements ComponentLi
         TMouseEvent mouseEvent = new TMouseEvent(TMouseEvent.Type.MOUSE_DOWN,
             x, y, x, y, mouse1, mouse2, mouse3, mouseWheelUp, mouseWheelDown);
 
-        synchronized (eventQueue) {
-            eventQueue.add(mouseEvent);
-        }
-        synchronized (listener) {
-            listener.notifyAll();
-        }
+        eventQueue.add(mouseEvent);
     }
 
 }